@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.api.v1.token;
+
+import com.google.gson.Gson;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenContent;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the JSON form of token content, as it is put in the token today, with the compact form, with and without
+ * deflate.  The encoding benchmarks also report the encoded size, as the secondary result "encodedLength".  The JSON
+ * size is before the token's own base64 encoding, the compact sizes are after their base64url encoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactTokenContentBenchmark {
+  /**
+   * The length of the last encoded form, in bytes.  JMH reports it next to the time.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class EncodedLength {
+    public long encodedLength;
+  }
+
+  @Param({"10", "100", "1000"})
+  public int permissionCount;
+
+  private final Gson gson = new Gson();
+  private TokenContent tokenContent;
+  private String json;
+  private String compact;
+  private String compactDeflated;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final String[] applications = {"identity-v1", "office-v1", "customer-v1", "accounting-v1", "portfolio-v1"};
+    final List<TokenPermission> tokenPermissions = new ArrayList<>(permissionCount);
+    for (int i = 0; i < permissionCount; i++) {
+      tokenPermissions.add(new TokenPermission(
+          applications[i % applications.length] + "/resource" + (i / applications.length) + "/{identifier}/*",
+          (i % 2 == 0) ? EnumSet.of(AllowedOperation.READ) : EnumSet.allOf(AllowedOperation.class)));
+    }
+    tokenContent = new TokenContent(tokenPermissions);
+
+    json = gson.toJson(tokenContent);
+    compact = CompactTokenContent.encode(tokenContent, false);
+    compactDeflated = CompactTokenContent.encode(tokenContent, true);
+  }
+
+  @Benchmark
+  public String encodeJson(final EncodedLength encodedLength) {
+    final String ret = gson.toJson(tokenContent);
+    encodedLength.encodedLength = ret.getBytes(StandardCharsets.UTF_8).length;
+    return ret;
+  }
+
+  @Benchmark
+  public String encodeCompact(final EncodedLength encodedLength) {
+    final String ret = CompactTokenContent.encode(tokenContent, false);
+    encodedLength.encodedLength = ret.length();
+    return ret;
+  }
+
+  @Benchmark
+  public String encodeCompactDeflated(final EncodedLength encodedLength) {
+    final String ret = CompactTokenContent.encode(tokenContent, true);
+    encodedLength.encodedLength = ret.length();
+    return ret;
+  }
+
+  @Benchmark
+  public TokenContent parseJson() {
+    return gson.fromJson(json, TokenContent.class);
+  }
+
+  @Benchmark
+  public TokenContent parseCompact() {
+    return CompactTokenContent.decode(compact);
+  }
+
+  @Benchmark
+  public TokenContent parseCompactDeflated() {
+    return CompactTokenContent.decode(compactDeflated);
+  }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.fineract.cn.identity.api.v1.client;
 
+import org.apache.fineract.cn.identity.api.v1.domain.ApplicationPage;
 import org.apache.fineract.cn.identity.api.v1.domain.Authentication;
 import org.apache.fineract.cn.identity.api.v1.domain.CallEndpointSet;
 import org.apache.fineract.cn.identity.api.v1.domain.Password;
@@ -25,7 +26,9 @@ import org.apache.fineract.cn.identity.api.v1.domain.Permission;
 import org.apache.fineract.cn.identity.api.v1.domain.PermittableGroup;
 import org.apache.fineract.cn.identity.api.v1.domain.Role;
 import org.apache.fineract.cn.identity.api.v1.domain.RoleIdentifier;
+import org.apache.fineract.cn.identity.api.v1.domain.RolePage;
 import org.apache.fineract.cn.identity.api.v1.domain.User;
+import org.apache.fineract.cn.identity.api.v1.domain.UserPage;
 import org.apache.fineract.cn.identity.api.v1.domain.UserWithPassword;
 import java.util.List;
 import java.util.Set;
@@ -55,6 +58,7 @@ public interface IdentityManager extends Anubis {
   @RequestMapping(value = "/token?grant_type=password", method = RequestMethod.POST,
       consumes = {MediaType.APPLICATION_JSON_VALUE},
       produces = {MediaType.ALL_VALUE})
+  @ThrowsException(status = HttpStatus.SERVICE_UNAVAILABLE, exception = LoginTemporarilyUnavailableException.class)
   Authentication login(@RequestParam("username") String username, @RequestParam("password") String password);
 
   @RequestMapping(value = "/token?grant_type=refresh_token", method = RequestMethod.POST,
@@ -111,6 +115,15 @@ public interface IdentityManager extends Anubis {
           produces = {MediaType.ALL_VALUE})
   List<Role> getRoles();
 
+  /**
+   * @param cursor the next cursor of the previous page, or null for the first page.
+   */
+  @RequestMapping(value = "/roles", method = RequestMethod.GET,
+          consumes = {MediaType.APPLICATION_JSON_VALUE},
+          produces = {MediaType.ALL_VALUE})
+  RolePage getRoles(@RequestParam("pageSize") int pageSize,
+                    @RequestParam(value = "cursor", required = false) String cursor);
+
   @RequestMapping(value = "/roles/{identifier}", method = RequestMethod.DELETE,
           consumes = {MediaType.APPLICATION_JSON_VALUE},
           produces = {MediaType.ALL_VALUE})
@@ -147,11 +160,29 @@ public interface IdentityManager extends Anubis {
       produces = {MediaType.ALL_VALUE})
   List<User> getUsers();
 
+  /**
+   * @param cursor the next cursor of the previous page, or null for the first page.
+   */
+  @RequestMapping(value = "/users", method = RequestMethod.GET,
+      consumes = {MediaType.APPLICATION_JSON_VALUE},
+      produces = {MediaType.ALL_VALUE})
+  UserPage getUsers(@RequestParam("pageSize") int pageSize,
+                    @RequestParam(value = "cursor", required = false) String cursor);
+
   @RequestMapping(value = "/applications", method = RequestMethod.GET,
           consumes = {MediaType.APPLICATION_JSON_VALUE},
           produces = {MediaType.ALL_VALUE})
   List<String> getApplications();
 
+  /**
+   * @param cursor the next cursor of the previous page, or null for the first page.
+   */
+  @RequestMapping(value = "/applications", method = RequestMethod.GET,
+          consumes = {MediaType.APPLICATION_JSON_VALUE},
+          produces = {MediaType.ALL_VALUE})
+  ApplicationPage getApplications(@RequestParam("pageSize") int pageSize,
+                                  @RequestParam(value = "cursor", required = false) String cursor);
+
   @RequestMapping(value = "/applications/{applicationidentifier}/signatures/{timestamp}", method = RequestMethod.PUT,
           consumes = {MediaType.APPLICATION_JSON_VALUE},
           produces = {MediaType.ALL_VALUE})
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.api.v1.domain;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One page of application identifiers, in no particular order.  To get the next page, pass nextCursor as the
+ * cursor of the next request, with the same page size.  nextCursor is null if there are no more applications.  The
+ * last page may be empty.
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class ApplicationPage {
+  private List<String> applications;
+  private String nextCursor;
+
+  public ApplicationPage() {
+  }
+
+  public ApplicationPage(final List<String> applications, final String nextCursor) {
+    this.applications = applications;
+    this.nextCursor = nextCursor;
+  }
+
+  public List<String> getApplications() {
+    return applications;
+  }
+
+  public void setApplications(List<String> applications) {
+    this.applications = applications;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public void setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o)
+      return true;
+    if (o == null || getClass() != o.getClass())
+      return false;
+    ApplicationPage that = (ApplicationPage) o;
+    return Objects.equals(applications, that.applications) && Objects.equals(nextCursor, that.nextCursor);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(applications, nextCursor);
+  }
+
+  @Override
+  public String toString() {
+    return "ApplicationPage{" +
+        "applications=" + applications +
+        ", nextCursor='" + nextCursor + '\'' +
+        '}';
+  }
+}
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.api.v1.token;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenContent;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+
+/**
+ * Compact binary encoding of token content, as an alternative to the JSON form.  Each path is split after its first
+ * '/' into an application prefix and a remainder.  The prefixes are written once, in a dictionary, and each
+ * permission refers to its prefix by index.  The allowed operations of a permission are written as a bit mask.  The
+ * body can optionally be deflated.
+ *
+ * Layout, with all integers written as unsigned varints and all strings as a length followed by UTF-8 bytes:
+ * <pre>
+ *   header byte: version (2) in the low bits, 0x80 set if the rest is deflated
+ *   prefix count, prefixes...
+ *   permission count, (prefix index, remainder, operation mask byte)...
+ * </pre>
+ * The encoded form is base64url without padding, so that it can be put in a token claim or a header.
+ *
+ * Decoding is meant for content received from elsewhere, so it doesn't trust the counts and lengths it reads, and
+ * refuses to inflate a body to more than {@link #MAX_INFLATED_LENGTH} bytes.
+ */
+public final class CompactTokenContent {
+  public static final int VERSION = 2;
+  public static final int MAX_INFLATED_LENGTH = 1024 * 1024;
+
+  private static final int DEFLATED_FLAG = 0x80;
+  private static final int VERSION_MASK = 0x7f;
+  private static final AllowedOperation[] OPERATIONS
+      = {AllowedOperation.READ, AllowedOperation.CHANGE, AllowedOperation.DELETE};
+
+  private CompactTokenContent() {
+  }
+
+  public static String encode(final TokenContent tokenContent, final boolean deflate) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(encodeToBytes(tokenContent, deflate));
+  }
+
+  /**
+   * @throws IllegalArgumentException if the encoded content is malformed, of a different version, or inflates to more
+   * than {@link #MAX_INFLATED_LENGTH} bytes.
+   */
+  public static TokenContent decode(final String encoded) {
+    return decodeFromBytes(Base64.getUrlDecoder().decode(encoded));
+  }
+
+  public static byte[] encodeToBytes(final TokenContent tokenContent, final boolean deflate) {
+    final List<String> prefixes = new ArrayList<>();
+    final Map<String, Integer> prefixIndexes = new HashMap<>();
+    final List<TokenPermission> tokenPermissions = tokenContent.getTokenPermissions();
+    final int[] permissionPrefixes = new int[tokenPermissions.size()];
+    for (int i = 0; i < tokenPermissions.size(); i++) {
+      final String prefix = prefixOf(tokenPermissions.get(i).getPath());
+      permissionPrefixes[i] = prefixIndexes.computeIfAbsent(prefix, x -> {
+        prefixes.add(x);
+        return prefixes.size() - 1;
+      });
+    }
+
+    final ByteArrayOutputStream body = new ByteArrayOutputStream(64 + 16 * tokenPermissions.size());
+    writeVarint(body, prefixes.size());
+    prefixes.forEach(x -> writeString(body, x));
+    writeVarint(body, tokenPermissions.size());
+    for (int i = 0; i < tokenPermissions.size(); i++) {
+      final TokenPermission tokenPermission = tokenPermissions.get(i);
+      writeVarint(body, permissionPrefixes[i]);
+      writeString(body, tokenPermission.getPath().substring(prefixes.get(permissionPrefixes[i]).length()));
+      body.write(toMask(tokenPermission.getAllowedOperations()));
+    }
+
+    final byte[] bodyBytes = deflate ? deflate(body.toByteArray()) : body.toByteArray();
+    final byte[] ret = new byte[bodyBytes.length + 1];
+    ret[0] = (byte) (VERSION | (deflate ? DEFLATED_FLAG : 0));
+    System.arraycopy(bodyBytes, 0, ret, 1, bodyBytes.length);
+    return ret;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the encoded content is malformed, of a different version, or inflates to more
+   * than {@link #MAX_INFLATED_LENGTH} bytes.
+   */
+  public static TokenContent decodeFromBytes(final byte[] encoded) {
+    if (encoded.length == 0 || (encoded[0] & VERSION_MASK) != VERSION)
+      throw new IllegalArgumentException("Not version " + VERSION + " token content.");
+
+    final byte[] body = ((encoded[0] & DEFLATED_FLAG) != 0)
+        ? inflate(encoded, 1)
+        : Arrays.copyOfRange(encoded, 1, encoded.length);
+    final Reader reader = new Reader(body);
+
+    //Each prefix takes at least one byte, and each permission at least three, so larger counts are malformed.
+    final int prefixCount = reader.readCount(1);
+    final String[] prefixes = new String[prefixCount];
+    for (int i = 0; i < prefixCount; i++)
+      prefixes[i] = reader.readString();
+
+    final int permissionCount = reader.readCount(3);
+    final List<TokenPermission> tokenPermissions = new ArrayList<>(permissionCount);
+    for (int i = 0; i < permissionCount; i++) {
+      final int prefixIndex = reader.readVarint();
+      if (prefixIndex >= prefixCount)
+        throw new IllegalArgumentException("Token content refers to an unknown path prefix.");
+      final String path = prefixes[prefixIndex] + reader.readString();
+      tokenPermissions.add(new TokenPermission(path, fromMask(reader.readByte())));
+    }
+
+    if (!reader.isAtEnd())
+      throw new IllegalArgumentException("Token content has trailing bytes.");
+
+    return new TokenContent(tokenPermissions);
+  }
+
+  static String prefixOf(final String path) {
+    final int slash = path.indexOf('/');
+    return slash < 0 ? "" : path.substring(0, slash + 1);
+  }
+
+  static int toMask(final Set<AllowedOperation> allowedOperations) {
+    int ret = 0;
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      if (allowedOperations.contains(OPERATIONS[i]))
+        ret |= 1 << i;
+    }
+    if (Integer.bitCount(ret) != allowedOperations.size())
+      throw new IllegalArgumentException("Token content contains an operation which can't be encoded.");
+    return ret;
+  }
+
+  static Set<AllowedOperation> fromMask(final int mask) {
+    if ((mask & ~((1 << OPERATIONS.length) - 1)) != 0)
+      throw new IllegalArgumentException("Token content contains an unknown operation.");
+
+    final Set<AllowedOperation> ret = EnumSet.noneOf(AllowedOperation.class);
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      if ((mask & (1 << i)) != 0)
+        ret.add(OPERATIONS[i]);
+    }
+    return ret;
+  }
+
+  private static void writeVarint(final ByteArrayOutputStream out, final int value) {
+    int remaining = value;
+    while ((remaining & ~0x7f) != 0) {
+      out.write((remaining & 0x7f) | 0x80);
+      remaining >>>= 7;
+    }
+    out.write(remaining);
+  }
+
+  private static void writeString(final ByteArrayOutputStream out, final String value) {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, bytes.length);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  private static byte[] deflate(final byte[] bytes) {
+    final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    try {
+      deflater.setInput(bytes);
+      deflater.finish();
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+      final byte[] buffer = new byte[512];
+      while (!deflater.finished()) {
+        final int count = deflater.deflate(buffer);
+        out.write(buffer, 0, count);
+      }
+      return out.toByteArray();
+    }
+    finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(final byte[] bytes, final int offset) {
+    final Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(bytes, offset, bytes.length - offset);
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(bytes.length * 4, MAX_INFLATED_LENGTH));
+      final byte[] buffer = new byte[512];
+      while (!inflater.finished()) {
+        final int count = inflater.inflate(buffer);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+          throw new IllegalArgumentException("Token content is truncated.");
+        if (out.size() + count > MAX_INFLATED_LENGTH)
+          throw new IllegalArgumentException("Token content inflates to more than " + MAX_INFLATED_LENGTH + " bytes.");
+        out.write(buffer, 0, count);
+      }
+      return out.toByteArray();
+    }
+    catch (final DataFormatException e) {
+      throw new IllegalArgumentException("Token content could not be inflated.", e);
+    }
+    finally {
+      inflater.end();
+    }
+  }
+
+  private static class Reader {
+    private final byte[] bytes;
+    private int position = 0;
+
+    private Reader(final byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    private int readByte() {
+      if (position >= bytes.length)
+        throw new IllegalArgumentException("Token content is truncated.");
+      return bytes[position++] & 0xff;
+    }
+
+    private int readVarint() {
+      int ret = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        final int b = readByte();
+        ret |= (b & 0x7f) << shift;
+        if ((b & 0x80) == 0) {
+          if (ret < 0)
+            throw new IllegalArgumentException("Token content contains a negative length.");
+          return ret;
+        }
+      }
+      throw new IllegalArgumentException("Token content contains a malformed number.");
+    }
+
+    /**
+     * @param minimumItemLength the fewest bytes each of the counted items can take.
+     */
+    private int readCount(final int minimumItemLength) {
+      final int ret = readVarint();
+      if (ret > (bytes.length - position) / minimumItemLength)
+        throw new IllegalArgumentException("Token content is truncated.");
+      return ret;
+    }
+
+    private String readString() {
+      final int length = readVarint();
+      if (length > bytes.length - position)
+        throw new IllegalArgumentException("Token content is truncated.");
+      final String ret = new String(bytes, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return ret;
+    }
+
+    private boolean isAtEnd() {
+      return position == bytes.length;
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.api.v1.token;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenContent;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactTokenContentTest {
+
+  @Test
+  public void roundTrip() {
+    final TokenContent tokenContent = adminTokenContent();
+
+    final TokenContent plain = CompactTokenContent.decode(CompactTokenContent.encode(tokenContent, false));
+    final TokenContent deflated = CompactTokenContent.decode(CompactTokenContent.encode(tokenContent, true));
+
+    Assert.assertEquals(toMap(tokenContent), toMap(plain));
+    Assert.assertEquals(toMap(tokenContent), toMap(deflated));
+  }
+
+  @Test
+  public void roundTripOfUnusualPaths() {
+    final TokenContent tokenContent = new TokenContent(Arrays.asList(
+        new TokenPermission("noslash", EnumSet.of(AllowedOperation.READ)),
+        new TokenPermission("/leadingslash", EnumSet.noneOf(AllowedOperation.class)),
+        new TokenPermission("\u00fcbung-v1/stra\u00dfe/{id}", EnumSet.allOf(AllowedOperation.class))));
+
+    final TokenContent decoded = CompactTokenContent.decode(CompactTokenContent.encode(tokenContent, false));
+
+    Assert.assertEquals(toMap(tokenContent), toMap(decoded));
+  }
+
+  @Test
+  public void roundTripOfEmptyContent() {
+    final TokenContent decoded = CompactTokenContent.decode(
+        CompactTokenContent.encode(new TokenContent(Collections.emptyList()), true));
+
+    Assert.assertTrue(decoded.getTokenPermissions().isEmpty());
+  }
+
+  @Test
+  public void compactIsSmallerThanPathsAlone() {
+    final TokenContent tokenContent = adminTokenContent();
+    final int pathBytes = tokenContent.getTokenPermissions().stream().mapToInt(x -> x.getPath().length()).sum();
+
+    Assert.assertTrue(CompactTokenContent.encodeToBytes(tokenContent, false).length < pathBytes);
+    Assert.assertTrue(CompactTokenContent.encodeToBytes(tokenContent, true).length
+        < CompactTokenContent.encodeToBytes(tokenContent, false).length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void otherVersionIsRejected() {
+    final byte[] encoded = CompactTokenContent.encodeToBytes(adminTokenContent(), false);
+    encoded[0] = 1;
+    CompactTokenContent.decodeFromBytes(encoded);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void truncatedContentIsRejected() {
+    final byte[] encoded = CompactTokenContent.encodeToBytes(adminTokenContent(), false);
+    CompactTokenContent.decodeFromBytes(Arrays.copyOf(encoded, encoded.length - 3));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void truncatedDeflatedContentIsRejected() {
+    final byte[] encoded = CompactTokenContent.encodeToBytes(adminTokenContent(), true);
+    CompactTokenContent.decodeFromBytes(Arrays.copyOf(encoded, encoded.length / 2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void contentInflatingTooFarIsRejected() {
+    final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+    deflater.setInput(new byte[CompactTokenContent.MAX_INFLATED_LENGTH + 1]);
+    deflater.finish();
+    final byte[] buffer = new byte[64 * 1024];
+    buffer[0] = (byte) (CompactTokenContent.VERSION | 0x80);
+    int length = 0;
+    while (!deflater.finished())
+      length += deflater.deflate(buffer, 1 + length, buffer.length - 1 - length);
+    deflater.end();
+
+    CompactTokenContent.decodeFromBytes(Arrays.copyOf(buffer, length + 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void countLargerThanContentIsRejected() {
+    //No prefixes, then a permission count of 2^28.
+    CompactTokenContent.decodeFromBytes(new byte[] {CompactTokenContent.VERSION, 0, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 1});
+  }
+
+  private static Map<String, Set<AllowedOperation>> toMap(final TokenContent tokenContent) {
+    final Map<String, Set<AllowedOperation>> ret = new HashMap<>();
+    tokenContent.getTokenPermissions().forEach(x -> ret.put(x.getPath(), x.getAllowedOperations()));
+    return ret;
+  }
+
+  static TokenContent adminTokenContent() {
+    final List<TokenPermission> tokenPermissions = new ArrayList<>();
+    for (final String application : Arrays.asList("identity-v1", "office-v1", "customer-v1", "accounting-v1")) {
+      for (int i = 0; i < 25; i++) {
+        tokenPermissions.add(new TokenPermission(application + "/resource" + i + "/{identifier}",
+            EnumSet.of(AllowedOperation.READ, AllowedOperation.CHANGE)));
+        tokenPermissions.add(new TokenPermission(application + "/resource" + i + "/*",
+            EnumSet.allOf(AllowedOperation.class)));
+      }
+    }
+    return new TokenContent(tokenPermissions);
+  }
+}
@@ -38,9 +38,11 @@ import org.apache.fineract.cn.anubis.test.v1.TenantApplicationSecurityEnvironmen
 import org.apache.fineract.cn.api.config.EnableApiFactory;
 import org.apache.fineract.cn.api.context.AutoGuest;
 import org.apache.fineract.cn.api.context.AutoUserContext;
+import org.apache.fineract.cn.api.util.ApiConstants;
 import org.apache.fineract.cn.api.util.ApiFactory;
 import org.apache.fineract.cn.api.util.UserContextHolder;
 import org.apache.fineract.cn.identity.config.IdentityServiceConfig;
+import org.apache.fineract.cn.lang.TenantContextHolder;
 import org.apache.fineract.cn.lang.security.RsaKeyPairFactory;
 import org.apache.fineract.cn.test.env.TestEnvironment;
 import org.apache.fineract.cn.test.fixture.TenantDataStoreContextTestRule;
@@ -55,8 +57,13 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.client.RestTemplate;
 
 /**
  * @author Myrle Krantz
@@ -83,6 +90,7 @@ public class AbstractIdentityTest extends SuiteTestEnvironment {
   static final String ADMIN_IDENTIFIER = "antony";
   static final String AHMES_PASSWORD = "fractions";
   static final String AHMES_FRIENDS_PASSWORD = "sekhem";
+  static final String NDJSON = "application/x-ndjson";
 
   @ClassRule
   public final static TenantDataStoreContextTestRule tenantDataStoreContext = TenantDataStoreContextTestRule.forRandomTenantName(cassandraInitializer);
@@ -266,6 +274,20 @@ public class AbstractIdentityTest extends SuiteTestEnvironment {
     return new ApplicationSignatureTestData(testApplicationName, keyPair);
   }
 
+  /**
+   * Gets the resource as the user of the current user context, without the feign client, so that the accepted media
+   * type can be chosen.
+   */
+  ResponseEntity<String> getAccepting (final String path, final String mediaType) {
+    final HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.ACCEPT, mediaType);
+    headers.set(ApiConstants.AUTHORIZATION_HEADER, UserContextHolder.checkedGetAccessToken());
+    headers.set(ApiConstants.USER_HEADER, UserContextHolder.checkedGetUser());
+    headers.set(TenantContextHolder.TENANT_IDENTIFIER_HEADER, TenantContextHolder.checkedGetIdentifier());
+    return new RestTemplate().exchange(testEnvironment.serverURI() + path, HttpMethod.GET,
+            new HttpEntity<>(headers), String.class);
+  }
+
   void createApplicationPermission (final String applicationIdentifier, final Permission permission) throws InterruptedException {
     getTestSubject().createApplicationPermission(applicationIdentifier, permission);
     Assert.assertTrue(eventRecorder.wait(EventConstants.OPERATION_POST_APPLICATION_PERMISSION,
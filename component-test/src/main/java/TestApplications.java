@@ -17,6 +17,7 @@
  * under the License.
  */
 import org.apache.fineract.cn.identity.api.v1.PermittableGroupIds;
+import org.apache.fineract.cn.identity.api.v1.domain.ApplicationPage;
 import org.apache.fineract.cn.identity.api.v1.domain.Authentication;
 import org.apache.fineract.cn.identity.api.v1.domain.CallEndpointSet;
 import org.apache.fineract.cn.identity.api.v1.domain.Permission;
@@ -24,16 +25,20 @@ import org.apache.fineract.cn.identity.api.v1.domain.User;
 import org.apache.fineract.cn.identity.api.v1.events.ApplicationCallEndpointSetEvent;
 import org.apache.fineract.cn.identity.api.v1.events.ApplicationPermissionEvent;
 import org.apache.fineract.cn.identity.api.v1.events.ApplicationPermissionUserEvent;
+import org.apache.fineract.cn.identity.api.v1.events.ApplicationSignatureEvent;
 import org.apache.fineract.cn.identity.api.v1.events.EventConstants;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.Signature;
 import org.apache.fineract.cn.anubis.token.TenantRefreshTokenSerializer;
 import org.apache.fineract.cn.anubis.token.TokenSerializationResult;
 import org.apache.fineract.cn.api.context.AutoUserContext;
 import org.apache.fineract.cn.api.util.NotFoundException;
+import org.apache.fineract.cn.lang.security.RsaKeyPairFactory;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -60,6 +65,35 @@ public class TestApplications extends AbstractIdentityTest {
     }
   }
 
+  @Test
+  public void testApplicationPagesListApplicationsOnceWhateverTheirKeyCount() throws InterruptedException {
+    try (final AutoUserContext ignored
+                 = tenantApplicationSecurityEnvironment.createAutoSeshatContext()) {
+      final ApplicationSignatureTestData appPlusSig = setApplicationSignature();
+      final ApplicationSignatureTestData otherAppPlusSig = setApplicationSignature();
+
+      final String rotatedKeyTimestamp = "2099-01-01T00_00_00";
+      final RsaKeyPairFactory.KeyPairHolder rotatedKeyPair = RsaKeyPairFactory.createKeyPair();
+      getTestSubject().setApplicationSignature(appPlusSig.getApplicationIdentifier(), rotatedKeyTimestamp,
+              new Signature(rotatedKeyPair.getPublicKeyMod(), rotatedKeyPair.getPublicKeyExp()));
+      Assert.assertTrue(eventRecorder.wait(EventConstants.OPERATION_PUT_APPLICATION_SIGNATURE,
+              new ApplicationSignatureEvent(appPlusSig.getApplicationIdentifier(), rotatedKeyTimestamp)));
+
+      final List<String> listed = new ArrayList<>();
+      String cursor = null;
+      do {
+        final ApplicationPage page = getTestSubject().getApplications(2, cursor);
+        Assert.assertTrue(page.getApplications().size() <= 2);
+        listed.addAll(page.getApplications());
+        cursor = page.getNextCursor();
+      } while (cursor != null);
+
+      Assert.assertEquals(1, Collections.frequency(listed, appPlusSig.getApplicationIdentifier()));
+      Assert.assertEquals(1, Collections.frequency(listed, otherAppPlusSig.getApplicationIdentifier()));
+      Assert.assertEquals(1, Collections.frequency(getTestSubject().getApplications(), appPlusSig.getApplicationIdentifier()));
+    }
+  }
+
   @Test
   public void testCreateAndDeleteApplicationPermission() throws InterruptedException {
     try (final AutoUserContext ignored
@@ -18,13 +18,17 @@
  */
 import static org.apache.fineract.cn.identity.internal.util.IdentityConstants.SU_ROLE;
 
+import com.google.gson.Gson;
 import org.apache.fineract.cn.identity.api.v1.domain.Permission;
 import org.apache.fineract.cn.identity.api.v1.domain.Role;
+import org.apache.fineract.cn.identity.api.v1.domain.RolePage;
 import org.apache.fineract.cn.identity.api.v1.events.EventConstants;
 import org.apache.fineract.cn.api.context.AutoUserContext;
 import org.apache.fineract.cn.api.util.NotFoundException;
 import org.junit.Assert;
 import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -99,6 +103,64 @@ public class TestRoles extends AbstractIdentityTest {
     }
   }
 
+  @Test
+  public void testRolePagesContainEveryRoleOnce() throws InterruptedException {
+    try (final AutoUserContext ignore = loginAdmin()) {
+      final Set<String> created = new HashSet<>(Arrays.asList(
+              createRoleManagementRole(), createRoleManagementRole(), createRoleManagementRole()));
+
+      final List<String> listed = new ArrayList<>();
+      String cursor = null;
+      do {
+        final RolePage page = getTestSubject().getRoles(2, cursor);
+        Assert.assertTrue(page.getRoles().size() <= 2);
+        page.getRoles().forEach(x -> listed.add(x.getIdentifier()));
+        cursor = page.getNextCursor();
+      } while (cursor != null);
+
+      Assert.assertEquals(new HashSet<>(listed).size(), listed.size());
+      Assert.assertTrue(listed.containsAll(created));
+      Assert.assertEquals(new HashSet<>(listed),
+              getTestSubject().getRoles().stream().map(Role::getIdentifier).collect(Collectors.toSet()));
+    }
+  }
+
+  @Test
+  public void testRolesAreStreamedAsNdjson() throws InterruptedException {
+    try (final AutoUserContext ignore = loginAdmin()) {
+      final String created = createRoleManagementRole();
+
+      final ResponseEntity<String> response = getAccepting("/roles", NDJSON);
+      Assert.assertTrue(MediaType.valueOf(NDJSON).isCompatibleWith(response.getHeaders().getContentType()));
+
+      final Gson gson = new Gson();
+      final List<String> streamed = Arrays.stream(response.getBody().split("\n"))
+              .map(x -> gson.fromJson(x, Role.class).getIdentifier())
+              .collect(Collectors.toList());
+
+      Assert.assertEquals(new HashSet<>(streamed).size(), streamed.size());
+      Assert.assertTrue(streamed.contains(created));
+      Assert.assertEquals(new HashSet<>(streamed),
+              getTestSubject().getRoles().stream().map(Role::getIdentifier).collect(Collectors.toSet()));
+    }
+  }
+
+  @Test
+  public void testRolesAcceptingAnythingAreListedAsJson() throws InterruptedException {
+    try (final AutoUserContext ignore = loginAdmin()) {
+      final ResponseEntity<String> response = getAccepting("/roles", MediaType.ALL_VALUE);
+      Assert.assertTrue(MediaType.APPLICATION_JSON.isCompatibleWith(response.getHeaders().getContentType()));
+      Assert.assertEquals(getTestSubject().getRoles().size(), new Gson().fromJson(response.getBody(), Role[].class).length);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rolePageWithInvalidCursorIsRejected() throws InterruptedException {
+    try (final AutoUserContext ignore = loginAdmin()) {
+      getTestSubject().getRoles(2, "0badc0de");
+    }
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void shouldNotBeAbleToCreateRoleNamedDeactivated() throws InterruptedException {
     try (final AutoUserContext ignore = loginAdmin()) {
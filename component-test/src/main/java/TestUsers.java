@@ -19,12 +19,14 @@
 import static org.apache.fineract.cn.identity.internal.util.IdentityConstants.SU_NAME;
 import static org.apache.fineract.cn.identity.internal.util.IdentityConstants.SU_ROLE;
 
+import com.google.gson.Gson;
 import org.apache.fineract.cn.identity.api.v1.PermittableGroupIds;
 import org.apache.fineract.cn.identity.api.v1.domain.Authentication;
 import org.apache.fineract.cn.identity.api.v1.domain.Permission;
 import org.apache.fineract.cn.identity.api.v1.domain.Role;
 import org.apache.fineract.cn.identity.api.v1.domain.RoleIdentifier;
 import org.apache.fineract.cn.identity.api.v1.domain.User;
+import org.apache.fineract.cn.identity.api.v1.domain.UserPage;
 import org.apache.fineract.cn.identity.api.v1.domain.UserWithPassword;
 import org.apache.fineract.cn.identity.api.v1.events.EventConstants;
 import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
@@ -32,10 +34,15 @@ import org.apache.fineract.cn.api.context.AutoUserContext;
 import org.apache.fineract.cn.test.env.TestEnvironment;
 import org.junit.Assert;
 import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * @author Myrle Krantz
@@ -75,6 +82,66 @@ public class TestUsers extends AbstractIdentityTest {
     }
   }
 
+  @Test
+  public void testUserPagesContainEveryUserOnce() throws InterruptedException {
+    final Set<String> created = new HashSet<>(Arrays.asList(
+            createUserWithNonexpiredPassword(AHMES_PASSWORD, ADMIN_ROLE),
+            createUserWithNonexpiredPassword(AHMES_PASSWORD, ADMIN_ROLE),
+            createUserWithNonexpiredPassword(AHMES_PASSWORD, ADMIN_ROLE)));
+
+    try (final AutoUserContext ignore = loginAdmin()) {
+      final List<String> listed = new ArrayList<>();
+      String cursor = null;
+      do {
+        final UserPage page = getTestSubject().getUsers(2, cursor);
+        Assert.assertTrue(page.getUsers().size() <= 2);
+        page.getUsers().forEach(x -> listed.add(x.getIdentifier()));
+        cursor = page.getNextCursor();
+      } while (cursor != null);
+
+      Assert.assertEquals(new HashSet<>(listed).size(), listed.size());
+      Assert.assertTrue(listed.containsAll(created));
+      Assert.assertEquals(new HashSet<>(listed),
+              getTestSubject().getUsers().stream().map(User::getIdentifier).collect(Collectors.toSet()));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void userPageWithInvalidCursorIsRejected() throws InterruptedException {
+    try (final AutoUserContext ignore = loginAdmin()) {
+      getTestSubject().getUsers(2, "0badc0de");
+    }
+  }
+
+  @Test
+  public void testUsersAreStreamedAsNdjson() throws InterruptedException {
+    final String created = createUserWithNonexpiredPassword(AHMES_PASSWORD, ADMIN_ROLE);
+
+    try (final AutoUserContext ignore = loginAdmin()) {
+      final ResponseEntity<String> response = getAccepting("/users", NDJSON);
+      Assert.assertTrue(MediaType.valueOf(NDJSON).isCompatibleWith(response.getHeaders().getContentType()));
+
+      final Gson gson = new Gson();
+      final List<String> streamed = Arrays.stream(response.getBody().split("\n"))
+              .map(x -> gson.fromJson(x, User.class).getIdentifier())
+              .collect(Collectors.toList());
+
+      Assert.assertEquals(new HashSet<>(streamed).size(), streamed.size());
+      Assert.assertTrue(streamed.contains(created));
+      Assert.assertEquals(new HashSet<>(streamed),
+              getTestSubject().getUsers().stream().map(User::getIdentifier).collect(Collectors.toSet()));
+    }
+  }
+
+  @Test
+  public void testUsersAcceptingAnythingAreListedAsJson() throws InterruptedException {
+    try (final AutoUserContext ignore = loginAdmin()) {
+      final ResponseEntity<String> response = getAccepting("/users", MediaType.ALL_VALUE);
+      Assert.assertTrue(MediaType.APPLICATION_JSON.isCompatibleWith(response.getHeaders().getContentType()));
+      Assert.assertEquals(getTestSubject().getUsers().size(), new Gson().fromJson(response.getBody(), User[].class).length);
+    }
+  }
+
   @Test
   public void testChangeUserRole() throws InterruptedException {
     final String userIdentifier = createUserWithNonexpiredPassword(AHMES_PASSWORD, ADMIN_ROLE);
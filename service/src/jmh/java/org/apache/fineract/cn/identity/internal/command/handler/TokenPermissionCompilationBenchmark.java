@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.command.handler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+import org.apache.fineract.cn.identity.internal.repository.AllowedOperationType;
+import org.apache.fineract.cn.identity.internal.repository.PermissionType;
+import org.apache.fineract.cn.identity.internal.repository.PermittableGroupEntity;
+import org.apache.fineract.cn.identity.internal.repository.PermittableType;
+import org.apache.fineract.cn.identity.internal.service.RoleMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the stream based compilation of a role's token permissions, as it was done before, with the compilation
+ * into a reused {@link TokenPermissionBuilder}.  Both expand the same groups the same way, and both end with the
+ * wildcard compaction.  Run with the gc profiler (configured in build.gradle), and compare gc.alloc.rate.norm, which
+ * is the number of bytes allocated per compiled token.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenPermissionCompilationBenchmark {
+  @Param({"20", "200"})
+  public int groupCount;
+
+  private static final int PERMITTABLES_PER_GROUP = 8;
+  private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+
+  private Map<String, PermittableGroupEntity> permittableGroups;
+  private List<PermissionType> rolePermissions;
+  private final TokenPermissionBuilder builder = new TokenPermissionBuilder();
+
+  @Setup(Level.Trial)
+  public void setup() {
+    permittableGroups = new HashMap<>();
+    rolePermissions = new ArrayList<>();
+    for (int i = 0; i < groupCount; i++) {
+      final String identifier = "group" + i;
+      final List<PermittableType> permittables = new ArrayList<>();
+      for (int j = 0; j < PERMITTABLES_PER_GROUP; j++) {
+        final PermittableType permittable = new PermittableType();
+        permittable.setPath("app" + (i % 5) + "-v1/resource" + (i / 5) + "/" + ((j < 4) ? "*" : "{identifier}/sub" + j));
+        permittable.setMethod(METHODS[j % METHODS.length]);
+        permittables.add(permittable);
+      }
+      final PermittableGroupEntity group = new PermittableGroupEntity();
+      group.setIdentifier(identifier);
+      group.setPermittables(permittables);
+      permittableGroups.put(identifier, group);
+
+      final Set<AllowedOperationType> allowedOperations = (i % 3 == 0)
+          ? EnumSet.of(AllowedOperationType.READ)
+          : EnumSet.allOf(AllowedOperationType.class);
+      rolePermissions.add(new PermissionType(identifier, allowedOperations));
+    }
+  }
+
+  @Benchmark
+  public Set<TokenPermission> streams() {
+    final Set<TokenPermission> tokenPermissions = rolePermissions.stream()
+        .flatMap(this::mapPermissions)
+        .collect(Collectors.toSet());
+
+    final Map<String, Set<AllowedOperation>> allowedOperationsByPath = new HashMap<>();
+    tokenPermissions.forEach(tokenPermission ->
+        allowedOperationsByPath.computeIfAbsent(tokenPermission.getPath(), path -> new HashSet<>())
+            .addAll(tokenPermission.getAllowedOperations()));
+
+    final List<TokenPermission> merged = allowedOperationsByPath.entrySet().stream()
+        .map(x -> new TokenPermission(x.getKey(), x.getValue()))
+        .collect(Collectors.toList());
+    return new HashSet<>(TokenPermissionCompactor.compact(merged));
+  }
+
+  @Benchmark
+  public Set<TokenPermission> builder() {
+    builder.clear();
+    for (final PermissionType permission : rolePermissions) {
+      final PermittableGroupEntity group = permittableGroups.get(permission.getPermittableGroupIdentifier());
+      if (group == null)
+        continue;
+      for (final PermittableType permittable : group.getPermittables()) {
+        final AllowedOperationType allowedOperation = AllowedOperationType.fromHttpMethod(permittable.getMethod());
+        if (permission.getAllowedOperations().contains(allowedOperation))
+          builder.add(permittable.getPath(), allowedOperation);
+      }
+    }
+    return builder.build();
+  }
+
+  private Stream<TokenPermission> mapPermissions(final PermissionType permission) {
+    final PermittableGroupEntity group = permittableGroups.get(permission.getPermittableGroupIdentifier());
+    final Collection<PermittableType> permittables = (group == null) ? new ArrayList<>() : group.getPermittables();
+    return permittables.stream()
+        .filter(x -> permission.getAllowedOperations().contains(AllowedOperationType.fromHttpMethod(x.getMethod())))
+        .map(x -> {
+          final HashSet<AllowedOperation> allowedOperations = new HashSet<>();
+          allowedOperations.add(RoleMapper.mapAllowedOperation(AllowedOperationType.fromHttpMethod(x.getMethod())));
+          return new TokenPermission(x.getPath(), allowedOperations);
+        });
+  }
+}
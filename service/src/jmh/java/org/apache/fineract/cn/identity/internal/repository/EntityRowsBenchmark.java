@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.repository;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.TupleType;
+import com.datastax.driver.core.TupleValue;
+import com.datastax.driver.core.TypeCodec;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares decoding the permissions column of a role row, and the permittables column of a permittable group row,
+ * with {@link EntityRows} and the way the object mapper decodes them: the driver's codec first turns the list into
+ * value objects, from which each field is read through the codec registry and set by reflection.  User defined type
+ * values are serialized like tuples of their fields, so the driver's tuple codec stands in for the mapper's user
+ * defined type codec, which needs a cluster to be created.  Run with the gc profiler (configured in build.gradle), and
+ * compare gc.alloc.rate.norm, which is the number of bytes allocated per decoded row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityRowsBenchmark {
+  @Param({"20", "500"})
+  public int elementCount;
+
+  private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+
+  private final CodecRegistry codecRegistry = new CodecRegistry();
+  private TypeCodec<List<TupleValue>> permissionsCodec;
+  private TypeCodec<List<TupleValue>> permittablesCodec;
+  private ByteBuffer permissions;
+  private ByteBuffer permittables;
+  private Method setPermittableGroupIdentifier;
+  private Method setAllowedOperations;
+  private Method setPath;
+  private Method setMethod;
+  private Method setSourceGroupId;
+
+  @Setup(Level.Trial)
+  public void setup() throws ReflectiveOperationException {
+    final TupleType permissionType = TupleType.of(ProtocolVersion.V4, codecRegistry,
+        DataType.text(), DataType.set(DataType.text()));
+    final TupleType permittableType = TupleType.of(ProtocolVersion.V4, codecRegistry,
+        DataType.text(), DataType.text(), DataType.text());
+    permissionsCodec = TypeCodec.list(TypeCodec.tuple(permissionType));
+    permittablesCodec = TypeCodec.list(TypeCodec.tuple(permittableType));
+
+    final List<TupleValue> permissionValues = new ArrayList<>(elementCount);
+    final List<TupleValue> permittableValues = new ArrayList<>(elementCount);
+    for (int i = 0; i < elementCount; i++) {
+      final Set<String> allowedOperations = new HashSet<>();
+      allowedOperations.add(AllowedOperationType.READ.name());
+      if (i % 3 != 0) {
+        allowedOperations.add(AllowedOperationType.CHANGE.name());
+        allowedOperations.add(AllowedOperationType.DELETE.name());
+      }
+      permissionValues.add(permissionType.newValue("identity__v1__group" + i, allowedOperations));
+      permittableValues.add(permittableType.newValue(
+          "app" + (i % 5) + "-v1/resource" + (i / 5) + "/{identifier}/sub" + i,
+          METHODS[i % METHODS.length],
+          "app" + (i % 5) + "__v1__group" + (i / 5)));
+    }
+    permissions = permissionsCodec.serialize(permissionValues, ProtocolVersion.V4);
+    permittables = permittablesCodec.serialize(permittableValues, ProtocolVersion.V4);
+
+    setPermittableGroupIdentifier = PermissionType.class.getMethod("setPermittableGroupIdentifier", String.class);
+    setAllowedOperations = PermissionType.class.getMethod("setAllowedOperations", Set.class);
+    setPath = PermittableType.class.getMethod("setPath", String.class);
+    setMethod = PermittableType.class.getMethod("setMethod", String.class);
+    setSourceGroupId = PermittableType.class.getMethod("setSourceGroupId", String.class);
+
+    if (!permissionsThroughDriver().equals(permissions()) || !permittablesThroughDriver().equals(permittables()))
+      throw new IllegalStateException("The decoders disagree.");
+  }
+
+  @Benchmark
+  public List<PermissionType> permissionsThroughDriver() throws ReflectiveOperationException {
+    final List<TupleValue> values = permissionsCodec.deserialize(permissions.duplicate(), ProtocolVersion.V4);
+    final List<PermissionType> ret = new ArrayList<>(values.size());
+    for (final TupleValue value : values) {
+      final PermissionType permission = PermissionType.class.newInstance();
+      setPermittableGroupIdentifier.invoke(permission, value.getString(0));
+      final Set<AllowedOperationType> allowedOperations = new HashSet<>();
+      for (final String name : value.getSet(1, String.class))
+        allowedOperations.add(AllowedOperationType.valueOf(name));
+      setAllowedOperations.invoke(permission, allowedOperations);
+      ret.add(permission);
+    }
+    return ret;
+  }
+
+  @Benchmark
+  public List<PermissionType> permissions() {
+    return EntityRows.toPermissions(permissions);
+  }
+
+  @Benchmark
+  public List<PermittableType> permittablesThroughDriver() throws ReflectiveOperationException {
+    final List<TupleValue> values = permittablesCodec.deserialize(permittables.duplicate(), ProtocolVersion.V4);
+    final List<PermittableType> ret = new ArrayList<>(values.size());
+    for (final TupleValue value : values) {
+      final PermittableType permittable = PermittableType.class.newInstance();
+      setPath.invoke(permittable, value.getString(0));
+      setMethod.invoke(permittable, value.getString(1));
+      setSourceGroupId.invoke(permittable, value.getString(2));
+      ret.add(permittable);
+    }
+    return ret;
+  }
+
+  @Benchmark
+  public List<PermittableType> permittables() {
+    return EntityRows.toPermittables(permittables);
+  }
+}
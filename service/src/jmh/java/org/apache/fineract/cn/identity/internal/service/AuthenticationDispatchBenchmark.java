@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import com.google.gson.Gson;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.fineract.cn.anubis.security.AmitAuthenticationException;
+import org.apache.fineract.cn.cassandra.core.TenantAwareEntityTemplate;
+import org.apache.fineract.cn.command.annotation.Aggregate;
+import org.apache.fineract.cn.command.annotation.CommandHandler;
+import org.apache.fineract.cn.command.annotation.CommandLogLevel;
+import org.apache.fineract.cn.command.domain.CommandProcessingException;
+import org.apache.fineract.cn.command.gateway.CommandGateway;
+import org.apache.fineract.cn.command.internal.CommandBus;
+import org.apache.fineract.cn.identity.api.v1.domain.Authentication;
+import org.apache.fineract.cn.identity.internal.command.AuthenticationCommandResponse;
+import org.apache.fineract.cn.identity.internal.command.PasswordAuthenticationCommand;
+import org.apache.fineract.cn.identity.internal.command.handler.AuthenticationCommandHandler;
+import org.apache.fineract.cn.identity.rest.AuthorizationRestController;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Compares the cost of a password login through the token endpoint when the controller calls the authentication
+ * handler directly, with the cost of the same login going through the command gateway.  Both paths use the real
+ * controller, so the gateway path includes the command bus' handler lookup, command storage, the hand-off to another
+ * thread, and the controller's unwrapping of the resulting exceptions.  The handler itself is a stub, and the command
+ * store and event template are mocks, so only the dispatch is measured.
+ *
+ * The command bus runs its dispatch asynchronously when it is a Spring bean.  Here that is modelled by running it on a
+ * pool without a queue, as configured in application.yml.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthenticationDispatchBenchmark {
+  private static final String TENANT = "benchmark";
+  private static final PasswordAuthenticationCommand SUCCEEDING = new PasswordAuthenticationCommand("good", "password");
+  private static final PasswordAuthenticationCommand FAILING = new PasswordAuthenticationCommand("bad", "password");
+
+  @Aggregate
+  public static class StubAuthenticationAggregate {
+    private final AuthenticationCommandHandler authenticationCommandHandler;
+
+    StubAuthenticationAggregate(final AuthenticationCommandHandler authenticationCommandHandler) {
+      this.authenticationCommandHandler = authenticationCommandHandler;
+    }
+
+    @CommandHandler(logStart = CommandLogLevel.DEBUG, logFinish = CommandLogLevel.DEBUG)
+    public AuthenticationCommandResponse process(final PasswordAuthenticationCommand command)
+        throws AmitAuthenticationException {
+      return authenticationCommandHandler.process(command);
+    }
+  }
+
+  private AuthorizationRestController directController;
+  private AuthorizationRestController gatewayController;
+  private HttpServletRequest request;
+  private HttpServletResponse response;
+  private ExecutorService commandExecutor;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final AuthenticationCommandResponse commandResponse = new AuthenticationCommandResponse(
+        "access", "2017-01-01T00:00", "refresh", "2017-01-01T00:00", "2017-01-01");
+    final AuthenticationCommandHandler authenticationCommandHandler = Mockito.mock(AuthenticationCommandHandler.class);
+    Mockito.when(authenticationCommandHandler.process(Mockito.any(PasswordAuthenticationCommand.class)))
+        .thenAnswer(invocation -> {
+          final PasswordAuthenticationCommand command = (PasswordAuthenticationCommand) invocation.getArguments()[0];
+          if (command.getUseridentifier().equals(SUCCEEDING.getUseridentifier()))
+            return commandResponse;
+          throw AmitAuthenticationException.userPasswordCombinationNotFound();
+        });
+
+    final Logger logger = Mockito.mock(Logger.class);
+    final ApplicationContext applicationContext = Mockito.mock(ApplicationContext.class);
+    Mockito.when(applicationContext.getBeansWithAnnotation(Aggregate.class))
+        .thenReturn(Collections.singletonMap("authenticationAggregate",
+            new StubAuthenticationAggregate(authenticationCommandHandler)));
+
+    commandExecutor = Executors.newCachedThreadPool();
+    final CommandBus commandBus = new CommandBus(
+        Mockito.mock(Environment.class),
+        logger,
+        new Gson(),
+        Mockito.mock(TenantAwareEntityTemplate.class),
+        Mockito.mock(JmsTemplate.class)) {
+      @Override
+      public <C, T> Future<T> dispatch(final String tenantIdentifier, final C command, final Class<T> clazz)
+          throws CommandProcessingException {
+        return commandExecutor.submit(() -> super.dispatch(tenantIdentifier, command, clazz).get());
+      }
+    };
+    commandBus.setApplicationContext(applicationContext);
+    final CommandGateway commandGateway = new CommandGateway(logger, commandBus);
+
+    final AuthenticationService authenticationService = new AuthenticationService(authenticationCommandHandler, logger);
+    directController = controller(commandGateway, authenticationService, logger, true);
+    gatewayController = controller(commandGateway, authenticationService, logger, false);
+
+    request = Mockito.mock(HttpServletRequest.class);
+    response = Mockito.mock(HttpServletResponse.class);
+
+    TenantContextHolder.clear();
+    TenantContextHolder.setIdentifier(TENANT);
+  }
+
+  private static AuthorizationRestController controller(
+      final CommandGateway commandGateway,
+      final AuthenticationService authenticationService,
+      final Logger logger,
+      final boolean directExecution) {
+    final AuthorizationRestController ret
+        = new AuthorizationRestController(commandGateway, authenticationService, new InFlightRefreshes(), logger);
+    ReflectionTestUtils.setField(ret, "contextPath", "/identity/v1");
+    ReflectionTestUtils.setField(ret, "directExecution", directExecution);
+    return ret;
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    TenantContextHolder.clear();
+    commandExecutor.shutdownNow();
+  }
+
+  @Benchmark
+  public ResponseEntity<Authentication> directSuccess() throws InterruptedException {
+    return login(directController, SUCCEEDING);
+  }
+
+  @Benchmark
+  public ResponseEntity<Authentication> directFailure() throws InterruptedException {
+    return login(directController, FAILING);
+  }
+
+  @Benchmark
+  public ResponseEntity<Authentication> gatewaySuccess() throws InterruptedException {
+    return login(gatewayController, SUCCEEDING);
+  }
+
+  @Benchmark
+  public ResponseEntity<Authentication> gatewayFailure() throws InterruptedException {
+    return login(gatewayController, FAILING);
+  }
+
+  private ResponseEntity<Authentication> login(
+      final AuthorizationRestController controller,
+      final PasswordAuthenticationCommand command) throws InterruptedException {
+    return controller.authenticate(response, request, "password", command.getUseridentifier(), command.getPassword(), null);
+  }
+}
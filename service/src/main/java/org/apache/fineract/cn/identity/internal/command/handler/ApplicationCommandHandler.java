@@ -43,7 +43,11 @@ import org.apache.fineract.cn.identity.internal.repository.ApplicationPermission
 import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissionUsers;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissions;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationSignatureEntity;
+import org.apache.fineract.cn.identity.internal.repository.Applications;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationSignatures;
+import org.apache.fineract.cn.identity.internal.service.AccessTokenCache;
+import org.apache.fineract.cn.identity.internal.service.ApplicationAuthorizations;
+import org.apache.fineract.cn.identity.internal.service.TenantPublicKeys;
 import org.apache.fineract.cn.lang.ServiceException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -56,19 +60,34 @@ import org.springframework.stereotype.Component;
 @Component
 public class ApplicationCommandHandler {
   private final ApplicationSignatures applicationSignatures;
+  private final Applications applications;
   private final ApplicationPermissions applicationPermissions;
   private final ApplicationPermissionUsers applicationPermissionUsers;
   private final ApplicationCallEndpointSets applicationCallEndpointSets;
+  private final ApplicationAuthorizations applicationAuthorizations;
+  private final AccessTokenCache accessTokenCache;
+  private final TenantPublicKeys tenantPublicKeys;
+  private final UserApplicationPermissionCompiler userApplicationPermissionCompiler;
 
   @Autowired
   public ApplicationCommandHandler(final ApplicationSignatures applicationSignatures,
+                                   final Applications applications,
                                    final ApplicationPermissions applicationPermissions,
                                    final ApplicationPermissionUsers applicationPermissionUsers,
-                                   final ApplicationCallEndpointSets applicationCallEndpointSets) {
+                                   final ApplicationCallEndpointSets applicationCallEndpointSets,
+                                   final ApplicationAuthorizations applicationAuthorizations,
+                                   final AccessTokenCache accessTokenCache,
+                                   final TenantPublicKeys tenantPublicKeys,
+                                   final UserApplicationPermissionCompiler userApplicationPermissionCompiler) {
     this.applicationSignatures = applicationSignatures;
+    this.applications = applications;
     this.applicationPermissions = applicationPermissions;
     this.applicationPermissionUsers = applicationPermissionUsers;
     this.applicationCallEndpointSets = applicationCallEndpointSets;
+    this.applicationAuthorizations = applicationAuthorizations;
+    this.accessTokenCache = accessTokenCache;
+    this.tenantPublicKeys = tenantPublicKeys;
+    this.userApplicationPermissionCompiler = userApplicationPermissionCompiler;
   }
 
   @CommandHandler(logStart = CommandLogLevel.INFO, logFinish = CommandLogLevel.INFO)
@@ -80,6 +99,8 @@ public class ApplicationCommandHandler {
     applicationSignatureEntity.setPublicKeyMod(command.getSignature().getPublicKeyMod());
     applicationSignatureEntity.setPublicKeyExp(command.getSignature().getPublicKeyExp());
     applicationSignatures.add(applicationSignatureEntity);
+    applications.refresh(command.getApplicationIdentifier());
+    tenantPublicKeys.evictApplication(command.getApplicationIdentifier());
 
     return new ApplicationSignatureEvent(command.getApplicationIdentifier(), command.getKeyTimestamp());
   }
@@ -88,6 +109,10 @@ public class ApplicationCommandHandler {
   @EventEmitter(selectorName = EventConstants.OPERATION_HEADER, selectorValue = EventConstants.OPERATION_DELETE_APPLICATION)
   public String process(final DeleteApplicationCommand command) {
     applicationSignatures.delete(command.getApplicationIdentifier());
+    applications.delete(command.getApplicationIdentifier());
+    tenantPublicKeys.evictApplication(command.getApplicationIdentifier());
+    applicationAuthorizations.invalidate(command.getApplicationIdentifier());
+    accessTokenCache.invalidateApplication(command.getApplicationIdentifier());
     return command.getApplicationIdentifier();
   }
 
@@ -98,6 +123,9 @@ public class ApplicationCommandHandler {
             command.getApplicationIdentifer(), PermissionMapper.mapToPermissionType(command.getPermission()));
 
     applicationPermissions.add(applicationPermissionEntity);
+    userApplicationPermissionCompiler.recompileApplication(command.getApplicationIdentifer());
+    applicationAuthorizations.invalidate(command.getApplicationIdentifer());
+    accessTokenCache.invalidateApplication(command.getApplicationIdentifer());
     return new ApplicationPermissionEvent(command.getApplicationIdentifer(), command.getPermission().getPermittableEndpointGroupIdentifier());
   }
 
@@ -105,6 +133,9 @@ public class ApplicationCommandHandler {
   @EventEmitter(selectorName = EventConstants.OPERATION_HEADER, selectorValue = EventConstants.OPERATION_DELETE_APPLICATION_PERMISSION)
   public ApplicationPermissionEvent process(final DeleteApplicationPermissionCommand command) {
     applicationPermissions.delete(command.getApplicationIdentifier(), command.getPermittableGroupIdentifier());
+    userApplicationPermissionCompiler.recompileApplication(command.getApplicationIdentifier());
+    applicationAuthorizations.invalidate(command.getApplicationIdentifier());
+    accessTokenCache.invalidateApplication(command.getApplicationIdentifier());
     return new ApplicationPermissionEvent(command.getApplicationIdentifier(), command.getPermittableGroupIdentifier());
   }
 
@@ -112,6 +143,9 @@ public class ApplicationCommandHandler {
   @EventEmitter(selectorName = EventConstants.OPERATION_HEADER, selectorValue = EventConstants.OPERATION_PUT_APPLICATION_PERMISSION_USER_ENABLED)
   public ApplicationPermissionUserEvent process(final SetApplicationPermissionUserEnabledCommand command) {
     applicationPermissionUsers.setEnabled(command.getApplicationIdentifier(), command.getPermittableGroupIdentifier(), command.getUserIdentifier(), command.isEnabled());
+    userApplicationPermissionCompiler.compileAndStore(command.getUserIdentifier(), command.getApplicationIdentifier());
+    applicationAuthorizations.invalidate(command.getApplicationIdentifier());
+    accessTokenCache.invalidateApplication(command.getApplicationIdentifier());
     return new ApplicationPermissionUserEvent(command.getApplicationIdentifier(), command.getPermittableGroupIdentifier(), command.getUserIdentifier());
   }
 
@@ -126,6 +160,8 @@ public class ApplicationCommandHandler {
             command.getApplicationIdentifier(),
             command.getCallEndpointSet());
     applicationCallEndpointSets.change(toSave);
+    applicationAuthorizations.invalidate(command.getApplicationIdentifier());
+    accessTokenCache.invalidateApplication(command.getApplicationIdentifier());
     return new ApplicationCallEndpointSetEvent(command.getApplicationIdentifier(), command.getCallEndpointSetIdentifier());
   }
 
@@ -139,6 +175,8 @@ public class ApplicationCommandHandler {
             command.getApplicationIdentifier(),
             command.getCallEndpointSet());
     applicationCallEndpointSets.add(toSave);
+    applicationAuthorizations.invalidate(command.getApplicationIdentifier());
+    accessTokenCache.invalidateApplication(command.getApplicationIdentifier());
     return new ApplicationCallEndpointSetEvent(command.getApplicationIdentifier(), command.getCallEndpointSet().getIdentifier());
   }
 
@@ -150,6 +188,8 @@ public class ApplicationCommandHandler {
                     + command.getApplicationIdentifier() + "." + command.getCallEndpointSetIdentifier() + "'."));
 
     applicationCallEndpointSets.delete(command.getApplicationIdentifier(), command.getCallEndpointSetIdentifier());
+    applicationAuthorizations.invalidate(command.getApplicationIdentifier());
+    accessTokenCache.invalidateApplication(command.getApplicationIdentifier());
     return new ApplicationCallEndpointSetEvent(command.getApplicationIdentifier(), command.getCallEndpointSetIdentifier());
   }
 }
\ No newline at end of file
@@ -18,14 +18,9 @@
  */
 package org.apache.fineract.cn.identity.internal.command.handler;
 
-import com.google.common.collect.Sets;
-import com.google.gson.Gson;
-import org.apache.fineract.cn.identity.api.v1.events.EventConstants;
-import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
 import org.apache.fineract.cn.anubis.api.v1.domain.TokenContent;
 import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
 import org.apache.fineract.cn.anubis.provider.InvalidKeyTimestampException;
-import org.apache.fineract.cn.anubis.provider.TenantRsaKeyProvider;
 import org.apache.fineract.cn.anubis.security.AmitAuthenticationException;
 import org.apache.fineract.cn.anubis.token.TenantAccessTokenSerializer;
 import org.apache.fineract.cn.anubis.token.TenantApplicationRsaKeyProvider;
@@ -35,57 +30,47 @@ import org.apache.fineract.cn.anubis.token.TokenSerializationResult;
 import org.apache.fineract.cn.command.annotation.Aggregate;
 import org.apache.fineract.cn.command.annotation.CommandHandler;
 import org.apache.fineract.cn.command.annotation.CommandLogLevel;
-import org.apache.fineract.cn.crypto.HashGenerator;
 import org.apache.fineract.cn.identity.internal.command.AuthenticationCommandResponse;
 import org.apache.fineract.cn.identity.internal.command.PasswordAuthenticationCommand;
 import org.apache.fineract.cn.identity.internal.command.RefreshTokenAuthenticationCommand;
-import org.apache.fineract.cn.identity.internal.repository.AllowedOperationType;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationCallEndpointSetEntity;
-import org.apache.fineract.cn.identity.internal.repository.ApplicationCallEndpointSets;
-import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissionUsers;
-import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissions;
-import org.apache.fineract.cn.identity.internal.repository.ApplicationSignatureEntity;
-import org.apache.fineract.cn.identity.internal.repository.ApplicationSignatures;
-import org.apache.fineract.cn.identity.internal.repository.PermissionType;
-import org.apache.fineract.cn.identity.internal.repository.PermittableGroupEntity;
-import org.apache.fineract.cn.identity.internal.repository.PermittableGroups;
-import org.apache.fineract.cn.identity.internal.repository.PermittableType;
-import org.apache.fineract.cn.identity.internal.repository.PrivateSignatureEntity;
+import org.apache.fineract.cn.identity.internal.repository.CompiledRoles;
 import org.apache.fineract.cn.identity.internal.repository.PrivateTenantInfoEntity;
-import org.apache.fineract.cn.identity.internal.repository.RoleEntity;
 import org.apache.fineract.cn.identity.internal.repository.Roles;
-import org.apache.fineract.cn.identity.internal.repository.Signatures;
-import org.apache.fineract.cn.identity.internal.repository.Tenants;
+import org.apache.fineract.cn.identity.internal.repository.UserApplicationPermissions;
 import org.apache.fineract.cn.identity.internal.repository.UserEntity;
 import org.apache.fineract.cn.identity.internal.repository.Users;
-import org.apache.fineract.cn.identity.internal.service.RoleMapper;
+import org.apache.fineract.cn.identity.internal.service.AccessTokenCache;
+import org.apache.fineract.cn.identity.internal.service.ApplicationAuthorizations;
+import org.apache.fineract.cn.identity.internal.service.AuthenticationEventPublisher;
+import org.apache.fineract.cn.identity.internal.service.CompiledRolePermissions;
+import org.apache.fineract.cn.identity.internal.service.FailedLoginTracker;
+import org.apache.fineract.cn.identity.internal.service.GroupIdentifiers;
+import org.apache.fineract.cn.identity.internal.service.GroupPermissions;
+import org.apache.fineract.cn.identity.internal.service.PasswordHasher;
+import org.apache.fineract.cn.identity.internal.service.TenantPublicKeys;
+import org.apache.fineract.cn.identity.internal.service.TenantSecurityContexts;
+import org.apache.fineract.cn.identity.internal.service.TenantSecurityContexts.TenantSecurityContext;
 import org.apache.fineract.cn.identity.internal.util.IdentityConstants;
 import org.apache.fineract.cn.lang.ApplicationName;
 import org.apache.fineract.cn.lang.DateConverter;
 import org.apache.fineract.cn.lang.ServiceException;
 import org.apache.fineract.cn.lang.TenantContextHolder;
-import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
-import org.apache.fineract.cn.lang.security.RsaPrivateKeyBuilder;
-import org.apache.fineract.cn.lang.security.RsaPublicKeyBuilder;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.jms.core.JmsTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Base64Utils;
 
-import javax.annotation.Nullable;
-import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.util.*;
-import java.util.stream.Collector;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * @author Myrle Krantz
@@ -96,19 +81,20 @@ import java.util.stream.Stream;
 public class AuthenticationCommandHandler {
   private final Users users;
   private final Roles roles;
-  private final PermittableGroups permittableGroups;
-  private final Signatures signatures;
-  private final Tenants tenants;
-  private final HashGenerator hashGenerator;
+  private final TokenPermissionCompiler tokenPermissionCompiler;
+  private final CompiledRoles compiledRoles;
+  private final UserApplicationPermissions userApplicationPermissions;
+  private final CompiledRolePermissions compiledRolePermissions;
+  private final GroupIdentifiers groupIdentifiers;
+  private final AccessTokenCache accessTokenCache;
+  private final TenantSecurityContexts tenantSecurityContexts;
+  private final PasswordHasher passwordHasher;
+  private final FailedLoginTracker failedLoginTracker;
   private final TenantAccessTokenSerializer tenantAccessTokenSerializer;
   private final TenantRefreshTokenSerializer tenantRefreshTokenSerializer;
-  private final TenantRsaKeyProvider tenantRsaKeyProvider;
-  private final ApplicationSignatures applicationSignatures;
-  private final ApplicationPermissions applicationPermissions;
-  private final ApplicationPermissionUsers applicationPermissionUsers;
-  private final ApplicationCallEndpointSets applicationCallEndpointSets;
-  private final JmsTemplate jmsTemplate;
-  private final Gson gson;
+  private final TenantPublicKeys tenantPublicKeys;
+  private final ApplicationAuthorizations applicationAuthorizations;
+  private final AuthenticationEventPublisher authenticationEventPublisher;
   private final Logger logger;
   private final ApplicationName applicationName;
 
@@ -123,39 +109,40 @@ public class AuthenticationCommandHandler {
   @Autowired
   public AuthenticationCommandHandler(final Users users,
                                       final Roles roles,
-                                      final PermittableGroups permittableGroups,
-                                      final Signatures signatures,
-                                      final Tenants tenants,
-                                      final HashGenerator hashGenerator,
+                                      final TokenPermissionCompiler tokenPermissionCompiler,
+                                      final CompiledRoles compiledRoles,
+                                      final UserApplicationPermissions userApplicationPermissions,
+                                      final CompiledRolePermissions compiledRolePermissions,
+                                      final GroupIdentifiers groupIdentifiers,
+                                      final AccessTokenCache accessTokenCache,
+                                      final TenantSecurityContexts tenantSecurityContexts,
+                                      final PasswordHasher passwordHasher,
+                                      final FailedLoginTracker failedLoginTracker,
                                       @SuppressWarnings("SpringJavaAutowiringInspection")
                                       final TenantAccessTokenSerializer tenantAccessTokenSerializer,
                                       @SuppressWarnings("SpringJavaAutowiringInspection")
                                         final TenantRefreshTokenSerializer tenantRefreshTokenSerializer,
-                                      @SuppressWarnings("SpringJavaAutowiringInspection")
-                                        final TenantRsaKeyProvider tenantRsaKeyProvider,
-                                      final ApplicationSignatures applicationSignatures,
-                                      final ApplicationPermissions applicationPermissions,
-                                      final ApplicationPermissionUsers applicationPermissionUsers,
-                                      final ApplicationCallEndpointSets applicationCallEndpointSets,
-                                      final JmsTemplate jmsTemplate,
+                                      final TenantPublicKeys tenantPublicKeys,
+                                      final ApplicationAuthorizations applicationAuthorizations,
+                                      final AuthenticationEventPublisher authenticationEventPublisher,
                                       final ApplicationName applicationName,
-                                      @Qualifier(IdentityConstants.JSON_SERIALIZER_NAME) final Gson gson,
                                       @Qualifier(IdentityConstants.LOGGER_NAME) final Logger logger) {
     this.users = users;
     this.roles = roles;
-    this.permittableGroups = permittableGroups;
-    this.signatures = signatures;
-    this.tenants = tenants;
-    this.hashGenerator = hashGenerator;
+    this.tokenPermissionCompiler = tokenPermissionCompiler;
+    this.compiledRoles = compiledRoles;
+    this.userApplicationPermissions = userApplicationPermissions;
+    this.compiledRolePermissions = compiledRolePermissions;
+    this.groupIdentifiers = groupIdentifiers;
+    this.accessTokenCache = accessTokenCache;
+    this.tenantSecurityContexts = tenantSecurityContexts;
+    this.passwordHasher = passwordHasher;
+    this.failedLoginTracker = failedLoginTracker;
     this.tenantAccessTokenSerializer = tenantAccessTokenSerializer;
     this.tenantRefreshTokenSerializer = tenantRefreshTokenSerializer;
-    this.tenantRsaKeyProvider = tenantRsaKeyProvider;
-    this.applicationSignatures = applicationSignatures;
-    this.applicationPermissions = applicationPermissions;
-    this.applicationPermissionUsers = applicationPermissionUsers;
-    this.applicationCallEndpointSets = applicationCallEndpointSets;
-    this.jmsTemplate = jmsTemplate;
-    this.gson = gson;
+    this.tenantPublicKeys = tenantPublicKeys;
+    this.applicationAuthorizations = applicationAuthorizations;
+    this.authenticationEventPublisher = authenticationEventPublisher;
     this.logger = logger;
     this.applicationName = applicationName;
   }
@@ -173,71 +160,77 @@ public class AuthenticationCommandHandler {
       throw ServiceException.badRequest("Password was not base64 encoded.");
     }
 
-    final PrivateTenantInfoEntity privateTenantInfo = checkedGetPrivateTenantInfo();
-    final PrivateSignatureEntity privateSignature = checkedGetPrivateSignature();
+    if (failedLoginTracker.isBlocked(command.getUseridentifier())) {
+      this.logger.info("Login for user '{}' rejected because of too many recent failed attempts.", command.getUseridentifier());
+      throw AmitAuthenticationException.userPasswordCombinationNotFound();
+    }
+
+    //The user is read while the tenant's security context is looked up.
+    final CompletableFuture<Optional<UserEntity>> userRead = users.getAsync(command.getUseridentifier());
+
+    final TenantSecurityContext securityContext = tenantSecurityContexts.get();
 
-    byte[] fixedSalt = privateTenantInfo.getFixedSalt().array();
-    final UserEntity user = getUser(command.getUseridentifier());
+    byte[] fixedSalt = securityContext.getPrivateTenantInfo().getFixedSalt().array();
 
-    if (!this.hashGenerator.isEqual(
+    //Failures for users who don't exist aren't tracked, so that made up user names can't fill the tracker.
+    final UserEntity user = getUser(command.getUseridentifier(), await(userRead));
+
+    final CompletableFuture<Boolean> passwordMatches = this.passwordHasher.isEqualAsync(
             user.getPassword().array(),
             base64decodedPassword,
             fixedSalt,
             user.getSalt().array(),
             user.getIterationCount(),
-            256))
+            256);
+
+    //The permissions are put together while the password is hashed.  Nothing may be returned or thrown from this
+    //until the password has been checked, or the caller could learn about the user without knowing the password.
+    Set<TokenPermission> tokenPermissions = null;
+    RuntimeException tokenPermissionsFailure = null;
+    try {
+      tokenPermissions = getTokenPermissions(applicationName.toString(), Optional.empty(), securityContext, user);
+    }
+    catch (final RuntimeException e) {
+      tokenPermissionsFailure = e;
+    }
+
+    if (!await(passwordMatches))
     {
+      failedLoginTracker.recordFailure(user.getIdentifier());
       throw AmitAuthenticationException.userPasswordCombinationNotFound();
     }
+    failedLoginTracker.clear(user.getIdentifier());
+
+    if (tokenPermissionsFailure != null)
+      throw tokenPermissionsFailure;
 
-    final TokenSerializationResult refreshToken = getRefreshToken(user, privateSignature);
+    final TokenSerializationResult refreshToken = getRefreshToken(user, securityContext);
 
     final AuthenticationCommandResponse ret = getAuthenticationResponse(
             applicationName.toString(),
             Optional.empty(),
-            privateTenantInfo,
-            privateSignature,
+            securityContext,
             user,
+            tokenPermissions,
+            false,
             refreshToken.getToken(),
             refreshToken.getExpiration());
 
-    fireAuthenticationEvent(user.getIdentifier());
+    authenticationEventPublisher.fireAuthenticationEvent(user.getIdentifier());
 
     return ret;
   }
 
-  private PrivateSignatureEntity checkedGetPrivateSignature() {
-    final Optional<PrivateSignatureEntity> privateSignature = signatures.getPrivateSignature();
-    if (!privateSignature.isPresent()) {
-      logger.error("Authentication attempted on tenant with no valid signature{}.", TenantContextHolder
-          .identifier());
-      throw ServiceException.internalError("Tenant has no valid signature.");
-    }
-    return privateSignature.get();
-  }
-
-  private PrivateTenantInfoEntity checkedGetPrivateTenantInfo() {
-    final Optional<PrivateTenantInfoEntity> privateTenantInfo = tenants.getPrivateTenantInfo();
-    if (!privateTenantInfo.isPresent()) {
-      logger.error("Authentication attempted on uninitialized tenant {}.", TenantContextHolder.identifier());
-      throw ServiceException.internalError("Tenant is not initialized.");
-    }
-    return privateTenantInfo.get();
-  }
-
   private class TenantIdentityRsaKeyProvider implements TenantApplicationRsaKeyProvider {
     @Override
     public PublicKey getApplicationPublicKey(final String tokenApplicationName, final String timestamp) throws InvalidKeyTimestampException {
-      if (applicationName.toString().equals(tokenApplicationName))
-        return tenantRsaKeyProvider.getPublicKey(timestamp);
+      final Optional<TenantPublicKeys.CachedPublicKey> publicKey
+              = applicationName.toString().equals(tokenApplicationName)
+              ? tenantPublicKeys.getIdentityManagerKey(timestamp)
+              : tenantPublicKeys.getApplicationKey(tokenApplicationName, timestamp);
 
-      final ApplicationSignatureEntity signature = applicationSignatures.get(tokenApplicationName, timestamp)
+      return publicKey.map(TenantPublicKeys.CachedPublicKey::getPublicKey)
               .orElseThrow(() -> new InvalidKeyTimestampException(timestamp));
-
-      return new RsaPublicKeyBuilder()
-              .setPublicKeyMod(signature.getPublicKeyMod())
-              .setPublicKeyExp(signature.getPublicKeyExp())
-              .build();
     }
   }
 
@@ -248,66 +241,65 @@ public class AuthenticationCommandHandler {
     final TokenDeserializationResult deserializedRefreshToken =
         tenantRefreshTokenSerializer.deserialize(new TenantIdentityRsaKeyProvider(), command.getRefreshToken());
 
-    final PrivateTenantInfoEntity privateTenantInfo = checkedGetPrivateTenantInfo();
-    final PrivateSignatureEntity privateSignature = checkedGetPrivateSignature();
+    final TenantSecurityContext securityContext = tenantSecurityContexts.get();
 
     final UserEntity user = getUser(deserializedRefreshToken.getUserIdentifier());
     final String sourceApplicationName = deserializedRefreshToken.getSourceApplication();
+    final Optional<String> callEndpointSet = Optional.ofNullable(deserializedRefreshToken.getEndpointSet());
 
     return getAuthenticationResponse(
             sourceApplicationName,
-            Optional.ofNullable(deserializedRefreshToken.getEndpointSet()),
-            privateTenantInfo,
-            privateSignature,
+            callEndpointSet,
+            securityContext,
             user,
+            getTokenPermissions(sourceApplicationName, callEndpointSet, securityContext, user),
+            true,
             command.getRefreshToken(),
             LocalDateTime.ofInstant(deserializedRefreshToken.getExpiration().toInstant(), ZoneId.of("UTC")));
   }
 
-  private AuthenticationCommandResponse getAuthenticationResponse(
+  private Set<TokenPermission> getTokenPermissions(
           final String sourceApplicationName,
           @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
           final Optional<String> callEndpointSet,
-          final PrivateTenantInfoEntity privateTenantInfo,
-          final PrivateSignatureEntity privateSignature,
-          final UserEntity user,
-          final String refreshToken,
-          final LocalDateTime refreshTokenExpiration) {
+          final TenantSecurityContext securityContext,
+          final UserEntity user) {
     final Optional<LocalDateTime> passwordExpiration = getExpiration(user);
 
+    final PrivateTenantInfoEntity privateTenantInfo = securityContext.getPrivateTenantInfo();
     final int gracePeriod = privateTenantInfo.getTimeToChangePasswordAfterExpirationInDays();
     if (pastGracePeriod(passwordExpiration, gracePeriod))
       throw AmitAuthenticationException.passwordExpired();
 
-    final Set<TokenPermission> tokenPermissions;
+    final Set<TokenPermission> minifiedTokenPermissions;
 
     if (sourceApplicationName.equals(applicationName.toString())) { //ie, this is a token for the identity manager.
       if (pastExpiration(passwordExpiration)) {
-        tokenPermissions = identityEndpointsAllowedEvenWithExpiredPassword();
+        minifiedTokenPermissions = minify(tokenPermissionCompiler.identityEndpointsAllowedEvenWithExpiredPassword());
         logger.info("Password expired {}", passwordExpiration.map(LocalDateTime::toString).orElse("empty"));
       }
       else {
-        tokenPermissions = getUserTokenPermissions(user);
+        minifiedTokenPermissions = getUserTokenPermissions(user);
       }
     }
     else {
-      tokenPermissions = getApplicationTokenPermissions(user, sourceApplicationName, callEndpointSet);
+      minifiedTokenPermissions = getApplicationTokenPermissions(user, sourceApplicationName, callEndpointSet);
     }
 
-    final HashSet<TokenPermission> minifiedTokenPermissions = new HashSet<>(
-        tokenPermissions
-            .stream()
-            .collect(Collectors.toMap(TokenPermission::getPath,
-                tokenPermission -> tokenPermission,
-                (currentTokenPermission, newTokenPermission) -> {
-                  newTokenPermission.getAllowedOperations()
-                      .forEach(allowedOperation -> currentTokenPermission.getAllowedOperations().add(allowedOperation));
-                  return currentTokenPermission;
-                })
-            )
-            .values()
-    );
+    return minifiedTokenPermissions;
+  }
 
+  private AuthenticationCommandResponse getAuthenticationResponse(
+          final String sourceApplicationName,
+          @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+          final Optional<String> callEndpointSet,
+          final TenantSecurityContext securityContext,
+          final UserEntity user,
+          final Set<TokenPermission> minifiedTokenPermissions,
+          final boolean reuseAccessToken,
+          final String refreshToken,
+          final LocalDateTime refreshTokenExpiration) {
+    final Optional<LocalDateTime> passwordExpiration = getExpiration(user);
 
     logger.info("Access token for tenant '{}', user '{}', application '{}', and callEndpointSet '{}' being returned containing the permissions '{}'.",
             TenantContextHolder.identifier().orElse("null"),
@@ -316,11 +308,23 @@ public class AuthenticationCommandHandler {
             callEndpointSet.orElse("null"),
             minifiedTokenPermissions.toString());
 
-    final TokenSerializationResult accessToken = getAuthenticationResponse(
-            user.getIdentifier(),
-            minifiedTokenPermissions,
-            privateSignature,
-            sourceApplicationName);
+    final TokenSerializationResult accessToken;
+    final Optional<TokenSerializationResult> reusableAccessToken = reuseAccessToken
+            ? accessTokenCache.get(user.getIdentifier(), sourceApplicationName, callEndpointSet,
+                securityContext.getKeyTimestamp(), minifiedTokenPermissions)
+            : Optional.empty();
+    if (reusableAccessToken.isPresent()) {
+      accessToken = reusableAccessToken.get();
+    }
+    else {
+      accessToken = getAuthenticationResponse(
+              user.getIdentifier(),
+              minifiedTokenPermissions,
+              securityContext,
+              sourceApplicationName);
+      accessTokenCache.put(user.getIdentifier(), user.getRole(), sourceApplicationName, callEndpointSet,
+              securityContext.getKeyTimestamp(), minifiedTokenPermissions, accessToken);
+    }
 
     return new AuthenticationCommandResponse(
             accessToken.getToken(), DateConverter.toIsoString(accessToken.getExpiration()),
@@ -339,7 +343,11 @@ public class AuthenticationCommandHandler {
   }
 
   private UserEntity getUser(final String identifier) throws AmitAuthenticationException {
-    final Optional<UserEntity> user = users.get(identifier);
+    return getUser(identifier, users.get(identifier));
+  }
+
+  private UserEntity getUser(final String identifier, final Optional<UserEntity> user)
+      throws AmitAuthenticationException {
     if (!user.isPresent()) {
       this.logger.info("Attempt to get a user who doesn't exist: " + identifier);
       throw AmitAuthenticationException.userPasswordCombinationNotFound();
@@ -348,39 +356,27 @@ public class AuthenticationCommandHandler {
     return user.get();
   }
 
-  private void fireAuthenticationEvent(final String userIdentifier) {
-    this.jmsTemplate.convertAndSend(
-        this.gson.toJson(userIdentifier),
-        message -> {
-          if (TenantContextHolder.identifier().isPresent()) {
-            //noinspection OptionalGetWithoutIsPresent
-            message.setStringProperty(
-                TenantHeaderFilter.TENANT_HEADER,
-                TenantContextHolder.identifier().get());
-          }
-          message.setStringProperty(EventConstants.OPERATION_HEADER,
-              EventConstants.OPERATION_AUTHENTICATE
-          );
-          return message;
-        }
-    );
+  private static <T> T await(final CompletableFuture<T> future) {
+    try {
+      return future.join();
+    }
+    catch (final CompletionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw e;
+    }
   }
 
   private TokenSerializationResult getAuthenticationResponse(
           final String userIdentifier,
           final Set<TokenPermission> tokenPermissions,
-          final PrivateSignatureEntity privateSignatureEntity,
+          final TenantSecurityContext securityContext,
           final String sourceApplication) {
 
-    final PrivateKey privateKey = new RsaPrivateKeyBuilder()
-          .setPrivateKeyExp(privateSignatureEntity.getPrivateKeyExp())
-          .setPrivateKeyMod(privateSignatureEntity.getPrivateKeyMod())
-          .build();
-
       final TenantAccessTokenSerializer.Specification x =
           new TenantAccessTokenSerializer.Specification()
-              .setKeyTimestamp(privateSignatureEntity.getKeyTimestamp())
-              .setPrivateKey(privateKey)
+              .setKeyTimestamp(securityContext.getKeyTimestamp())
+              .setPrivateKey(securityContext.getPrivateKey())
               .setTokenContent(new TokenContent(new ArrayList<>(tokenPermissions)))
               .setSecondsToLive(accessTtl)
               .setUser(userIdentifier)
@@ -389,17 +385,31 @@ public class AuthenticationCommandHandler {
       return tenantAccessTokenSerializer.build(x);
   }
 
+  /**
+   * @return the minified token permissions of the user's role, including the endpoints every user may access.
+   */
   private Set<TokenPermission> getUserTokenPermissions(
           final UserEntity user) {
+    return compiledRolePermissions
+            .get(user.getRole(), () -> getCompiledRole(user.getRole()))
+            .orElseGet(() -> minify(tokenPermissionCompiler.identityEndpointsForEveryUser()));
+  }
 
-    final Optional<RoleEntity> userRole = roles.get(user.getRole());
-    final Set<TokenPermission> tokenPermissions = userRole
-            .map(r -> r.getPermissions().stream().flatMap(this::mapPermissions).collect(Collectors.toSet()))
-            .orElse(new HashSet<>());
+  private Optional<Set<TokenPermission>> getCompiledRole(final String roleIdentifier) {
+    final Optional<Set<TokenPermission>> stored = compiledRoles.get(roleIdentifier);
+    if (stored.isPresent())
+      return stored;
 
-    tokenPermissions.addAll(identityEndpointsForEveryUser());
+    //The role hasn't been compiled yet, for example because the tenant hasn't been migrated.
+    return roles.get(roleIdentifier).map(tokenPermissionCompiler::compile);
+  }
 
-    return tokenPermissions;
+  /**
+   * Merges token permissions with the same path into one, then removes those already granted by a wildcard path.
+   * The given token permissions are not modified.
+   */
+  static Set<TokenPermission> minify(final Collection<TokenPermission> tokenPermissions) {
+    return new TokenPermissionBuilder(tokenPermissions.size()).addAll(tokenPermissions).build();
   }
 
   private Set<TokenPermission> getApplicationTokenPermissions(
@@ -411,7 +421,7 @@ public class AuthenticationCommandHandler {
     //If it wasn't given then return all of the permissions for the application.
     final Optional<ApplicationCallEndpointSetEntity> applicationCallEndpointSet = callEndpointSet.map(x -> {
       final Optional<ApplicationCallEndpointSetEntity> optionalEndpointSetEntity =
-          applicationCallEndpointSets.get(sourceApplicationName, x);
+          applicationAuthorizations.getCallEndpointSet(sourceApplicationName, x);
       if (optionalEndpointSetEntity.isPresent()) {
         return optionalEndpointSetEntity.get();
       } else {
@@ -419,122 +429,70 @@ public class AuthenticationCommandHandler {
       }
     });
 
-    final RoleEntity userRole = roles.get(user.getRole())
-            .orElseThrow(AmitAuthenticationException::userPasswordCombinationNotFound);
+    //A stored row may have been computed from an older version of the role, so it is limited to the role as it is now.
+    final GroupPermissions userRole = getUserRole(user);
+    final GroupPermissions granted = userApplicationPermissions.get(user.getIdentifier(), sourceApplicationName)
+            .map(x -> userRole.intersect(GroupPermissions.of(x, groupIdentifiers)))
+            .orElseGet(() -> getGrantedPermissions(user, userRole, sourceApplicationName));
 
-    return applicationCallEndpointSet.map(x -> this.getApplicationCallEndpointSetTokenPermissions(user.getIdentifier(), userRole, x, sourceApplicationName))
-            .orElseGet(() -> this.getApplicationUserTokenPermissions(user.getIdentifier(), userRole, sourceApplicationName));
+    return applicationCallEndpointSet.map(x -> this.getApplicationCallEndpointSetTokenPermissions(user.getIdentifier(), granted, x, sourceApplicationName))
+            .orElseGet(() -> this.getApplicationUserTokenPermissions(granted));
   }
 
-  private Set<TokenPermission> getApplicationCallEndpointSetTokenPermissions(
-          final String userIdentifier,
-          final RoleEntity userRole,
-          final ApplicationCallEndpointSetEntity applicationCallEndpointSet,
-          final String sourceApplicationName) {
-    final List<PermissionType> permissionsForUser = userRole.getPermissions();
-    final Set<PermissionType> permissionsRequestedByApplication = applicationCallEndpointSet.getCallEndpointGroupIdentifiers().stream()
-            .map(x -> applicationPermissions.getPermissionForApplication(sourceApplicationName, x))
-            .filter(Optional::isPresent)
-            .map(Optional::get)
-            .collect(Collectors.toSet());
-
-    final Stream<PermissionType> applicationRequestedPermissionsTheUserHas
-            = intersectPermissionList(permissionsForUser, permissionsRequestedByApplication.stream());
-
-    final Set<PermissionType> permissionsPossible = applicationRequestedPermissionsTheUserHas
-            .filter(x ->
-                    applicationPermissionUsers.enabled(sourceApplicationName, x.getPermittableGroupIdentifier(), userIdentifier))
-            .collect(Collectors.toSet());
-
-    if (!permissionsPossible.containsAll(permissionsRequestedByApplication))
-      throw AmitAuthenticationException.applicationMissingPermissions(userIdentifier, sourceApplicationName);
-
-    return permissionsPossible.stream()
-            .flatMap(this::mapPermissions)
-            .collect(Collectors.toSet());
-  }
-
-  private Set<TokenPermission> getApplicationUserTokenPermissions(
-          final String userIdentifier,
-          final RoleEntity userRole,
+  /**
+   * @return what the user has granted the application, computed from the user's role, the application's permissions
+   * and the user's enablements.  Only needed if it hasn't been stored yet.
+   */
+  private GroupPermissions getGrantedPermissions(
+          final UserEntity user,
+          final GroupPermissions userRole,
           final String sourceApplicationName) {
-    final List<PermissionType> permissionsForUser = userRole.getPermissions();
-    final List<PermissionType> permissionsRequestedByApplication = applicationPermissions.getAllPermissionsForApplication(sourceApplicationName);
-
-    final Stream<PermissionType> applicationRequestedPermissionsTheUserHas
-            = intersectPermissionList(permissionsForUser, permissionsRequestedByApplication.stream());
-
-    return applicationRequestedPermissionsTheUserHas
-            .filter(x ->
-                    applicationPermissionUsers.enabled(sourceApplicationName, x.getPermittableGroupIdentifier(), userIdentifier))
-            .flatMap(this::mapPermissions)
-            .collect(Collectors.toSet());
+    return userRole.intersect(applicationAuthorizations.getGroupPermissions(sourceApplicationName))
+            .retainGroups(group -> applicationAuthorizations.isEnabled(sourceApplicationName, group, user.getIdentifier()));
   }
 
-  private Stream<PermissionType> intersectPermissionList(
-          final List<PermissionType> permissionsForUser,
-          final Stream<PermissionType> permissionsRequestedByApplication) {
-    final Map<String, Set<AllowedOperationType>> keyedUserPermissions = transformToSearchablePermissions(permissionsForUser);
-
-    return permissionsRequestedByApplication
-            .map(x -> new PermissionType(
-                    x.getPermittableGroupIdentifier(),
-                    intersectSets(keyedUserPermissions.get(x.getPermittableGroupIdentifier()), x.getAllowedOperations())))
-            .filter(x -> !x.getAllowedOperations().isEmpty());
+  /**
+   * @return the permissions of the user's role.  Rejects the login if the role doesn't exist.
+   */
+  private GroupPermissions getUserRole(final UserEntity user) {
+    return compiledRolePermissions
+            .getGroupPermissions(user.getRole(), () -> roles.get(user.getRole())
+                    .map(x -> GroupPermissions.of(x.getPermissions(), groupIdentifiers)))
+            .orElseThrow(AmitAuthenticationException::userPasswordCombinationNotFound);
   }
 
-  static <T> Set<T> intersectSets(
-          final @Nullable Set<T> allowedOperations1,
-          final @Nullable Set<T> allowedOperations2) {
-    if (allowedOperations1 == null || allowedOperations2 == null)
-      return Collections.emptySet();
-
-    final Set<T> ret = new HashSet<>(allowedOperations1);
-    ret.retainAll(allowedOperations2);
-    return ret;
-  }
+  private Set<TokenPermission> getApplicationCallEndpointSetTokenPermissions(
+          final String userIdentifier,
+          final GroupPermissions granted,
+          final ApplicationCallEndpointSetEntity applicationCallEndpointSet,
+          final String sourceApplicationName) {
+    final GroupPermissions requestedByApplication = applicationAuthorizations.getGroupPermissions(sourceApplicationName);
+    final TokenPermissionBuilder builder = tokenPermissionCompiler.getBuilder();
 
-  static Map<String, Set<AllowedOperationType>> transformToSearchablePermissions(final List<PermissionType> permissionsForUser) {
-    final Collector<Set<AllowedOperationType>, Set<AllowedOperationType>, Set<AllowedOperationType>> setToSetCollector
-            = Collector.of(
-            HashSet::new,
-            Set::addAll,
-            (x, y) -> {
-              final Set<AllowedOperationType> ret = new HashSet<>();
-              ret.addAll(x);
-              ret.addAll(y);
-              return ret;
-            });
-
-    return permissionsForUser.stream().collect(
-            Collectors.groupingBy(PermissionType::getPermittableGroupIdentifier,
-                    Collectors.mapping(PermissionType::getAllowedOperations, setToSetCollector)));
-  }
+    //Every permission the application requests for this call endpoint set must be granted in full by the user.
+    for (final String permittableGroupIdentifier : applicationCallEndpointSet.getCallEndpointGroupIdentifiers()) {
+      final int group = groupIdentifiers.intern(permittableGroupIdentifier);
+      final int index = requestedByApplication.indexOf(group);
+      if (index < 0)
+        continue;
 
-  private Set<TokenPermission> identityEndpointsForEveryUser() {
-    final Set<TokenPermission> ret = identityEndpointsAllowedEvenWithExpiredPassword();
+      final int requestedOperations = requestedByApplication.operationsAt(index);
+      if (requestedOperations == 0 || granted.operationsOf(group) != requestedOperations)
+        throw AmitAuthenticationException.applicationMissingPermissions(userIdentifier, sourceApplicationName);
 
-    ret.add(new TokenPermission(
-            applicationName + "/applications/*/permissions/*/users/{useridentifier}/enabled",
-            Sets.newHashSet(AllowedOperation.READ, AllowedOperation.CHANGE, AllowedOperation.DELETE)));
-    ret.add(new TokenPermission(
-            applicationName + "/users/{useridentifier}/permissions",
-            Sets.newHashSet(AllowedOperation.READ)));
+      tokenPermissionCompiler.addPermittables(builder, group, requestedOperations);
+    }
 
-    return ret;
+    return builder.build();
   }
 
-  private Set<TokenPermission> identityEndpointsAllowedEvenWithExpiredPassword() {
-    final Set<TokenPermission> ret = new HashSet<>();
+  private Set<TokenPermission> getApplicationUserTokenPermissions(final GroupPermissions granted) {
+    final TokenPermissionBuilder builder = tokenPermissionCompiler.getBuilder();
 
-    ret.add(new TokenPermission(
-            applicationName + "/users/{useridentifier}/password",
-            Sets.newHashSet(AllowedOperation.READ, AllowedOperation.CHANGE, AllowedOperation.DELETE)));
-    ret.add(new TokenPermission(
-            applicationName + "/token/_current",
-            Sets.newHashSet(AllowedOperation.DELETE)));
+    for (int i = 0; i < granted.size(); i++)
+      tokenPermissionCompiler.addPermittables(builder, granted.groupAt(i), granted.operationsAt(i));
 
-    return ret;
+    return builder.build();
   }
 
   static boolean pastExpiration(
@@ -548,36 +506,12 @@ public class AuthenticationCommandHandler {
     return passwordExpiration.map(x -> (LocalDateTime.now().compareTo(x.plusDays(gracePeriod)) >= 0)).orElse(false);
   }
 
-  private Stream<TokenPermission> mapPermissions(final PermissionType permission) {
-    return permittableGroups.get(permission.getPermittableGroupIdentifier())
-            .map(PermittableGroupEntity::getPermittables)
-            .map(Collection::stream)
-            .orElse(Stream.empty())
-            .filter(permittable -> isAllowed(permittable, permission))
-            .map(this::getTokenPermission);
-  }
-
-  private boolean isAllowed(final PermittableType permittable, final PermissionType permission) {
-    return permission.getAllowedOperations().contains(AllowedOperationType.fromHttpMethod(permittable.getMethod()));
-  }
-
-  private TokenPermission getTokenPermission(final PermittableType permittable) {
-    final HashSet<AllowedOperation> allowedOperations = new HashSet<>();
-    allowedOperations.add(RoleMapper.mapAllowedOperation(AllowedOperationType.fromHttpMethod(permittable.getMethod())));
-    return new TokenPermission(permittable.getPath(), allowedOperations);
-  }
-
   private TokenSerializationResult getRefreshToken(final UserEntity user,
-                                                   final PrivateSignatureEntity privateSignatureEntity) {
-    final PrivateKey privateKey = new RsaPrivateKeyBuilder()
-        .setPrivateKeyExp(privateSignatureEntity.getPrivateKeyExp())
-        .setPrivateKeyMod(privateSignatureEntity.getPrivateKeyMod())
-        .build();
-
+                                                   final TenantSecurityContext securityContext) {
     final TenantRefreshTokenSerializer.Specification x =
         new TenantRefreshTokenSerializer.Specification()
-            .setKeyTimestamp(privateSignatureEntity.getKeyTimestamp())
-            .setPrivateKey(privateKey)
+            .setKeyTimestamp(securityContext.getKeyTimestamp())
+            .setPrivateKey(securityContext.getPrivateKey())
             .setSecondsToLive(refreshTtl)
             .setUser(user.getIdentifier())
             .setSourceApplication(applicationName.toString());
@@ -30,6 +30,8 @@ import org.apache.fineract.cn.identity.internal.command.CreatePermittableGroupCo
 import org.apache.fineract.cn.identity.internal.repository.PermittableGroupEntity;
 import org.apache.fineract.cn.identity.internal.repository.PermittableGroups;
 import org.apache.fineract.cn.identity.internal.repository.PermittableType;
+import org.apache.fineract.cn.identity.internal.service.CompiledRolePermissions;
+import org.apache.fineract.cn.identity.internal.service.PermittableGroupRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
@@ -43,19 +45,33 @@ import org.springframework.util.Assert;
 public class PermittableGroupCommandHandler {
 
   private final PermittableGroups repository;
+  private final PermittableGroupRegistry permittableGroupRegistry;
+  private final CompiledRolePermissions compiledRolePermissions;
+  private final TokenPermissionCompiler tokenPermissionCompiler;
 
   @Autowired
-  public PermittableGroupCommandHandler(final PermittableGroups repository)
+  public PermittableGroupCommandHandler(final PermittableGroups repository,
+                                        final PermittableGroupRegistry permittableGroupRegistry,
+                                        final CompiledRolePermissions compiledRolePermissions,
+                                        final TokenPermissionCompiler tokenPermissionCompiler)
   {
     this.repository = repository;
+    this.permittableGroupRegistry = permittableGroupRegistry;
+    this.compiledRolePermissions = compiledRolePermissions;
+    this.tokenPermissionCompiler = tokenPermissionCompiler;
   }
 
   @CommandHandler(logStart = CommandLogLevel.INFO, logFinish = CommandLogLevel.INFO)
   @EventEmitter(selectorName = EventConstants.OPERATION_HEADER, selectorValue = EventConstants.OPERATION_POST_PERMITTABLE_GROUP)
   public String process(final CreatePermittableGroupCommand command) {
-    Assert.isTrue(!repository.get(command.getInstance().getIdentifier()).isPresent());
+    Assert.isTrue(!permittableGroupRegistry.get(command.getInstance().getIdentifier()).isPresent());
 
-    repository.add(map(command.getInstance()));
+    final PermittableGroupEntity permittableGroup = map(command.getInstance());
+    repository.add(permittableGroup);
+    permittableGroupRegistry.add(permittableGroup);
+    //Roles may already reference the new group, so their compiled permissions are no longer complete.
+    tokenPermissionCompiler.recompileRolesReferring(permittableGroup.getIdentifier());
+    compiledRolePermissions.invalidateAll();
 
     return command.getInstance().getIdentifier();
   }
@@ -35,6 +35,8 @@ import org.apache.fineract.cn.identity.internal.repository.ApplicationCallEndpoi
 import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissionUsers;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissions;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationSignatures;
+import org.apache.fineract.cn.identity.internal.repository.Applications;
+import org.apache.fineract.cn.identity.internal.repository.CompiledRoles;
 import org.apache.fineract.cn.identity.internal.repository.PermissionType;
 import org.apache.fineract.cn.identity.internal.repository.Permissions;
 import org.apache.fineract.cn.identity.internal.repository.PermittableGroupEntity;
@@ -46,8 +48,11 @@ import org.apache.fineract.cn.identity.internal.repository.Roles;
 import org.apache.fineract.cn.identity.internal.repository.SignatureEntity;
 import org.apache.fineract.cn.identity.internal.repository.Signatures;
 import org.apache.fineract.cn.identity.internal.repository.Tenants;
+import org.apache.fineract.cn.identity.internal.repository.UserApplicationPermissions;
 import org.apache.fineract.cn.identity.internal.repository.UserEntity;
 import org.apache.fineract.cn.identity.internal.repository.Users;
+import org.apache.fineract.cn.identity.internal.service.PermittableGroupRegistry;
+import org.apache.fineract.cn.identity.internal.service.TenantSecurityContexts;
 import org.apache.fineract.cn.identity.internal.util.IdentityConstants;
 import org.apache.fineract.cn.lang.ServiceException;
 import org.apache.fineract.cn.lang.TenantContextHolder;
@@ -69,11 +74,18 @@ public class Provisioner {
   private final PermittableGroups permittableGroups;
   private final Permissions permissions;
   private final Roles roles;
+  private final CompiledRoles compiledRoles;
   private final ApplicationSignatures applicationSignatures;
+  private final Applications applications;
   private final ApplicationPermissions applicationPermissions;
   private final ApplicationPermissionUsers applicationPermissionUsers;
   private final ApplicationCallEndpointSets applicationCallEndpointSets;
   private final UserEntityCreator userEntityCreator;
+  private final TenantSecurityContexts tenantSecurityContexts;
+  private final PermittableGroupRegistry permittableGroupRegistry;
+  private final TokenPermissionCompiler tokenPermissionCompiler;
+  private final UserApplicationPermissions userApplicationPermissions;
+  private final UserApplicationPermissionCompiler userApplicationPermissionCompiler;
   private final Logger logger;
   private final SaltGenerator saltGenerator;
 
@@ -94,11 +106,18 @@ public class Provisioner {
           final PermittableGroups permittableGroups,
           final Permissions permissions,
           final Roles roles,
+          final CompiledRoles compiledRoles,
           final ApplicationSignatures applicationSignatures,
+          final Applications applications,
           final ApplicationPermissions applicationPermissions,
           final ApplicationPermissionUsers applicationPermissionUsers,
           final ApplicationCallEndpointSets applicationCallEndpointSets,
           final UserEntityCreator userEntityCreator,
+          final TenantSecurityContexts tenantSecurityContexts,
+          final PermittableGroupRegistry permittableGroupRegistry,
+          final TokenPermissionCompiler tokenPermissionCompiler,
+          final UserApplicationPermissions userApplicationPermissions,
+          final UserApplicationPermissionCompiler userApplicationPermissionCompiler,
           @Qualifier(IdentityConstants.LOGGER_NAME) final Logger logger,
           final SaltGenerator saltGenerator)
   {
@@ -108,19 +127,27 @@ public class Provisioner {
     this.permittableGroups = permittableGroups;
     this.permissions = permissions;
     this.roles = roles;
+    this.compiledRoles = compiledRoles;
     this.applicationSignatures = applicationSignatures;
+    this.applications = applications;
     this.applicationPermissions = applicationPermissions;
     this.applicationPermissionUsers = applicationPermissionUsers;
     this.applicationCallEndpointSets = applicationCallEndpointSets;
     this.userEntityCreator = userEntityCreator;
+    this.tenantSecurityContexts = tenantSecurityContexts;
+    this.permittableGroupRegistry = permittableGroupRegistry;
+    this.tokenPermissionCompiler = tokenPermissionCompiler;
+    this.userApplicationPermissions = userApplicationPermissions;
+    this.userApplicationPermissionCompiler = userApplicationPermissionCompiler;
     this.logger = logger;
     this.saltGenerator = saltGenerator;
   }
 
   public synchronized ApplicationSignatureSet provisionTenant(final String initialPasswordHash) {
     {
-      final Optional<ApplicationSignatureSet> latestSignature = signature.getAllKeyTimestamps().stream()
-          .max(String::compareTo)
+      migrate();
+
+      final Optional<ApplicationSignatureSet> latestSignature = signature.getMostRecentValidKeyTimestamp()
           .flatMap(signature::getSignature)
           .map(SignatureMapper::mapToApplicationSignatureSet);
 
@@ -156,9 +183,12 @@ public class Provisioner {
       permittableGroups.buildTable();
       permissions.buildType();
       roles.buildTable();
+      compiledRoles.buildTable();
       applicationSignatures.buildTable();
+      applications.buildTable();
       applicationPermissions.buildTable();
       applicationPermissionUsers.buildTable();
+      userApplicationPermissions.buildTable();
       applicationCallEndpointSets.buildTable();
 
 
@@ -184,6 +214,10 @@ public class Provisioner {
                       fixedSalt, timeToChangePasswordAfterExpirationInDays);
       users.add(suUser);
 
+      tenantSecurityContexts.refresh();
+      permittableGroupRegistry.invalidate();
+      tokenPermissionCompiler.compileAndStore(suRole);
+
       final ApplicationSignatureSet ret = SignatureMapper.mapToApplicationSignatureSet(signatureEntity);
 
       logger.info("Successfully provisioned cassandra tables for tenant '{}'...", TenantContextHolder.checkedGetIdentifier());
@@ -197,6 +231,24 @@ public class Provisioner {
     }
   }
 
+  private void migrate() {
+    try {
+      signature.migrateValidKeyTimestamps();
+      applicationPermissionUsers.migrateToUserPartitions();
+      applications.migrateFromSignatures();
+      users.migrateRoleIndex();
+      compiledRoles.buildTable();
+      tokenPermissionCompiler.recompileAll();
+      userApplicationPermissions.buildTable();
+      userApplicationPermissionCompiler.recompileAll();
+    }
+    catch (final InvalidQueryException e)
+    {
+      logger.error("Failed to migrate cassandra tables for tenant.", e);
+      throw ServiceException.internalError("Failed to migrate tenant.");
+    }
+  }
+
   private PermissionType fullAccess(final String permittableGroupIdentifier) {
     final PermissionType ret = new PermissionType();
     ret.setPermittableGroupIdentifier(permittableGroupIdentifier);
@@ -31,8 +31,11 @@ import org.apache.fineract.cn.identity.internal.command.ChangeRoleCommand;
 import org.apache.fineract.cn.identity.internal.command.CreateRoleCommand;
 import org.apache.fineract.cn.identity.internal.command.DeleteRoleCommand;
 import org.apache.fineract.cn.identity.internal.mapper.PermissionMapper;
+import org.apache.fineract.cn.identity.internal.repository.CompiledRoles;
 import org.apache.fineract.cn.identity.internal.repository.RoleEntity;
 import org.apache.fineract.cn.identity.internal.repository.Roles;
+import org.apache.fineract.cn.identity.internal.service.AccessTokenCache;
+import org.apache.fineract.cn.identity.internal.service.CompiledRolePermissions;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
@@ -46,11 +49,26 @@ import org.springframework.util.Assert;
 public class RoleCommandHandler {
 
   private final Roles roles;
+  private final CompiledRoles compiledRoles;
+  private final TokenPermissionCompiler tokenPermissionCompiler;
+  private final UserApplicationPermissionCompiler userApplicationPermissionCompiler;
+  private final CompiledRolePermissions compiledRolePermissions;
+  private final AccessTokenCache accessTokenCache;
 
   @Autowired
-  public RoleCommandHandler(final Roles roles)
+  public RoleCommandHandler(final Roles roles,
+                            final CompiledRoles compiledRoles,
+                            final TokenPermissionCompiler tokenPermissionCompiler,
+                            final UserApplicationPermissionCompiler userApplicationPermissionCompiler,
+                            final CompiledRolePermissions compiledRolePermissions,
+                            final AccessTokenCache accessTokenCache)
   {
     this.roles = roles;
+    this.compiledRoles = compiledRoles;
+    this.tokenPermissionCompiler = tokenPermissionCompiler;
+    this.userApplicationPermissionCompiler = userApplicationPermissionCompiler;
+    this.compiledRolePermissions = compiledRolePermissions;
+    this.accessTokenCache = accessTokenCache;
   }
 
   @CommandHandler(logStart = CommandLogLevel.INFO, logFinish = CommandLogLevel.INFO)
@@ -59,7 +77,12 @@ public class RoleCommandHandler {
     final Optional<RoleEntity> instance = roles.get(command.getIdentifier());
     Assert.isTrue(instance.isPresent());
 
-    instance.ifPresent(x -> roles.change(mapRole(command.getInstance())));
+    final RoleEntity changed = mapRole(command.getInstance());
+    instance.ifPresent(x -> roles.change(changed));
+    tokenPermissionCompiler.compileAndStore(changed);
+    userApplicationPermissionCompiler.recompileUsersWithRole(command.getIdentifier());
+    compiledRolePermissions.invalidate(command.getIdentifier());
+    accessTokenCache.invalidateRole(command.getIdentifier());
 
     return command.getInstance().getIdentifier();
   }
@@ -69,7 +92,10 @@ public class RoleCommandHandler {
   public String process(final CreateRoleCommand command) {
     Assert.isTrue(!roles.get(command.getInstance().getIdentifier()).isPresent());
 
-    roles.add(mapRole(command.getInstance()));
+    final RoleEntity created = mapRole(command.getInstance());
+    roles.add(created);
+    tokenPermissionCompiler.compileAndStore(created);
+    compiledRolePermissions.invalidate(command.getInstance().getIdentifier());
 
     return command.getInstance().getIdentifier();
   }
@@ -81,6 +107,10 @@ public class RoleCommandHandler {
     Assert.isTrue(instance.isPresent());
 
     instance.ifPresent(roles::delete);
+    compiledRoles.delete(command.getIdentifier());
+    userApplicationPermissionCompiler.recompileUsersWithRole(command.getIdentifier());
+    compiledRolePermissions.invalidate(command.getIdentifier());
+    accessTokenCache.invalidateRole(command.getIdentifier());
 
     return command.getIdentifier();
   }
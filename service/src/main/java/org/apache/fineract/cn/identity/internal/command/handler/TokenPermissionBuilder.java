@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.command.handler;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+import org.apache.fineract.cn.identity.internal.repository.AllowedOperationType;
+import org.apache.fineract.cn.identity.internal.service.RoleMapper;
+
+/**
+ * Collects the operations allowed on each path into a bit mask, in an open addressed table of parallel arrays, so
+ * that adding a permittable allocates nothing.  Token permissions are only created once per path in {@link #build},
+ * which also removes the paths already granted by a wildcard path.
+ *
+ * Not thread safe.  An instance can be reused after {@link #clear}, and keeps the capacity it has grown to.
+ */
+final class TokenPermissionBuilder {
+  private static final AllowedOperation[] OPERATIONS = AllowedOperation.values();
+  private static final int[] TYPE_MASKS = Arrays.stream(AllowedOperationType.values())
+      .mapToInt(x -> 1 << RoleMapper.mapAllowedOperation(x).ordinal())
+      .toArray();
+  private static final int MINIMUM_CAPACITY = 64;
+
+  private String[] paths;
+  private int[] masks;
+  private int size;
+
+  TokenPermissionBuilder() {
+    this(MINIMUM_CAPACITY / 2);
+  }
+
+  TokenPermissionBuilder(final int expectedPaths) {
+    int capacity = MINIMUM_CAPACITY;
+    while (capacity < expectedPaths * 2)
+      capacity <<= 1;
+    paths = new String[capacity];
+    masks = new int[capacity];
+  }
+
+  /**
+   * @param allowedOperationType may be null, for permittables with a method which doesn't map to an operation.  These
+   *                             are ignored.
+   */
+  TokenPermissionBuilder add(final String path, final AllowedOperationType allowedOperationType) {
+    if (allowedOperationType != null)
+      addMask(path, TYPE_MASKS[allowedOperationType.ordinal()]);
+    return this;
+  }
+
+  TokenPermissionBuilder add(final TokenPermission tokenPermission) {
+    int mask = 0;
+    for (final AllowedOperation allowedOperation : tokenPermission.getAllowedOperations())
+      mask |= 1 << allowedOperation.ordinal();
+    addMask(tokenPermission.getPath(), mask);
+    return this;
+  }
+
+  TokenPermissionBuilder addAll(final Collection<TokenPermission> tokenPermissions) {
+    tokenPermissions.forEach(this::add);
+    return this;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return one token permission per path, less the ones covered by a wildcard path.  The builder is not cleared.
+   */
+  Set<TokenPermission> build() {
+    final TokenPermission[] merged = new TokenPermission[size];
+    int count = 0;
+    for (int i = 0; i < paths.length; i++) {
+      if (paths[i] != null)
+        merged[count++] = new TokenPermission(paths[i], toAllowedOperations(masks[i]));
+    }
+
+    final List<TokenPermission> compacted = TokenPermissionCompactor.compact(Arrays.asList(merged));
+    final Set<TokenPermission> ret = new HashSet<>(compacted.size() * 4 / 3 + 1);
+    ret.addAll(compacted);
+    return ret;
+  }
+
+  void clear() {
+    if (size == 0)
+      return;
+    Arrays.fill(paths, null);
+    Arrays.fill(masks, 0);
+    size = 0;
+  }
+
+  private void addMask(final String path, final int mask) {
+    final int slot = slotOf(paths, path);
+    if (paths[slot] != null) {
+      masks[slot] |= mask;
+      return;
+    }
+
+    paths[slot] = path;
+    masks[slot] = mask;
+    size++;
+    if (size * 2 > paths.length)
+      grow();
+  }
+
+  private void grow() {
+    final String[] oldPaths = paths;
+    final int[] oldMasks = masks;
+    paths = new String[oldPaths.length * 2];
+    masks = new int[oldMasks.length * 2];
+    for (int i = 0; i < oldPaths.length; i++) {
+      if (oldPaths[i] != null) {
+        final int slot = slotOf(paths, oldPaths[i]);
+        paths[slot] = oldPaths[i];
+        masks[slot] = oldMasks[i];
+      }
+    }
+  }
+
+  /**
+   * @return the slot containing path, or the empty slot it should be put in.
+   */
+  private static int slotOf(final String[] paths, final String path) {
+    final int hash = path.hashCode();
+    int slot = (hash ^ (hash >>> 16)) & (paths.length - 1);
+    while (paths[slot] != null && !paths[slot].equals(path))
+      slot = (slot + 1) & (paths.length - 1);
+    return slot;
+  }
+
+  private static Set<AllowedOperation> toAllowedOperations(final int mask) {
+    final Set<AllowedOperation> ret = EnumSet.noneOf(AllowedOperation.class);
+    for (int i = 0; i < OPERATIONS.length; i++) {
+      if ((mask & (1 << i)) != 0)
+        ret.add(OPERATIONS[i]);
+    }
+    return ret;
+  }
+}
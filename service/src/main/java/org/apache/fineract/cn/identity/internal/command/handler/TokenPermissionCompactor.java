@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.command.handler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+
+/**
+ * Removes token permissions which are already granted by a wildcard path in the same set.
+ *
+ * Paths are compared segment by segment, the way anubis matches them against a request: a "*" segment matches any
+ * one segment, and a "*" as the last segment also matches any number of further segments.  Every other segment,
+ * including placeholders such as "{useridentifier}", only matches itself here.  A permission is removed if, for each
+ * of its operations, some other permission in the set with a covering path allows that operation.  Since covering is
+ * transitive and two different paths never cover each other, the effective permissions of the set are unchanged.
+ * Permissions without any operations grant nothing and are removed as well.
+ *
+ * Expects paths to be unique, as they are after {@link AuthenticationCommandHandler#minify}.
+ */
+final class TokenPermissionCompactor {
+  private static final String WILDCARD = "*";
+
+  private static class Node {
+    private final Map<String, Node> children = new HashMap<>();
+    private Set<AllowedOperation> allowedOperations;
+  }
+
+  private TokenPermissionCompactor() {
+  }
+
+  static List<TokenPermission> compact(final Collection<TokenPermission> tokenPermissions) {
+    final Node root = new Node();
+    for (final TokenPermission tokenPermission : tokenPermissions) {
+      Node node = root;
+      for (final String segment : segments(tokenPermission.getPath()))
+        node = node.children.computeIfAbsent(segment, x -> new Node());
+      node.allowedOperations = tokenPermission.getAllowedOperations();
+    }
+
+    final List<TokenPermission> ret = new ArrayList<>(tokenPermissions.size());
+    for (final TokenPermission tokenPermission : tokenPermissions) {
+      if (tokenPermission.getAllowedOperations().isEmpty())
+        continue;
+      final String[] segments = segments(tokenPermission.getPath());
+      final Set<AllowedOperation> covered = EnumSet.noneOf(AllowedOperation.class);
+      collectCoveringOperations(root, segments, 0, false, covered);
+      if (!covered.containsAll(tokenPermission.getAllowedOperations()))
+        ret.add(tokenPermission);
+    }
+    return ret;
+  }
+
+  /**
+   * Adds the operations of every path in the trie below node which covers segments from index on, other than the
+   * path itself.  viaWildcard is true once a "*" was followed in place of a different segment.
+   */
+  private static void collectCoveringOperations(
+      final Node node,
+      final String[] segments,
+      final int index,
+      final boolean viaWildcard,
+      final Set<AllowedOperation> covered) {
+    if (index == segments.length) {
+      if (viaWildcard && node.allowedOperations != null)
+        covered.addAll(node.allowedOperations);
+      return;
+    }
+
+    final String segment = segments[index];
+    final Node exact = node.children.get(segment);
+    if (exact != null)
+      descend(exact, segment, segments, index, viaWildcard, covered);
+
+    if (!segment.equals(WILDCARD)) {
+      final Node wildcard = node.children.get(WILDCARD);
+      if (wildcard != null)
+        descend(wildcard, WILDCARD, segments, index, true, covered);
+    }
+  }
+
+  private static void descend(
+      final Node child,
+      final String childSegment,
+      final String[] segments,
+      final int index,
+      final boolean viaWildcard,
+      final Set<AllowedOperation> covered) {
+    //A path ending in a wildcard also covers whatever follows it.
+    if (childSegment.equals(WILDCARD) && child.allowedOperations != null && index + 1 < segments.length)
+      covered.addAll(child.allowedOperations);
+    collectCoveringOperations(child, segments, index + 1, viaWildcard, covered);
+  }
+
+  private static String[] segments(final String path) {
+    return path.split("/", -1);
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.command.handler;
+
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.google.common.collect.Sets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+import org.apache.fineract.cn.identity.internal.repository.AllowedOperationType;
+import org.apache.fineract.cn.identity.internal.repository.CompiledRoles;
+import org.apache.fineract.cn.identity.internal.repository.PermittableGroupEntity;
+import org.apache.fineract.cn.identity.internal.repository.PermittableType;
+import org.apache.fineract.cn.identity.internal.repository.RoleEntity;
+import org.apache.fineract.cn.identity.internal.repository.Roles;
+import org.apache.fineract.cn.identity.internal.service.GroupIdentifiers;
+import org.apache.fineract.cn.identity.internal.service.GroupPermissions;
+import org.apache.fineract.cn.identity.internal.service.PermittableGroupRegistry;
+import org.apache.fineract.cn.lang.ApplicationName;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Expands permissions on permittable groups into token permissions, and keeps the compiled permissions of each role
+ * in {@link CompiledRoles} up to date.
+ */
+@Component
+public class TokenPermissionCompiler {
+  private final PermittableGroupRegistry permittableGroupRegistry;
+  private final GroupIdentifiers groupIdentifiers;
+  private final Roles roles;
+  private final CompiledRoles compiledRoles;
+  private final ApplicationName applicationName;
+  private final ThreadLocal<TokenPermissionBuilder> tokenPermissionBuilders
+          = ThreadLocal.withInitial(TokenPermissionBuilder::new);
+
+  @Autowired
+  public TokenPermissionCompiler(final PermittableGroupRegistry permittableGroupRegistry,
+                                 final GroupIdentifiers groupIdentifiers,
+                                 final Roles roles,
+                                 final CompiledRoles compiledRoles,
+                                 final ApplicationName applicationName) {
+    this.permittableGroupRegistry = permittableGroupRegistry;
+    this.groupIdentifiers = groupIdentifiers;
+    this.roles = roles;
+    this.compiledRoles = compiledRoles;
+    this.applicationName = applicationName;
+  }
+
+  /**
+   * @return the minified token permissions of the role, including the endpoints every user may access.  The set is
+   * unmodifiable.
+   */
+  public Set<TokenPermission> compile(final RoleEntity role) {
+    final GroupPermissions groupPermissions = GroupPermissions.of(role.getPermissions(), groupIdentifiers);
+    final TokenPermissionBuilder builder = getBuilder();
+    for (int i = 0; i < groupPermissions.size(); i++)
+      addPermittables(builder, groupPermissions.groupAt(i), groupPermissions.operationsAt(i));
+
+    builder.addAll(identityEndpointsForEveryUser());
+
+    return Collections.unmodifiableSet(builder.build());
+  }
+
+  /**
+   * Should be called after the role has been saved.
+   */
+  public void compileAndStore(final RoleEntity role) {
+    compileAndStore(role, compiledRoles.timestamp());
+  }
+
+  /**
+   * Recompiles the roles which refer to the permittable group.  Should be called after the group has been saved.
+   */
+  public void recompileRolesReferring(final String permittableGroupIdentifier) {
+    final long readAt = compiledRoles.timestamp();
+    getAllRoles().stream()
+            .filter(role -> role.getPermissions().stream()
+                    .anyMatch(x -> permittableGroupIdentifier.equals(x.getPermittableGroupIdentifier())))
+            .forEach(role -> compileAndStore(role, readAt));
+  }
+
+  /**
+   * Recompiles every role of the tenant.  Used to fill the table for tenants provisioned before it existed, and to
+   * repair it.  Can safely be called more than once.
+   */
+  public void recompileAll() {
+    final long readAt = compiledRoles.timestamp();
+    getAllRoles().forEach(role -> compileAndStore(role, readAt));
+  }
+
+  /**
+   * @param readAt when the role was read, or saved.  Taken before reading, so that a role changed concurrently is
+   *               stored with a later time, and its compilation isn't replaced with this one.
+   */
+  private void compileAndStore(final RoleEntity role, final long readAt) {
+    compiledRoles.put(role.getIdentifier(), compile(role), readAt);
+  }
+
+  Set<TokenPermission> identityEndpointsForEveryUser() {
+    final Set<TokenPermission> ret = identityEndpointsAllowedEvenWithExpiredPassword();
+
+    ret.add(new TokenPermission(
+            applicationName + "/applications/*/permissions/*/users/{useridentifier}/enabled",
+            Sets.newHashSet(AllowedOperation.READ, AllowedOperation.CHANGE, AllowedOperation.DELETE)));
+    ret.add(new TokenPermission(
+            applicationName + "/users/{useridentifier}/permissions",
+            Sets.newHashSet(AllowedOperation.READ)));
+
+    return ret;
+  }
+
+  Set<TokenPermission> identityEndpointsAllowedEvenWithExpiredPassword() {
+    final Set<TokenPermission> ret = new HashSet<>();
+
+    ret.add(new TokenPermission(
+            applicationName + "/users/{useridentifier}/password",
+            Sets.newHashSet(AllowedOperation.READ, AllowedOperation.CHANGE, AllowedOperation.DELETE)));
+    ret.add(new TokenPermission(
+            applicationName + "/token/_current",
+            Sets.newHashSet(AllowedOperation.DELETE)));
+
+    return ret;
+  }
+
+  /**
+   * Adds the paths of the permittables in the group whose method maps to one of the allowed operations.
+   *
+   * @param allowedOperations a mask as in {@link GroupPermissions}.
+   */
+  void addPermittables(
+          final TokenPermissionBuilder builder,
+          final int group,
+          final int allowedOperations) {
+    final Optional<PermittableGroupEntity> permittableGroup
+            = permittableGroupRegistry.get(groupIdentifiers.identifierOf(group));
+    if (!permittableGroup.isPresent())
+      return;
+
+    for (final PermittableType permittable : permittableGroup.get().getPermittables()) {
+      final AllowedOperationType allowedOperation = AllowedOperationType.fromHttpMethod(permittable.getMethod());
+      if (allowedOperation != null && (allowedOperations & GroupPermissions.mask(allowedOperation)) != 0)
+        builder.add(permittable.getPath(), allowedOperation);
+    }
+  }
+
+  /**
+   * @return the builder of the current thread, cleared.  Only one token may be compiled with it at a time.
+   */
+  TokenPermissionBuilder getBuilder() {
+    final TokenPermissionBuilder ret = tokenPermissionBuilders.get();
+    ret.clear();
+    return ret;
+  }
+
+  private List<RoleEntity> getAllRoles() {
+    try {
+      return roles.getAll();
+    }
+    catch (final InvalidQueryException e) {
+      //The tenant hasn't been provisioned yet, so there are no roles.
+      return Collections.emptyList();
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.command.handler;
+
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissionUsers;
+import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissions;
+import org.apache.fineract.cn.identity.internal.repository.PermissionType;
+import org.apache.fineract.cn.identity.internal.repository.Roles;
+import org.apache.fineract.cn.identity.internal.repository.UserApplicationPermissions;
+import org.apache.fineract.cn.identity.internal.repository.Users;
+import org.apache.fineract.cn.identity.internal.service.GroupIdentifiers;
+import org.apache.fineract.cn.identity.internal.service.GroupPermissions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps {@link UserApplicationPermissions} up to date.  Every row is computed from what is currently stored for the
+ * user's role, the application's permissions, and the user's enablements, so it doesn't matter in what order the
+ * changes reach it.  If the user's role doesn't exist, the row is removed instead, so that logging in with the
+ * application is refused, as it is when the permissions are computed on the fly.
+ */
+@Component
+public class UserApplicationPermissionCompiler {
+  private final Users users;
+  private final Roles roles;
+  private final ApplicationPermissions applicationPermissions;
+  private final ApplicationPermissionUsers applicationPermissionUsers;
+  private final UserApplicationPermissions userApplicationPermissions;
+  private final GroupIdentifiers groupIdentifiers;
+
+  @Autowired
+  public UserApplicationPermissionCompiler(final Users users,
+                                           final Roles roles,
+                                           final ApplicationPermissions applicationPermissions,
+                                           final ApplicationPermissionUsers applicationPermissionUsers,
+                                           final UserApplicationPermissions userApplicationPermissions,
+                                           final GroupIdentifiers groupIdentifiers) {
+    this.users = users;
+    this.roles = roles;
+    this.applicationPermissions = applicationPermissions;
+    this.applicationPermissionUsers = applicationPermissionUsers;
+    this.userApplicationPermissions = userApplicationPermissions;
+    this.groupIdentifiers = groupIdentifiers;
+  }
+
+  /**
+   * Should be called after the user has enabled or disabled a permission for the application.
+   */
+  public void compileAndStore(final String userIdentifier, final String applicationIdentifier) {
+    compileAndStore(userIdentifier, getUserRole(userIdentifier), applicationIdentifier);
+  }
+
+  /**
+   * Should be called after the permissions the application asks for have changed.
+   */
+  public void recompileApplication(final String applicationIdentifier) {
+    applicationPermissionUsers.getUsers(applicationIdentifier)
+        .forEach(x -> compileAndStore(x, applicationIdentifier));
+  }
+
+  /**
+   * Should be called after the user has been given another role.
+   */
+  public void recompileUser(final String userIdentifier) {
+    final List<String> applications = userApplicationPermissions.getApplications(userIdentifier);
+    if (applications.isEmpty())
+      return;
+
+    final Optional<GroupPermissions> userRole = getUserRole(userIdentifier);
+    applications.forEach(x -> compileAndStore(userIdentifier, userRole, x));
+  }
+
+  /**
+   * Should be called after the role has been changed or deleted.  Finds the role's users through the index by role.
+   */
+  public void recompileUsersWithRole(final String roleIdentifier) {
+    final Optional<GroupPermissions> userRole = roles.get(roleIdentifier)
+        .map(x -> GroupPermissions.of(x.getPermissions(), groupIdentifiers));
+
+    users.getIdentifiersWithRole(roleIdentifier)
+        .forEach(user -> userApplicationPermissions.getApplications(user)
+            .forEach(application -> compileAndStore(user, userRole, application)));
+  }
+
+  /**
+   * Fills the table for every user who has enabled or disabled a permission for an application.  Used for tenants
+   * provisioned before it existed, and to repair it.  Can safely be called more than once.
+   */
+  public void recompileAll() {
+    final List<String> applications;
+    try {
+      applications = applicationPermissionUsers.getApplications();
+    }
+    catch (final InvalidQueryException e) {
+      //The tenant hasn't been provisioned yet, so no permissions have been enabled.
+      return;
+    }
+    applications.forEach(this::recompileApplication);
+  }
+
+  private Optional<GroupPermissions> getUserRole(final String userIdentifier) {
+    return users.get(userIdentifier)
+        .flatMap(x -> roles.get(x.getRole()))
+        .map(x -> GroupPermissions.of(x.getPermissions(), groupIdentifiers));
+  }
+
+  private void compileAndStore(final String userIdentifier,
+                               final Optional<GroupPermissions> userRole,
+                               final String applicationIdentifier) {
+    if (!userRole.isPresent()) {
+      userApplicationPermissions.delete(userIdentifier, applicationIdentifier);
+      return;
+    }
+
+    final List<PermissionType> requested = applicationPermissions.getAllPermissionsForApplication(applicationIdentifier);
+    final Set<Integer> enabledGroups = applicationPermissionUsers
+        .getEnabledPermittableGroups(applicationIdentifier, userIdentifier).stream()
+        .map(groupIdentifiers::intern)
+        .collect(Collectors.toSet());
+
+    final GroupPermissions granted = userRole.get()
+        .intersect(GroupPermissions.of(requested, groupIdentifiers))
+        .retainGroups(enabledGroups::contains);
+    userApplicationPermissions.put(userIdentifier, applicationIdentifier, granted.toPermissions(groupIdentifiers));
+  }
+}
@@ -28,6 +28,8 @@ import org.apache.fineract.cn.identity.internal.command.ChangeUserRoleCommand;
 import org.apache.fineract.cn.identity.internal.command.CreateUserCommand;
 import org.apache.fineract.cn.identity.internal.repository.UserEntity;
 import org.apache.fineract.cn.identity.internal.repository.Users;
+import org.apache.fineract.cn.identity.internal.service.AccessTokenCache;
+import org.apache.fineract.cn.identity.internal.service.FailedLoginTracker;
 import org.apache.fineract.cn.lang.ServiceException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -44,14 +46,23 @@ public class UserCommandHandler {
 
   private final Users usersRepository;
   private final UserEntityCreator userEntityCreator;
+  private final FailedLoginTracker failedLoginTracker;
+  private final AccessTokenCache accessTokenCache;
+  private final UserApplicationPermissionCompiler userApplicationPermissionCompiler;
 
   @Autowired
   UserCommandHandler(
           final Users usersRepository,
-          final UserEntityCreator userEntityCreator)
+          final UserEntityCreator userEntityCreator,
+          final FailedLoginTracker failedLoginTracker,
+          final AccessTokenCache accessTokenCache,
+          final UserApplicationPermissionCompiler userApplicationPermissionCompiler)
   {
     this.usersRepository = usersRepository;
     this.userEntityCreator = userEntityCreator;
+    this.failedLoginTracker = failedLoginTracker;
+    this.accessTokenCache = accessTokenCache;
+    this.userApplicationPermissionCompiler = userApplicationPermissionCompiler;
   }
 
   @CommandHandler(logStart = CommandLogLevel.INFO, logFinish = CommandLogLevel.INFO)
@@ -63,6 +74,8 @@ public class UserCommandHandler {
 
     user.setRole(command.getRole());
     usersRepository.add(user);
+    userApplicationPermissionCompiler.recompileUser(user.getIdentifier());
+    accessTokenCache.invalidateUser(user.getIdentifier());
 
     return user.getIdentifier();
   }
@@ -78,6 +91,8 @@ public class UserCommandHandler {
             user.getIdentifier(), user.getRole(), command.getPassword(),
             !SecurityContextHolder.getContext().getAuthentication().getName().equals(command.getIdentifier()));
     usersRepository.add(userWithNewPassword);
+    failedLoginTracker.clear(user.getIdentifier());
+    accessTokenCache.invalidateUser(user.getIdentifier());
 
     return user.getIdentifier();
   }
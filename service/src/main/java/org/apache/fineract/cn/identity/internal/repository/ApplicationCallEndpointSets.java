@@ -19,8 +19,7 @@
 package org.apache.fineract.cn.identity.internal.repository;
 
 import com.datastax.driver.core.DataType;
-import com.datastax.driver.core.Session;
-import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.schemabuilder.Create;
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
@@ -45,18 +44,24 @@ public class ApplicationCallEndpointSets {
   static final String CALLENDPOINTSET_IDENTIFIER_COLUMN = "call_endpoint_set_identifier";
   static final String CALLENDPOINT_GROUP_IDENTIFIERS_COLUMN = "call_endpoint_group_identifiers";
 
+  private static final RegularStatement SELECT_FOR_APPLICATION = QueryBuilder.select().from(TABLE_NAME)
+      .where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+
   private final CassandraSessionProvider cassandraSessionProvider;
   private final TenantAwareEntityTemplate tenantAwareEntityTemplate;
   private final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider;
+  private final PreparedStatements preparedStatements;
 
   @Autowired
   public ApplicationCallEndpointSets(
           final CassandraSessionProvider cassandraSessionProvider,
           final TenantAwareEntityTemplate tenantAwareEntityTemplate,
-          final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider) {
+          final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider,
+          final PreparedStatements preparedStatements) {
     this.cassandraSessionProvider = cassandraSessionProvider;
     this.tenantAwareEntityTemplate = tenantAwareEntityTemplate;
     this.tenantAwareCassandraMapperProvider = tenantAwareCassandraMapperProvider;
+    this.preparedStatements = preparedStatements;
   }
 
   public void buildTable() {
@@ -92,11 +97,8 @@ public class ApplicationCallEndpointSets {
 
   public List<ApplicationCallEndpointSetEntity> getAllForApplication(final String applicationIdentifier) {
     final Mapper<ApplicationCallEndpointSetEntity> entityMapper = tenantAwareCassandraMapperProvider.getMapper(ApplicationCallEndpointSetEntity.class);
-    final Session tenantSession = cassandraSessionProvider.getTenantSession();
-
-    final Statement statement = QueryBuilder.select().from(TABLE_NAME).where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, applicationIdentifier));
 
-    return entityMapper.map(tenantSession.execute(statement)).all();
+    return entityMapper.map(preparedStatements.execute(SELECT_FOR_APPLICATION, applicationIdentifier)).all();
   }
 
   public void delete(final String applicationIdentifier, final String callEndpointSetIdentifier) {
@@ -19,31 +19,127 @@
 package org.apache.fineract.cn.identity.internal.repository;
 
 import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.schemabuilder.Create;
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
 import org.apache.fineract.cn.cassandra.core.TenantAwareEntityTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
+ * Which permissions each user has enabled for each application.
+ *
+ * The enablements are kept in isis_application_user_permissions, partitioned by application and a bucket computed
+ * from the user, and clustered by user and permittable group.  That keeps the partitions of applications with many
+ * users small, and all enablements of one user for an application next to each other.  The number of buckets can't
+ * be changed without migrating the table.
+ *
+ * isis_application_permission_applications has a row for each application for which any user has enabled or disabled
+ * a permission, so that they can be listed without reading the enablements.
+ *
+ * isis_application_permission_users, partitioned by application only, is still written too, so that instances which
+ * don't know the new tables yet, or haven't noticed yet that the migration has completed, see the same enablements,
+ * and so that the migration can run while the service is in use.  It is read until
+ * {@link #migrateToUserPartitions()} has completed for the tenant.  It can only stop being written once no instance
+ * reads it any more.
+ *
  * @author Myrle Krantz
  */
 @Component
 public class ApplicationPermissionUsers {
   static final String TABLE_NAME = "isis_application_permission_users";
+  static final String USER_PARTITIONED_TABLE_NAME = "isis_application_user_permissions";
+  static final String APPLICATIONS_TABLE_NAME = "isis_application_permission_applications";
   static final String APPLICATION_IDENTIFIER_COLUMN = "application_identifier";
+  static final String BUCKET_COLUMN = "bucket";
   static final String PERMITTABLE_GROUP_IDENTIFIER_COLUMN = "permittable_group_identifier";
   static final String USER_IDENTIFIER_COLUMN = "user_identifier";
   static final String ENABLED_COLUMN = "enabled";
+  static final int BUCKET_COUNT = 64;
+  private static final List<Integer> ALL_BUCKETS
+      = IntStream.range(0, BUCKET_COUNT).boxed().collect(Collectors.toList());
+  private static final String USER_PARTITIONS_MIGRATION = "application_permission_users_by_user";
+  private static final int MIGRATION_FETCH_SIZE = 500;
+
+  private static final RegularStatement INSERT = QueryBuilder.insertInto(USER_PARTITIONED_TABLE_NAME)
+      .value(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker())
+      .value(BUCKET_COLUMN, QueryBuilder.bindMarker())
+      .value(USER_IDENTIFIER_COLUMN, QueryBuilder.bindMarker())
+      .value(PERMITTABLE_GROUP_IDENTIFIER_COLUMN, QueryBuilder.bindMarker())
+      .value(ENABLED_COLUMN, QueryBuilder.bindMarker());
+  private static final RegularStatement INSERT_WITH_TIMESTAMP = QueryBuilder.insertInto(USER_PARTITIONED_TABLE_NAME)
+      .value(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker())
+      .value(BUCKET_COLUMN, QueryBuilder.bindMarker())
+      .value(USER_IDENTIFIER_COLUMN, QueryBuilder.bindMarker())
+      .value(PERMITTABLE_GROUP_IDENTIFIER_COLUMN, QueryBuilder.bindMarker())
+      .value(ENABLED_COLUMN, QueryBuilder.bindMarker())
+      .using(QueryBuilder.timestamp(QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT_ENABLED = QueryBuilder.select(ENABLED_COLUMN)
+      .from(USER_PARTITIONED_TABLE_NAME)
+      .where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()))
+      .and(QueryBuilder.eq(BUCKET_COLUMN, QueryBuilder.bindMarker()))
+      .and(QueryBuilder.eq(USER_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()))
+      .and(QueryBuilder.eq(PERMITTABLE_GROUP_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT_GROUPS_FOR_USER
+      = QueryBuilder.select(PERMITTABLE_GROUP_IDENTIFIER_COLUMN, ENABLED_COLUMN)
+      .from(USER_PARTITIONED_TABLE_NAME)
+      .where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()))
+      .and(QueryBuilder.eq(BUCKET_COLUMN, QueryBuilder.bindMarker()))
+      .and(QueryBuilder.eq(USER_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+  //The user isn't the first clustering column of the old table, so the application's partition has to be filtered.
+  //Filtering is restricted to that one partition, and is only needed until the tenant is migrated.
+  private static final RegularStatement SELECT_GROUPS_FOR_USER_UNMIGRATED
+      = QueryBuilder.select(PERMITTABLE_GROUP_IDENTIFIER_COLUMN, ENABLED_COLUMN)
+      .from(TABLE_NAME)
+      .allowFiltering()
+      .where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()))
+      .and(QueryBuilder.eq(USER_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT_USERS = QueryBuilder.select(USER_IDENTIFIER_COLUMN)
+      .from(USER_PARTITIONED_TABLE_NAME)
+      .where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()))
+      .and(QueryBuilder.in(BUCKET_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT_USERS_UNMIGRATED = QueryBuilder.select(USER_IDENTIFIER_COLUMN)
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT_ALL_UNMIGRATED = QueryBuilder.select()
+      .column(APPLICATION_IDENTIFIER_COLUMN)
+      .column(PERMITTABLE_GROUP_IDENTIFIER_COLUMN)
+      .column(USER_IDENTIFIER_COLUMN)
+      .column(ENABLED_COLUMN)
+      .writeTime(ENABLED_COLUMN)
+      .from(TABLE_NAME);
+  private static final RegularStatement INSERT_APPLICATION = QueryBuilder.insertInto(APPLICATIONS_TABLE_NAME)
+      .value(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker());
+  private static final RegularStatement SELECT_APPLICATIONS
+      = QueryBuilder.select(APPLICATION_IDENTIFIER_COLUMN).from(APPLICATIONS_TABLE_NAME);
+  private static final RegularStatement SELECT_APPLICATIONS_UNMIGRATED
+      = QueryBuilder.select().distinct().column(APPLICATION_IDENTIFIER_COLUMN).from(TABLE_NAME);
+
   private final CassandraSessionProvider cassandraSessionProvider;
   private final TenantAwareEntityTemplate tenantAwareEntityTemplate;
+  private final Migrations migrations;
+  private final PreparedStatements preparedStatements;
 
   @Autowired
   public ApplicationPermissionUsers(final CassandraSessionProvider cassandraSessionProvider,
-                                    final TenantAwareEntityTemplate tenantAwareEntityTemplate) {
+                                    final TenantAwareEntityTemplate tenantAwareEntityTemplate,
+                                    final Migrations migrations,
+                                    final PreparedStatements preparedStatements) {
     this.cassandraSessionProvider = cassandraSessionProvider;
     this.tenantAwareEntityTemplate = tenantAwareEntityTemplate;
+    this.migrations = migrations;
+    this.preparedStatements = preparedStatements;
   }
 
   public void buildTable() {
@@ -55,15 +151,123 @@ public class ApplicationPermissionUsers {
         .addColumn(ENABLED_COLUMN, DataType.cboolean());
 
     cassandraSessionProvider.getTenantSession().execute(create);
+
+    buildUserPartitionedTable();
+    migrations.buildTable();
+    //A new tenant has nothing to migrate.
+    migrations.complete(USER_PARTITIONS_MIGRATION);
+  }
+
+  private void buildUserPartitionedTable() {
+    final Create create = SchemaBuilder.createTable(USER_PARTITIONED_TABLE_NAME)
+        .ifNotExists()
+        .addPartitionKey(APPLICATION_IDENTIFIER_COLUMN, DataType.text())
+        .addPartitionKey(BUCKET_COLUMN, DataType.cint())
+        .addClusteringColumn(USER_IDENTIFIER_COLUMN, DataType.text())
+        .addClusteringColumn(PERMITTABLE_GROUP_IDENTIFIER_COLUMN, DataType.text())
+        .addColumn(ENABLED_COLUMN, DataType.cboolean());
+
+    cassandraSessionProvider.getTenantSession().execute(create);
+
+    final Create createApplications = SchemaBuilder.createTable(APPLICATIONS_TABLE_NAME)
+        .ifNotExists()
+        .addPartitionKey(APPLICATION_IDENTIFIER_COLUMN, DataType.text());
+
+    cassandraSessionProvider.getTenantSession().execute(createApplications);
+  }
+
+  /**
+   * Creates isis_application_user_permissions and isis_application_permission_applications for tenants which were
+   * provisioned before they existed, and copies the enablements into them.  Copies keep the write time of the original,
+   * so an enablement changed while this runs isn't overwritten with its previous value.  The old table is read a page
+   * at a time.  Can safely be called more than once.
+   */
+  public void migrateToUserPartitions() {
+    buildUserPartitionedTable();
+    migrations.buildTable();
+
+    //Preparing the select fails if the old table doesn't exist.
+    try {
+      preparedStatements.bind(SELECT_ALL_UNMIGRATED);
+    }
+    catch (final InvalidQueryException e) {
+      //The tenant hasn't been provisioned yet.  buildTable completes the migration when it is.
+      return;
+    }
+    final Set<String> applicationIdentifiers = new HashSet<>();
+    preparedStatements.forEachRow(SELECT_ALL_UNMIGRATED, MIGRATION_FETCH_SIZE, row -> {
+      final String applicationIdentifier = row.getString(APPLICATION_IDENTIFIER_COLUMN);
+      final String userIdentifier = row.getString(USER_IDENTIFIER_COLUMN);
+      if (applicationIdentifiers.add(applicationIdentifier))
+        preparedStatements.execute(INSERT_APPLICATION, applicationIdentifier);
+      preparedStatements.execute(INSERT_WITH_TIMESTAMP,
+          applicationIdentifier,
+          bucketOf(userIdentifier),
+          userIdentifier,
+          row.getString(PERMITTABLE_GROUP_IDENTIFIER_COLUMN),
+          row.getBool(ENABLED_COLUMN),
+          row.getLong(4));
+    });
+
+    migrations.complete(USER_PARTITIONS_MIGRATION);
   }
 
   public boolean enabled(final String applicationIdentifier,
                          final String permittableEndpointGroupIdentifier,
                          final String userIdentifier) {
-    return tenantAwareEntityTemplate.findById(
-            ApplicationPermissionUsersEntity.class, applicationIdentifier, permittableEndpointGroupIdentifier, userIdentifier)
-            .map(ApplicationPermissionUsersEntity::getEnabled)
-            .orElse(false);
+    if (!migrations.isCompleted(USER_PARTITIONS_MIGRATION)) {
+      return tenantAwareEntityTemplate.findById(
+              ApplicationPermissionUsersEntity.class, applicationIdentifier, permittableEndpointGroupIdentifier, userIdentifier)
+              .map(ApplicationPermissionUsersEntity::getEnabled)
+              .orElse(false);
+    }
+
+    final Row row = preparedStatements.execute(SELECT_ENABLED,
+            applicationIdentifier, bucketOf(userIdentifier), userIdentifier, permittableEndpointGroupIdentifier).one();
+    return (row != null) && row.getBool(ENABLED_COLUMN);
+  }
+
+  /**
+   * @return the permittable groups which the user has enabled for the application.  Reads all of them in one query of
+   * a single partition.
+   */
+  public Set<String> getEnabledPermittableGroups(final String applicationIdentifier,
+                                                 final String userIdentifier) {
+    final ResultSet result = migrations.isCompleted(USER_PARTITIONS_MIGRATION)
+            ? preparedStatements.execute(SELECT_GROUPS_FOR_USER,
+                applicationIdentifier, bucketOf(userIdentifier), userIdentifier)
+            : preparedStatements.execute(SELECT_GROUPS_FOR_USER_UNMIGRATED, applicationIdentifier, userIdentifier);
+
+    return StreamSupport.stream(result.spliterator(), false)
+            .filter(x -> x.getBool(ENABLED_COLUMN))
+            .map(x -> x.getString(PERMITTABLE_GROUP_IDENTIFIER_COLUMN))
+            .collect(Collectors.toSet());
+  }
+
+  /**
+   * @return the users who have enabled or disabled any permission for the application.
+   */
+  public Set<String> getUsers(final String applicationIdentifier) {
+    final ResultSet result = migrations.isCompleted(USER_PARTITIONS_MIGRATION)
+            ? preparedStatements.execute(SELECT_USERS, applicationIdentifier, ALL_BUCKETS)
+            : preparedStatements.execute(SELECT_USERS_UNMIGRATED, applicationIdentifier);
+
+    return StreamSupport.stream(result.spliterator(), false)
+            .map(x -> x.getString(USER_IDENTIFIER_COLUMN))
+            .collect(Collectors.toSet());
+  }
+
+  /**
+   * @return the applications for which any user has enabled or disabled a permission.
+   */
+  public List<String> getApplications() {
+    final ResultSet result = migrations.isCompleted(USER_PARTITIONS_MIGRATION)
+            ? preparedStatements.execute(SELECT_APPLICATIONS)
+            : preparedStatements.execute(SELECT_APPLICATIONS_UNMIGRATED);
+
+    return StreamSupport.stream(result.spliterator(), false)
+            .map(x -> x.getString(APPLICATION_IDENTIFIER_COLUMN))
+            .collect(Collectors.toList());
   }
 
   public void setEnabled(final String applicationIdentifier,
@@ -71,5 +275,17 @@ public class ApplicationPermissionUsers {
                          final String userIdentifier,
                          final boolean enabled) {
     tenantAwareEntityTemplate.save(new ApplicationPermissionUsersEntity(applicationIdentifier, permittableGroupIdentifier, userIdentifier, enabled));
+    try {
+      preparedStatements.execute(INSERT_APPLICATION, applicationIdentifier);
+      preparedStatements.execute(INSERT,
+              applicationIdentifier, bucketOf(userIdentifier), userIdentifier, permittableGroupIdentifier, enabled);
+    }
+    catch (final InvalidQueryException e) {
+      //The table is created, and filled from the old one, when the tenant is migrated.
+    }
+  }
+
+  static int bucketOf(final String userIdentifier) {
+    return Math.floorMod(userIdentifier.hashCode(), BUCKET_COUNT);
   }
 }
@@ -19,8 +19,7 @@
 package org.apache.fineract.cn.identity.internal.repository;
 
 import com.datastax.driver.core.DataType;
-import com.datastax.driver.core.Session;
-import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.schemabuilder.Create;
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
@@ -45,17 +44,23 @@ public class ApplicationPermissions {
   static final String PERMITTABLE_GROUP_IDENTIFIER_COLUMN = "permittable_group_identifier";
   static final String PERMISSION_COLUMN = "permission";
 
+  private static final RegularStatement SELECT_FOR_APPLICATION = QueryBuilder.select().from(TABLE_NAME)
+      .where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+
   private final CassandraSessionProvider cassandraSessionProvider;
   private final TenantAwareEntityTemplate tenantAwareEntityTemplate;
   private final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider;
+  private final PreparedStatements preparedStatements;
 
   @Autowired
   public ApplicationPermissions(final CassandraSessionProvider cassandraSessionProvider,
                                 final TenantAwareEntityTemplate tenantAwareEntityTemplate,
-                                final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider) {
+                                final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider,
+                                final PreparedStatements preparedStatements) {
     this.cassandraSessionProvider = cassandraSessionProvider;
     this.tenantAwareEntityTemplate = tenantAwareEntityTemplate;
     this.tenantAwareCassandraMapperProvider = tenantAwareCassandraMapperProvider;
+    this.preparedStatements = preparedStatements;
   }
 
   public void buildTable() {
@@ -84,11 +89,8 @@ public class ApplicationPermissions {
 
   private List<ApplicationPermissionEntity> getAllApplicationPermissionEntitiesForApplication(final String applicationIdentifier) {
     final Mapper<ApplicationPermissionEntity> entityMapper = tenantAwareCassandraMapperProvider.getMapper(ApplicationPermissionEntity.class);
-    final Session tenantSession = cassandraSessionProvider.getTenantSession();
-
-    final Statement statement = QueryBuilder.select().from(TABLE_NAME).where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, applicationIdentifier));
 
-    return entityMapper.map(tenantSession.execute(statement)).all();
+    return entityMapper.map(preparedStatements.execute(SELECT_FOR_APPLICATION, applicationIdentifier)).all();
   }
 
   public void delete(final String applicationIdentifier, final String permittableGroupIdentifier) {
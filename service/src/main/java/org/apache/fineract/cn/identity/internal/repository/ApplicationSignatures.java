@@ -19,15 +19,11 @@
 package org.apache.fineract.cn.identity.internal.repository;
 
 import com.datastax.driver.core.DataType;
-import com.datastax.driver.core.ResultSet;
-import com.datastax.driver.core.Session;
-import com.datastax.driver.core.Statement;
-import com.datastax.driver.core.querybuilder.Delete;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
-import com.datastax.driver.core.querybuilder.Select;
 import com.datastax.driver.core.schemabuilder.Create;
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
-import com.datastax.driver.mapping.Mapper;
 import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
 import org.apache.fineract.cn.cassandra.core.TenantAwareCassandraMapperProvider;
 import org.apache.fineract.cn.cassandra.core.TenantAwareEntityTemplate;
@@ -35,6 +31,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -49,17 +46,36 @@ public class ApplicationSignatures {
   static final String PUBLIC_KEY_MOD_COLUMN = "public_key_mod";
   static final String PUBLIC_KEY_EXP_COLUMN = "public_key_exp";
 
+  private static final RegularStatement SELECT_APPLICATION_IDENTIFIERS = QueryBuilder.select()
+      .distinct()
+      .column(APPLICATION_IDENTIFIER_COLUMN)
+      .from(TABLE_NAME);
+  private static final RegularStatement DELETE_FOR_APPLICATION = QueryBuilder.delete().from(TABLE_NAME)
+      .where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT_ONE_FOR_APPLICATION = QueryBuilder.select(KEY_TIMESTAMP_COLUMN)
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()))
+      .limit(1);
+  private static final RegularStatement SELECT_LATEST_KEY_TIMESTAMP = QueryBuilder.select(KEY_TIMESTAMP_COLUMN)
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()))
+      .orderBy(QueryBuilder.desc(KEY_TIMESTAMP_COLUMN))
+      .limit(1);
+
   private final CassandraSessionProvider cassandraSessionProvider;
   private final TenantAwareEntityTemplate tenantAwareEntityTemplate;
   private final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider;
+  private final PreparedStatements preparedStatements;
 
   @Autowired
   public ApplicationSignatures(final CassandraSessionProvider cassandraSessionProvider,
                                final TenantAwareEntityTemplate tenantAwareEntityTemplate,
-                               final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider) {
+                               final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider,
+                               final PreparedStatements preparedStatements) {
     this.cassandraSessionProvider = cassandraSessionProvider;
     this.tenantAwareEntityTemplate = tenantAwareEntityTemplate;
     this.tenantAwareCassandraMapperProvider = tenantAwareCassandraMapperProvider;
+    this.preparedStatements = preparedStatements;
   }
 
   public void buildTable() {
@@ -92,26 +108,37 @@ public class ApplicationSignatures {
     return Optional.ofNullable(entity);
   }
 
-  public List<ApplicationSignatureEntity> getAll() {
-    final Mapper<ApplicationSignatureEntity> entityMapper = tenantAwareCassandraMapperProvider.getMapper(ApplicationSignatureEntity.class);
-    final Session tenantSession = cassandraSessionProvider.getTenantSession();
+  /**
+   * Reads only the partition keys, so each application is returned once, however many keys it has.
+   */
+  public List<String> getApplicationIdentifiers() {
+    final List<String> ret = new ArrayList<>();
+    for (final Row row : preparedStatements.execute(SELECT_APPLICATION_IDENTIFIERS))
+      ret.add(row.getString(0));
+    return ret;
+  }
 
-    final Statement statement = QueryBuilder.select().all().from(TABLE_NAME);
+  /**
+   * @param cursor the next cursor of the previous page, or null for the first page.
+   */
+  EntityPage<String> getApplicationIdentifierPage(final int pageSize, final String cursor) {
+    return EntityPage.of(preparedStatements.executePage(SELECT_APPLICATION_IDENTIFIERS, pageSize, cursor),
+        row -> row.getString(0));
+  }
 
-    return entityMapper.map(tenantSession.execute(statement)).all();
+  /**
+   * Key timestamps sort in the order they were created in, so the greatest is the most recent.
+   */
+  public Optional<String> getLatestKeyTimestamp(final String applicationIdentifier) {
+    final Row row = preparedStatements.execute(SELECT_LATEST_KEY_TIMESTAMP, applicationIdentifier).one();
+    return Optional.ofNullable(row).map(x -> x.getString(0));
   }
 
   public void delete(final String applicationIdentifier) {
-    final Delete.Where deleteStatement = QueryBuilder.delete().from(TABLE_NAME)
-            .where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, applicationIdentifier));
-    cassandraSessionProvider.getTenantSession().execute(deleteStatement);
+    preparedStatements.execute(DELETE_FOR_APPLICATION, applicationIdentifier);
   }
 
   public boolean signaturesExistForApplication(final String applicationIdentifier) {
-    final Select.Where selectStatement = QueryBuilder.select().from(TABLE_NAME)
-            .where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, applicationIdentifier));
-    final ResultSet selected = cassandraSessionProvider.getTenantSession().execute(selectStatement);
-    final int count = selected.getAvailableWithoutFetching();
-    return count > 0;
+    return preparedStatements.execute(SELECT_ONE_FOR_APPLICATION, applicationIdentifier).one() != null;
   }
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.repository;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.schemabuilder.Create;
+import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds one row per application which has signatures, with the timestamp of its most recent key, so that
+ * applications can be listed without reading every signature of every application.  It is kept up to date by the
+ * commands which set signatures and delete applications.
+ *
+ * Tenants provisioned before this table existed have it filled from isis_application_signatures by
+ * {@link #migrateFromSignatures()}.  Until that has completed, applications are read from the signatures table.
+ */
+@Component
+public class Applications {
+  static final String TABLE_NAME = "isis_applications";
+  static final String APPLICATION_IDENTIFIER_COLUMN = "application_identifier";
+  static final String LATEST_KEY_TIMESTAMP_COLUMN = "latest_key_timestamp";
+
+  private static final String REGISTRY_MIGRATION = "applications_registry";
+
+  private static final RegularStatement INSERT = QueryBuilder.insertInto(TABLE_NAME)
+      .value(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker())
+      .value(LATEST_KEY_TIMESTAMP_COLUMN, QueryBuilder.bindMarker());
+  private static final RegularStatement DELETE = QueryBuilder.delete().from(TABLE_NAME)
+      .where(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT_ALL = QueryBuilder.select(APPLICATION_IDENTIFIER_COLUMN)
+      .from(TABLE_NAME);
+
+  private final CassandraSessionProvider cassandraSessionProvider;
+  private final ApplicationSignatures applicationSignatures;
+  private final Migrations migrations;
+  private final PreparedStatements preparedStatements;
+
+  @Autowired
+  public Applications(final CassandraSessionProvider cassandraSessionProvider,
+                      final ApplicationSignatures applicationSignatures,
+                      final Migrations migrations,
+                      final PreparedStatements preparedStatements) {
+    this.cassandraSessionProvider = cassandraSessionProvider;
+    this.applicationSignatures = applicationSignatures;
+    this.migrations = migrations;
+    this.preparedStatements = preparedStatements;
+  }
+
+  public void buildTable() {
+    buildRegistryTable();
+
+    migrations.buildTable();
+    //A new tenant has nothing to migrate.
+    migrations.complete(REGISTRY_MIGRATION);
+  }
+
+  private void buildRegistryTable() {
+    final Create create = SchemaBuilder.createTable(TABLE_NAME)
+        .ifNotExists()
+        .addPartitionKey(APPLICATION_IDENTIFIER_COLUMN, DataType.text())
+        .addColumn(LATEST_KEY_TIMESTAMP_COLUMN, DataType.text());
+
+    cassandraSessionProvider.getTenantSession().execute(create);
+  }
+
+  /**
+   * Creates the table and registers every application which has signatures.  Can safely be called more than once,
+   * and while signatures are being set.
+   */
+  public void migrateFromSignatures() {
+    buildRegistryTable();
+    migrations.buildTable();
+
+    final List<String> applicationIdentifiers;
+    try {
+      applicationIdentifiers = applicationSignatures.getApplicationIdentifiers();
+    }
+    catch (final InvalidQueryException e) {
+      //The tenant hasn't been provisioned yet.  buildTable completes the migration when it is.
+      return;
+    }
+    applicationIdentifiers.forEach(this::refresh);
+
+    migrations.complete(REGISTRY_MIGRATION);
+  }
+
+  /**
+   * Registers the application with the timestamp of its most recent key, or removes it if it has no signatures
+   * left.  The timestamp is read back from the signatures, rather than taken from the signature just set, so that an
+   * older key being set again doesn't replace a newer one.
+   */
+  public void refresh(final String applicationIdentifier) {
+    final String latestKeyTimestamp = applicationSignatures.getLatestKeyTimestamp(applicationIdentifier).orElse(null);
+    try {
+      if (latestKeyTimestamp == null)
+        preparedStatements.execute(DELETE, applicationIdentifier);
+      else
+        preparedStatements.execute(INSERT, applicationIdentifier, latestKeyTimestamp);
+    }
+    catch (final InvalidQueryException e) {
+      //The table is created, and filled from the signatures, when the tenant is migrated.
+    }
+  }
+
+  public void delete(final String applicationIdentifier) {
+    try {
+      preparedStatements.execute(DELETE, applicationIdentifier);
+    }
+    catch (final InvalidQueryException e) {
+      //The table is created, and filled from the signatures, when the tenant is migrated.
+    }
+  }
+
+  /**
+   * @param cursor the next cursor of the previous page, or null for the first page.
+   */
+  public EntityPage<String> getPage(final int pageSize, final String cursor) {
+    if (!migrations.isCompleted(REGISTRY_MIGRATION))
+      return applicationSignatures.getApplicationIdentifierPage(pageSize, cursor);
+
+    return EntityPage.of(preparedStatements.executePage(SELECT_ALL, pageSize, cursor), row -> row.getString(0));
+  }
+
+  public List<String> getAll() {
+    if (!migrations.isCompleted(REGISTRY_MIGRATION))
+      return applicationSignatures.getApplicationIdentifiers();
+
+    final List<String> ret = new ArrayList<>();
+    for (final Row row : preparedStatements.execute(SELECT_ALL))
+      ret.add(row.getString(0));
+    return ret;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.repository;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.schemabuilder.Create;
+import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * The token permissions of each role, already expanded from the permittable groups and minified, so that a login
+ * needs to read only one row to get them.  The permissions are kept in a versioned format of their own, see
+ * {@link TokenPermissionEncoding}.
+ *
+ * Rows are written whenever a role, or a permittable group a role refers to, is created or changed.  Each row is
+ * written with the time the role it was compiled from was read, so that a compilation of an older version of the
+ * role, which reaches cassandra late, doesn't replace the compilation of a newer one.  Tenants
+ * provisioned before this table existed don't have it until they are migrated, so reads treat a missing table as a
+ * missing row.
+ */
+@Component
+public class CompiledRoles {
+  static final String TABLE_NAME = "isis_compiled_roles";
+  static final String ROLE_IDENTIFIER_COLUMN = "role_identifier";
+  static final String TOKEN_PERMISSIONS_COLUMN = "token_permissions";
+
+  private static final RegularStatement INSERT = QueryBuilder.insertInto(TABLE_NAME)
+      .value(ROLE_IDENTIFIER_COLUMN, QueryBuilder.bindMarker())
+      .value(TOKEN_PERMISSIONS_COLUMN, QueryBuilder.bindMarker())
+      .using(QueryBuilder.timestamp(QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT = QueryBuilder.select(TOKEN_PERMISSIONS_COLUMN)
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(ROLE_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement DELETE = QueryBuilder.delete()
+      .from(TABLE_NAME)
+      .using(QueryBuilder.timestamp(QueryBuilder.bindMarker()))
+      .where(QueryBuilder.eq(ROLE_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+
+  private final CassandraSessionProvider cassandraSessionProvider;
+  private final PreparedStatements preparedStatements;
+  private final AtomicLong lastTimestamp = new AtomicLong();
+
+  @Autowired
+  public CompiledRoles(final CassandraSessionProvider cassandraSessionProvider,
+                       final PreparedStatements preparedStatements) {
+    this.cassandraSessionProvider = cassandraSessionProvider;
+    this.preparedStatements = preparedStatements;
+  }
+
+  public void buildTable() {
+    final Create create = SchemaBuilder.createTable(TABLE_NAME)
+        .ifNotExists()
+        .addPartitionKey(ROLE_IDENTIFIER_COLUMN, DataType.text())
+        .addColumn(TOKEN_PERMISSIONS_COLUMN, DataType.blob());
+
+    cassandraSessionProvider.getTenantSession().execute(create);
+  }
+
+  /**
+   * Does nothing if the tenant hasn't been migrated yet.  Reads then fall back to compiling the role.
+   *
+   * @param roleReadAt the {@link #timestamp} taken when the role was read, or saved.  Used as the write time of the
+   *                   row.
+   */
+  public void put(final String roleIdentifier, final Set<TokenPermission> tokenPermissions, final long roleReadAt) {
+    executeIfTableExists(INSERT, roleIdentifier, TokenPermissionEncoding.encode(tokenPermissions), roleReadAt);
+  }
+
+  /**
+   * @return the compiled token permissions of the role as an unmodifiable set, or Optional.empty if the role hasn't
+   * been compiled, or was stored in a format this version doesn't know.
+   */
+  public Optional<Set<TokenPermission>> get(final String roleIdentifier) {
+    final Row row;
+    try {
+      row = preparedStatements.execute(SELECT, roleIdentifier).one();
+    }
+    catch (final InvalidQueryException e) {
+      return Optional.empty();
+    }
+    if (row == null)
+      return Optional.empty();
+
+    final ByteBuffer encoded = row.getBytes(TOKEN_PERMISSIONS_COLUMN);
+    if (encoded == null)
+      return Optional.empty();
+    return TokenPermissionEncoding.decode(encoded)
+        .map(x -> Collections.unmodifiableSet(new HashSet<>(x)));
+  }
+
+  public void delete(final String roleIdentifier) {
+    executeIfTableExists(DELETE, timestamp(), roleIdentifier);
+  }
+
+  /**
+   * @return the current time in microseconds since the epoch, always later than the previous one, so that a role
+   * deleted and created again right away gets a compilation written after the deletion.
+   */
+  public long timestamp() {
+    final long now = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    return lastTimestamp.updateAndGet(last -> Math.max(last + 1, now));
+  }
+
+  private void executeIfTableExists(final RegularStatement statement, final Object... values) {
+    try {
+      preparedStatements.execute(statement, values);
+    }
+    catch (final InvalidQueryException e) {
+      //The table is created, and filled, when the tenant is migrated.
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.repository;
+
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of entities read with {@link PreparedStatements#executePage}, and the cursor for the next page.  The
+ * cursor is cassandra's paging state, as a string.
+ */
+public final class EntityPage<T> {
+  private final List<T> elements;
+  private final String nextCursor;
+
+  private EntityPage(final List<T> elements, final String nextCursor) {
+    this.elements = elements;
+    this.nextCursor = nextCursor;
+  }
+
+  /**
+   * Takes only the rows of the page which has been fetched, so that the next page isn't fetched too.
+   */
+  static <T> EntityPage<T> of(final ResultSet result, final Function<Row, T> mapper) {
+    final int count = result.getAvailableWithoutFetching();
+    final List<T> elements = new ArrayList<>(count);
+    for (int i = 0; i < count; i++)
+      elements.add(mapper.apply(result.one()));
+
+    final PagingState pagingState = result.getExecutionInfo().getPagingState();
+    return new EntityPage<>(elements, (pagingState == null) ? null : pagingState.toString());
+  }
+
+  public List<T> getElements() {
+    return elements;
+  }
+
+  /**
+   * @return the cursor for the next page, or null if there are no more rows.
+   */
+  public String getNextCursor() {
+    return nextCursor;
+  }
+}
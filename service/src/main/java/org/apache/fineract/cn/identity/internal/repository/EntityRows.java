@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.repository;
+
+import com.datastax.driver.core.Row;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decodes the rows of users, roles and permittable groups, which are read on every login and token refresh, directly
+ * into their entities.  The object mapper looks up a codec and sets a property by reflection for each column of
+ * each row, and decodes lists of user defined types into UDTValues first.  Here the columns are read by position,
+ * and the frozen lists of user defined types are decoded straight from their serialized form.
+ *
+ * Rows must come from statements selecting the columns listed here, in that order.  The fields of the user defined
+ * types are read in the order {@link Permissions#buildType} and {@link PermittableGroups#buildTable} create them in.
+ * A value written before a field was added to its type has fewer fields; the missing ones are left null.  Writes
+ * still go through the mapper.
+ */
+final class EntityRows {
+  static final String[] USER_COLUMNS = {
+      Users.IDENTIFIER_COLUMN,
+      Users.ROLE_COLUMN,
+      Users.PASSWORD_COLUMN,
+      Users.SALT_COLUMN,
+      Users.ITERATION_COUNT_COLUMN,
+      Users.PASSWORD_EXPIRES_ON_COLUMN};
+  static final String[] ROLE_COLUMNS = {Roles.IDENTIFIER_COLUMN, Roles.PERMISSIONS_COLUMN};
+  static final String[] PERMITTABLE_GROUP_COLUMNS = {
+      PermittableGroups.IDENTIFIER_COLUMN,
+      PermittableGroups.PERMITTABLES_COLUMN};
+
+  private static final AllowedOperationType[] OPERATION_TYPES = AllowedOperationType.values();
+  private static final byte[][] OPERATION_TYPE_NAMES = new byte[OPERATION_TYPES.length][];
+  static {
+    for (int i = 0; i < OPERATION_TYPES.length; i++)
+      OPERATION_TYPE_NAMES[i] = OPERATION_TYPES[i].name().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private EntityRows() {
+  }
+
+  static UserEntity toUser(final Row row) {
+    final UserEntity ret = new UserEntity();
+    ret.setIdentifier(row.getString(0));
+    ret.setRole(row.getString(1));
+    ret.setPassword(row.getBytes(2));
+    ret.setSalt(row.getBytes(3));
+    ret.setIterationCount(row.getInt(4));
+    ret.setPasswordExpiresOn(row.getDate(5));
+    return ret;
+  }
+
+  static RoleEntity toRole(final Row row) {
+    return new RoleEntity(row.getString(0), toPermissions(row.getBytesUnsafe(1)));
+  }
+
+  static PermittableGroupEntity toPermittableGroup(final Row row) {
+    final PermittableGroupEntity ret = new PermittableGroupEntity();
+    ret.setIdentifier(row.getString(0));
+    ret.setPermittables(toPermittables(row.getBytesUnsafe(1)));
+    return ret;
+  }
+
+  /**
+   * @param serialized a list of isis_permission values as sent by cassandra, or null, which is decoded as an empty
+   *                   list, like the driver does.
+   */
+  static List<PermissionType> toPermissions(final ByteBuffer serialized) {
+    if (serialized == null || !serialized.hasRemaining())
+      return new ArrayList<>();
+
+    final ByteBuffer buffer = serialized.duplicate();
+    final int count = buffer.getInt();
+    final List<PermissionType> ret = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      final int end = valueEnd(buffer);
+      if (end < 0) {
+        ret.add(null);
+        continue;
+      }
+      final PermissionType permission = new PermissionType();
+      if (buffer.position() < end)
+        permission.setPermittableGroupIdentifier(readString(buffer));
+      permission.setAllowedOperations((buffer.position() < end) ? readAllowedOperations(buffer) : EnumSet.noneOf(AllowedOperationType.class));
+      buffer.position(end);
+      ret.add(permission);
+    }
+    return ret;
+  }
+
+  /**
+   * @param serialized a list of isis_permittable_group values as sent by cassandra, or null, which is decoded as an
+   *                   empty list, like the driver does.
+   */
+  static List<PermittableType> toPermittables(final ByteBuffer serialized) {
+    if (serialized == null || !serialized.hasRemaining())
+      return new ArrayList<>();
+
+    final ByteBuffer buffer = serialized.duplicate();
+    final int count = buffer.getInt();
+    final List<PermittableType> ret = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      final int end = valueEnd(buffer);
+      if (end < 0) {
+        ret.add(null);
+        continue;
+      }
+      final PermittableType permittable = new PermittableType();
+      if (buffer.position() < end)
+        permittable.setPath(readString(buffer));
+      if (buffer.position() < end)
+        permittable.setMethod(readString(buffer));
+      if (buffer.position() < end)
+        permittable.setSourceGroupId(readString(buffer));
+      buffer.position(end);
+      ret.add(permittable);
+    }
+    return ret;
+  }
+
+  /**
+   * Reads the length of the next value.
+   *
+   * @return the position after the value, or -1 if it is null.
+   */
+  private static int valueEnd(final ByteBuffer buffer) {
+    final int length = buffer.getInt();
+    return (length < 0) ? -1 : buffer.position() + length;
+  }
+
+  private static String readString(final ByteBuffer buffer) {
+    final int length = buffer.getInt();
+    if (length < 0)
+      return null;
+
+    final String ret;
+    if (buffer.hasArray()) {
+      ret = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+    }
+    else {
+      final byte[] bytes = new byte[length];
+      buffer.duplicate().get(bytes);
+      ret = new String(bytes, StandardCharsets.UTF_8);
+    }
+    buffer.position(buffer.position() + length);
+    return ret;
+  }
+
+  /**
+   * Reads a set of operation names, without creating strings for them.
+   */
+  private static Set<AllowedOperationType> readAllowedOperations(final ByteBuffer buffer) {
+    final Set<AllowedOperationType> ret = EnumSet.noneOf(AllowedOperationType.class);
+    final int end = valueEnd(buffer);
+    if (end < 0)
+      return ret;
+
+    final int count = buffer.getInt();
+    for (int i = 0; i < count; i++) {
+      final int length = buffer.getInt();
+      ret.add(operationTypeAt(buffer, length));
+      buffer.position(buffer.position() + length);
+    }
+    buffer.position(end);
+    return ret;
+  }
+
+  private static AllowedOperationType operationTypeAt(final ByteBuffer buffer, final int length) {
+    final int start = buffer.position();
+    for (int i = 0; i < OPERATION_TYPE_NAMES.length; i++) {
+      final byte[] name = OPERATION_TYPE_NAMES[i];
+      if (name.length != length)
+        continue;
+      int j = 0;
+      while (j < length && buffer.get(start + j) == name[j])
+        j++;
+      if (j == length)
+        return OPERATION_TYPES[i];
+    }
+
+    final byte[] bytes = new byte[Math.max(length, 0)];
+    buffer.duplicate().get(bytes);
+    throw new IllegalArgumentException("Unknown allowed operation " + new String(bytes, StandardCharsets.UTF_8));
+  }
+}
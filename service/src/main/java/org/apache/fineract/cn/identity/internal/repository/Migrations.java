@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.repository;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.schemabuilder.Create;
+import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records which data migrations have been completed for a tenant, so that repositories can switch to the migrated
+ * tables only once they have been filled.  A migration, once completed, stays completed, so that is remembered in
+ * memory.  That a migration hasn't been completed is remembered too, until it is completed by this instance, or for
+ * a few seconds, after which another instance may have completed it.
+ */
+@Component
+public class Migrations {
+  static final String TABLE_NAME = "isis_migrations";
+  static final String IDENTIFIER_COLUMN = "identifier";
+  static final String COMPLETED_COLUMN = "completed";
+
+  private static final RegularStatement SELECT = QueryBuilder.select(COMPLETED_COLUMN)
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement INSERT = QueryBuilder.insertInto(TABLE_NAME)
+      .value(IDENTIFIER_COLUMN, QueryBuilder.bindMarker())
+      .value(COMPLETED_COLUMN, QueryBuilder.bindMarker());
+  private static final long NOT_COMPLETED_RETENTION_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private final CassandraSessionProvider cassandraSessionProvider;
+  private final PreparedStatements preparedStatements;
+  private final Set<String> completedByTenant = ConcurrentHashMap.newKeySet();
+  private final ConcurrentMap<String, Long> notCompletedReadAt = new ConcurrentHashMap<>();
+
+  @Autowired
+  public Migrations(final CassandraSessionProvider cassandraSessionProvider,
+                    final PreparedStatements preparedStatements) {
+    this.cassandraSessionProvider = cassandraSessionProvider;
+    this.preparedStatements = preparedStatements;
+  }
+
+  public void buildTable() {
+    final Create create = SchemaBuilder.createTable(TABLE_NAME)
+        .ifNotExists()
+        .addPartitionKey(IDENTIFIER_COLUMN, DataType.text())
+        .addColumn(COMPLETED_COLUMN, DataType.cboolean());
+
+    cassandraSessionProvider.getTenantSession().execute(create);
+  }
+
+  public boolean isCompleted(final String migrationIdentifier) {
+    final String key = TenantContextHolder.checkedGetIdentifier() + "/" + migrationIdentifier;
+    if (completedByTenant.contains(key))
+      return true;
+
+    final long now = System.nanoTime();
+    final Long readAt = notCompletedReadAt.get(key);
+    if (readAt != null && now - readAt < NOT_COMPLETED_RETENTION_NANOS)
+      return false;
+
+    final Row row;
+    try {
+      row = preparedStatements.execute(SELECT, migrationIdentifier).one();
+    }
+    catch (final InvalidQueryException e) {
+      notCompletedReadAt.put(key, now);
+      return false;
+    }
+
+    final boolean ret = (row != null) && row.getBool(COMPLETED_COLUMN);
+    if (ret) {
+      completedByTenant.add(key);
+      notCompletedReadAt.remove(key);
+    }
+    else
+      notCompletedReadAt.put(key, now);
+    return ret;
+  }
+
+  public void complete(final String migrationIdentifier) {
+    preparedStatements.execute(INSERT, migrationIdentifier, true);
+    final String key = TenantContextHolder.checkedGetIdentifier() + "/" + migrationIdentifier;
+    completedByTenant.add(key);
+    notCompletedReadAt.remove(key);
+  }
+}
@@ -19,18 +19,16 @@
 package org.apache.fineract.cn.identity.internal.repository;
 
 import com.datastax.driver.core.DataType;
-import com.datastax.driver.core.Session;
-import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.schemabuilder.Create;
 import com.datastax.driver.core.schemabuilder.CreateType;
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
-import com.datastax.driver.mapping.Mapper;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
-import org.apache.fineract.cn.cassandra.core.TenantAwareCassandraMapperProvider;
 import org.apache.fineract.cn.cassandra.core.TenantAwareEntityTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -45,6 +43,11 @@ public class PermittableGroups {
   static final String IDENTIFIER_COLUMN = "identifier";
   static final String PERMITTABLES_COLUMN = "permittables";
 
+  private static final RegularStatement SELECT_ALL = QueryBuilder.select(EntityRows.PERMITTABLE_GROUP_COLUMNS).from(TABLE_NAME);
+  private static final RegularStatement SELECT_ONE = QueryBuilder.select(EntityRows.PERMITTABLE_GROUP_COLUMNS)
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+
   static final String TYPE_NAME = "isis_permittable_group";
   static final String PATH_FIELD = "path";
   static final String METHOD_FIELD = "method";
@@ -52,16 +55,16 @@ public class PermittableGroups {
 
   private final CassandraSessionProvider cassandraSessionProvider;
   private final TenantAwareEntityTemplate tenantAwareEntityTemplate;
-  private final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider;
+  private final PreparedStatements preparedStatements;
 
   @Autowired
   PermittableGroups(
           final CassandraSessionProvider cassandraSessionProvider,
           final TenantAwareEntityTemplate tenantAwareEntityTemplate,
-          final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider) {
+          final PreparedStatements preparedStatements) {
     this.cassandraSessionProvider = cassandraSessionProvider;
     this.tenantAwareEntityTemplate = tenantAwareEntityTemplate;
-    this.tenantAwareCassandraMapperProvider = tenantAwareCassandraMapperProvider;
+    this.preparedStatements = preparedStatements;
   }
 
   public void buildTable() {
@@ -88,8 +91,8 @@ public class PermittableGroups {
 
   public Optional<PermittableGroupEntity> get(final String identifier)
   {
-    final PermittableGroupEntity instance =
-            tenantAwareCassandraMapperProvider.getMapper(PermittableGroupEntity.class).get(identifier);
+    final Row row = preparedStatements.execute(SELECT_ONE, identifier).one();
+    final PermittableGroupEntity instance = (row == null) ? null : EntityRows.toPermittableGroup(row);
 
     if (instance != null) {
       Assert.notNull(instance.getIdentifier());
@@ -99,11 +102,9 @@ public class PermittableGroups {
   }
 
   public List<PermittableGroupEntity> getAll() {
-    final Session tenantSession = cassandraSessionProvider.getTenantSession();
-    final Mapper<PermittableGroupEntity> entityMapper = tenantAwareCassandraMapperProvider.getMapper(PermittableGroupEntity.class);
-
-    final Statement statement = QueryBuilder.select().all().from(TABLE_NAME);
-
-    return new ArrayList<>(entityMapper.map(tenantSession.execute(statement)).all());
+    final List<PermittableGroupEntity> ret = new ArrayList<>();
+    for (final Row row : preparedStatements.execute(SELECT_ALL))
+      ret.add(EntityRows.toPermittableGroup(row));
+    return ret;
   }
 }
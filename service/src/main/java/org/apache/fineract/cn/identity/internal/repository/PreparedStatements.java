@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.repository;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Prepares each statement of the repositories once per tenant session, and binds it from then on.  The statements
+ * are built once, with bind markers for the values, and kept in constants, so they are found by identity.
+ *
+ * Statements which fail to prepare, for example because their table doesn't exist yet, are not kept.  Statements
+ * read and written through the object mapper are not handled here, since the mapper prepares its own.
+ */
+@Component
+@ManagedResource(objectName = "org.apache.fineract.cn.identity:type=Cassandra,name=PreparedStatements")
+public class PreparedStatements {
+  private final CassandraSessionProvider cassandraSessionProvider;
+  private final ConcurrentMap<Session, ConcurrentMap<RegularStatement, PreparedStatement>> statementsBySession
+      = new ConcurrentHashMap<>();
+  private final LongAdder prepareCount = new LongAdder();
+
+  @Autowired
+  public PreparedStatements(final CassandraSessionProvider cassandraSessionProvider) {
+    this.cassandraSessionProvider = cassandraSessionProvider;
+  }
+
+  /**
+   * @param values the values of the bind markers, in order.
+   */
+  public BoundStatement bind(final RegularStatement statement, final Object... values) {
+    return prepare(cassandraSessionProvider.getTenantSession(), statement).bind(values);
+  }
+
+  /**
+   * Binds the statement and executes it in the session of the current tenant.
+   */
+  public ResultSet execute(final RegularStatement statement, final Object... values) {
+    final Session session = cassandraSessionProvider.getTenantSession();
+    return session.execute(prepare(session, statement).bind(values));
+  }
+
+  /**
+   * Executes the statement for one page of at most pageSize rows.  Only that page is fetched, as long as the rows are
+   * read with {@link EntityPage#of}.
+   *
+   * @param cursor the next cursor of a previous page of the same statement with the same values, or null for the
+   *               first page.
+   * @throws com.datastax.driver.core.exceptions.PagingStateException if the cursor is malformed, or belongs to a
+   * different statement.
+   */
+  public ResultSet executePage(final RegularStatement statement,
+                               final int pageSize,
+                               final String cursor,
+                               final Object... values) {
+    final Session session = cassandraSessionProvider.getTenantSession();
+    final BoundStatement boundStatement = prepare(session, statement).bind(values);
+    boundStatement.setFetchSize(pageSize);
+    if (cursor != null)
+      boundStatement.setPagingState(PagingState.fromString(cursor));
+    return session.execute(boundStatement);
+  }
+
+  /**
+   * Executes the statement and passes each row to the action, fetching fetchSize rows at a time.  The next page is
+   * requested while the second half of the current one is being processed, so that it is usually there when it is
+   * needed.  At most two pages are held in memory.
+   */
+  public void forEachRow(final RegularStatement statement,
+                         final int fetchSize,
+                         final Consumer<Row> action,
+                         final Object... values) {
+    final Session session = cassandraSessionProvider.getTenantSession();
+    final BoundStatement boundStatement = prepare(session, statement).bind(values);
+    boundStatement.setFetchSize(fetchSize);
+    final ResultSet result = session.execute(boundStatement);
+    final int prefetchThreshold = Math.max(fetchSize / 2, 1);
+    for (final Row row : result) {
+      if (result.getAvailableWithoutFetching() == prefetchThreshold && !result.isFullyFetched())
+        result.fetchMoreResults();
+      action.accept(row);
+    }
+  }
+
+  /**
+   * Same as {@link #execute}, but doesn't wait for the result.  The statement may still have to be prepared first,
+   * which does wait.
+   */
+  public ResultSetFuture executeAsync(final RegularStatement statement, final Object... values) {
+    final Session session = cassandraSessionProvider.getTenantSession();
+    return session.executeAsync(prepare(session, statement).bind(values));
+  }
+
+  @ManagedAttribute(description = "Number of statements prepared, over all tenants.")
+  public long getPrepareCount() {
+    return prepareCount.sum();
+  }
+
+  @ManagedAttribute(description = "Number of prepared statements kept, over all tenants.")
+  public int getPreparedStatementCount() {
+    return statementsBySession.values().stream().mapToInt(ConcurrentMap::size).sum();
+  }
+
+  private PreparedStatement prepare(final Session session, final RegularStatement statement) {
+    final ConcurrentMap<RegularStatement, PreparedStatement> statements
+        = statementsBySession.computeIfAbsent(session, x -> new ConcurrentHashMap<>());
+    final PreparedStatement existing = statements.get(statement);
+    if (existing != null)
+      return existing;
+
+    //Prepared outside of the map, so that other statements aren't held up by the round trip.  Preparing the same
+    //statement twice is harmless.
+    final PreparedStatement prepared = session.prepare(statement);
+    prepareCount.increment();
+    final PreparedStatement previous = statements.putIfAbsent(statement, prepared);
+    return (previous != null) ? previous : prepared;
+  }
+}
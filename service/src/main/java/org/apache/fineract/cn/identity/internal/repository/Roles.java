@@ -19,14 +19,12 @@
 package org.apache.fineract.cn.identity.internal.repository;
 
 import com.datastax.driver.core.DataType;
-import com.datastax.driver.core.Session;
-import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.schemabuilder.Create;
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
-import com.datastax.driver.mapping.Mapper;
 import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
-import org.apache.fineract.cn.cassandra.core.TenantAwareCassandraMapperProvider;
 import org.apache.fineract.cn.cassandra.core.TenantAwareEntityTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -35,6 +33,7 @@ import org.springframework.util.Assert;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * @author Myrle Krantz
@@ -45,18 +44,25 @@ public class Roles {
   static final String IDENTIFIER_COLUMN = "identifier";
   static final String PERMISSIONS_COLUMN = "permissions";
 
+  private static final int STREAM_FETCH_SIZE = 500;
+
+  private static final RegularStatement SELECT_ALL = QueryBuilder.select(EntityRows.ROLE_COLUMNS).from(TABLE_NAME);
+  private static final RegularStatement SELECT_ONE = QueryBuilder.select(EntityRows.ROLE_COLUMNS)
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+
   private final CassandraSessionProvider cassandraSessionProvider;
   private final TenantAwareEntityTemplate tenantAwareEntityTemplate;
-  private final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider;
+  private final PreparedStatements preparedStatements;
 
   @Autowired
   Roles(
           final CassandraSessionProvider cassandraSessionProvider,
           final TenantAwareEntityTemplate tenantAwareEntityTemplate,
-          final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider) {
+          final PreparedStatements preparedStatements) {
     this.cassandraSessionProvider = cassandraSessionProvider;
     this.tenantAwareEntityTemplate = tenantAwareEntityTemplate;
-    this.tenantAwareCassandraMapperProvider = tenantAwareCassandraMapperProvider;
+    this.preparedStatements = preparedStatements;
   }
 
   public void buildTable() {
@@ -79,8 +85,8 @@ public class Roles {
 
   public Optional<RoleEntity> get(final String identifier)
   {
-    final RoleEntity instance =
-            tenantAwareCassandraMapperProvider.getMapper(RoleEntity.class).get(identifier);
+    final Row row = preparedStatements.execute(SELECT_ONE, identifier).one();
+    final RoleEntity instance = (row == null) ? null : EntityRows.toRole(row);
 
     if (instance != null) {
       Assert.notNull(instance.getIdentifier());
@@ -94,13 +100,25 @@ public class Roles {
     tenantAwareEntityTemplate.delete(instance);
   }
 
-  public List<RoleEntity> getAll()
-  {
-    final Session tenantSession = cassandraSessionProvider.getTenantSession();
-    final Mapper<RoleEntity> entityMapper = tenantAwareCassandraMapperProvider.getMapper(RoleEntity.class);
+  /**
+   * @param cursor the next cursor of the previous page, or null for the first page.
+   */
+  public EntityPage<RoleEntity> getPage(final int pageSize, final String cursor) {
+    return EntityPage.of(preparedStatements.executePage(SELECT_ALL, pageSize, cursor), EntityRows::toRole);
+  }
 
-    final Statement statement = QueryBuilder.select().all().from(TABLE_NAME);
+  /**
+   * Passes every role to the action, while reading them a page at a time, so that they don't all have to be in memory.
+   */
+  public void forEach(final Consumer<RoleEntity> action) {
+    preparedStatements.forEachRow(SELECT_ALL, STREAM_FETCH_SIZE, row -> action.accept(EntityRows.toRole(row)));
+  }
 
-    return new ArrayList<>(entityMapper.map(tenantSession.execute(statement)).all());
+  public List<RoleEntity> getAll()
+  {
+    final List<RoleEntity> ret = new ArrayList<>();
+    for (final Row row : preparedStatements.execute(SELECT_ALL))
+      ret.add(EntityRows.toRole(row));
+    return ret;
   }
 }
@@ -20,22 +20,21 @@ package org.apache.fineract.cn.identity.internal.repository;
 
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.exceptions.InvalidQueryException;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
-import com.datastax.driver.core.querybuilder.Select;
-import com.datastax.driver.core.querybuilder.Update;
 import com.datastax.driver.core.schemabuilder.Create;
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
 import com.datastax.driver.core.schemabuilder.SchemaStatement;
-import com.datastax.driver.mapping.Mapper;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
-import org.apache.fineract.cn.cassandra.core.TenantAwareCassandraMapperProvider;
+import org.apache.fineract.cn.identity.internal.util.IdentityConstants;
 import org.apache.fineract.cn.lang.security.RsaKeyPairFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -48,6 +47,11 @@ import org.springframework.stereotype.Component;
  * All calls to cassandra which could conceivably be performed before provisioning is complete are surrounded by
  * a try-catch block for an InvalidQueryException.  If provisioning is not completed, the table is treated as empty.
  *
+ * The timestamps of the valid keys are additionally kept in a single partition ordered by descending timestamp, so
+ * that the current key can be found without querying the secondary index on the valid column.  Tenants provisioned
+ * before that table existed fall back to the index until {@link #migrateValidKeyTimestamps()} has completed for them.
+ * The table is written as soon as it exists, but only read once it has been filled.
+ *
  * @author Myrle Krantz
  */
 @Component
@@ -61,15 +65,57 @@ public class Signatures {
   static final String PUBLIC_KEY_MOD_COLUMN = "public_key_mod";
   static final String PUBLIC_KEY_EXP_COLUMN = "public_key_exp";
 
+  static final String VALID_KEYS_TABLE_NAME = "isis_signatures_valid_keys";
+  static final String VERSION_COLUMN = "version";
+  private static final String VALID_KEYS_MIGRATION = "signatures_valid_keys";
+
+  private static final RegularStatement INSERT = QueryBuilder.insertInto(TABLE_NAME)
+      .value(KEY_TIMESTAMP_COLUMN, QueryBuilder.bindMarker())
+      .value(VALID_COLUMN, QueryBuilder.bindMarker())
+      .value(PRIVATE_KEY_MOD_COLUMN, QueryBuilder.bindMarker())
+      .value(PRIVATE_KEY_EXP_COLUMN, QueryBuilder.bindMarker())
+      .value(PUBLIC_KEY_MOD_COLUMN, QueryBuilder.bindMarker())
+      .value(PUBLIC_KEY_EXP_COLUMN, QueryBuilder.bindMarker());
+  private static final RegularStatement INVALIDATE = QueryBuilder.update(TABLE_NAME)
+      .with(QueryBuilder.set(VALID_COLUMN, QueryBuilder.bindMarker()))
+      .where(QueryBuilder.eq(KEY_TIMESTAMP_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT_SIGNATURE
+      = QueryBuilder.select(KEY_TIMESTAMP_COLUMN, VALID_COLUMN, PUBLIC_KEY_MOD_COLUMN, PUBLIC_KEY_EXP_COLUMN)
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(KEY_TIMESTAMP_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT_PRIVATE_SIGNATURE
+      = QueryBuilder.select(KEY_TIMESTAMP_COLUMN, VALID_COLUMN, PRIVATE_KEY_MOD_COLUMN, PRIVATE_KEY_EXP_COLUMN)
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(KEY_TIMESTAMP_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT_VALID_FROM_INDEX = QueryBuilder.select(KEY_TIMESTAMP_COLUMN)
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(VALID_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement INSERT_VALID_KEY_TIMESTAMP = QueryBuilder.insertInto(VALID_KEYS_TABLE_NAME)
+      .value(VERSION_COLUMN, QueryBuilder.bindMarker())
+      .value(KEY_TIMESTAMP_COLUMN, QueryBuilder.bindMarker());
+  private static final RegularStatement DELETE_VALID_KEY_TIMESTAMP = QueryBuilder.delete().from(VALID_KEYS_TABLE_NAME)
+      .where(QueryBuilder.eq(VERSION_COLUMN, QueryBuilder.bindMarker()))
+      .and(QueryBuilder.eq(KEY_TIMESTAMP_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT_VALID_KEY_TIMESTAMPS = QueryBuilder.select(KEY_TIMESTAMP_COLUMN)
+      .from(VALID_KEYS_TABLE_NAME)
+      .where(QueryBuilder.eq(VERSION_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT_MOST_RECENT_VALID_KEY_TIMESTAMP = QueryBuilder.select(KEY_TIMESTAMP_COLUMN)
+      .from(VALID_KEYS_TABLE_NAME)
+      .where(QueryBuilder.eq(VERSION_COLUMN, QueryBuilder.bindMarker()))
+      .limit(1);
+
   private final CassandraSessionProvider cassandraSessionProvider;
-  private final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider;
+  private final Migrations migrations;
+  private final PreparedStatements preparedStatements;
 
   @Autowired
   public Signatures(
           final CassandraSessionProvider cassandraSessionProvider,
-          final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider) {
+          final Migrations migrations,
+          final PreparedStatements preparedStatements) {
     this.cassandraSessionProvider = cassandraSessionProvider;
-    this.tenantAwareCassandraMapperProvider = tenantAwareCassandraMapperProvider;
+    this.migrations = migrations;
+    this.preparedStatements = preparedStatements;
   }
 
   public synchronized void buildTable() {
@@ -90,20 +136,54 @@ public class Signatures {
         .andColumn(VALID_COLUMN);
 
     cassandraSessionProvider.getTenantSession().execute(createValidIndex);
+
+    buildValidKeyTimestampsTable();
+    migrations.buildTable();
+    //A new tenant has no keys to migrate.
+    migrations.complete(VALID_KEYS_MIGRATION);
+  }
+
+  private void buildValidKeyTimestampsTable() {
+    final SchemaStatement create = SchemaBuilder.createTable(VALID_KEYS_TABLE_NAME)
+        .ifNotExists()
+        .addPartitionKey(VERSION_COLUMN, DataType.cint())
+        .addClusteringColumn(KEY_TIMESTAMP_COLUMN, DataType.text())
+        .withOptions()
+        .clusteringOrder(KEY_TIMESTAMP_COLUMN, SchemaBuilder.Direction.DESC);
+
+    cassandraSessionProvider.getTenantSession().execute(create);
+  }
+
+  /**
+   * Creates the table of valid key timestamps for tenants which were provisioned before it existed, and fills it
+   * from the valid entries of the signatures table.  Can safely be called more than once.
+   */
+  public synchronized void migrateValidKeyTimestamps() {
+    buildValidKeyTimestampsTable();
+    migrations.buildTable();
+
+    final ResultSet result;
+    try {
+      result = preparedStatements.execute(SELECT_VALID_FROM_INDEX, true);
+    }
+    catch (final InvalidQueryException e) {
+      //The tenant hasn't been provisioned yet.  buildTable completes the migration when it is.
+      return;
+    }
+    for (final Row row : result)
+      addValidKeyTimestamp(row.getString(KEY_TIMESTAMP_COLUMN));
+
+    migrations.complete(VALID_KEYS_MIGRATION);
+  }
+
+  private void addValidKeyTimestamp(final String keyTimestamp) {
+    preparedStatements.execute(INSERT_VALID_KEY_TIMESTAMP, IdentityConstants.CURRENT_VERSION, keyTimestamp);
   }
 
   public synchronized SignatureEntity add(final RsaKeyPairFactory.KeyPairHolder keys)
   {
     //There will only be one entry in this table.
-    final BoundStatement tenantCreationStatement =
-            cassandraSessionProvider.getTenantSession().prepare("INSERT INTO " + TABLE_NAME + " ("
-                    + KEY_TIMESTAMP_COLUMN + ", "
-                    + VALID_COLUMN + ", "
-                    + PRIVATE_KEY_MOD_COLUMN + ", "
-                    + PRIVATE_KEY_EXP_COLUMN + ", "
-                    + PUBLIC_KEY_MOD_COLUMN + ", "
-                    + PUBLIC_KEY_EXP_COLUMN + ")"
-                    + "VALUES (?, ?, ?, ?, ?, ?)").bind();
+    final BoundStatement tenantCreationStatement = preparedStatements.bind(INSERT);
 
     tenantCreationStatement.setString(KEY_TIMESTAMP_COLUMN, keys.getTimestamp());
 
@@ -114,6 +194,13 @@ public class Signatures {
     tenantCreationStatement.setVarint(PUBLIC_KEY_EXP_COLUMN, keys.getPublicKeyExp());
 
     cassandraSessionProvider.getTenantSession().execute(tenantCreationStatement);
+    try {
+      addValidKeyTimestamp(keys.getTimestamp());
+    }
+    catch (final InvalidQueryException e) {
+      //The tenant has not been migrated yet, so there is no valid key table.  Until it has been, the most recent key
+      //is read from the signatures table, and migrating copies the new key's timestamp too.
+    }
 
     final SignatureEntity ret = new SignatureEntity();
     ret.setKeyTimestamp(keys.getTimestamp());
@@ -126,11 +213,16 @@ public class Signatures {
 
   public Optional<SignatureEntity> getSignature(final String keyTimestamp) {
     try {
-      final Mapper<SignatureEntity> signatureEntityMapper
-          = tenantAwareCassandraMapperProvider.getMapper(SignatureEntity.class);
+      final Row row = preparedStatements.execute(SELECT_SIGNATURE, keyTimestamp).one();
+      if (row == null || !row.getBool(VALID_COLUMN))
+        return Optional.empty();
 
-      final Optional<SignatureEntity> ret = Optional.ofNullable(signatureEntityMapper.get(keyTimestamp));
-      return ret.filter(SignatureEntity::getValid);
+      final SignatureEntity ret = new SignatureEntity();
+      ret.setKeyTimestamp(row.getString(KEY_TIMESTAMP_COLUMN));
+      ret.setValid(true);
+      ret.setPublicKeyMod(row.getVarint(PUBLIC_KEY_MOD_COLUMN));
+      ret.setPublicKeyExp(row.getVarint(PUBLIC_KEY_EXP_COLUMN));
+      return Optional.of(ret);
     }
     catch (final InvalidQueryException e) {
       return Optional.empty();
@@ -142,18 +234,38 @@ public class Signatures {
    */
   public Optional<PrivateSignatureEntity> getPrivateSignature()
   {
-    final Optional<String> maximumKeyTimestamp = streamValidKeyTimestamps().max(String::compareTo);
+    return getMostRecentValidKeyTimestamp().flatMap(this::getPrivateSignatureEntity);
+  }
+
+  /**
+   * @return the timestamp of the most current valid key pair.  If there are no valid key pairs, returns Optional.empty.
+   */
+  public Optional<String> getMostRecentValidKeyTimestamp() {
+    if (!migrations.isCompleted(VALID_KEYS_MIGRATION))
+      return streamValidKeyTimestampsFromIndex().max(String::compareTo);
 
-    return maximumKeyTimestamp.flatMap(this::getPrivateSignatureEntity);
+    try {
+      final Row row = preparedStatements.execute(
+          SELECT_MOST_RECENT_VALID_KEY_TIMESTAMP, IdentityConstants.CURRENT_VERSION).one();
+      return Optional.ofNullable(row).map(x -> x.getString(KEY_TIMESTAMP_COLUMN));
+    }
+    catch (final InvalidQueryException e) {
+      return streamValidKeyTimestampsFromIndex().max(String::compareTo);
+    }
   }
 
   private Optional<PrivateSignatureEntity> getPrivateSignatureEntity(final String keyTimestamp) {
     try {
-      final Mapper<PrivateSignatureEntity> privateSignatureEntityMapper
-          = tenantAwareCassandraMapperProvider.getMapper(PrivateSignatureEntity.class);
+      final Row row = preparedStatements.execute(SELECT_PRIVATE_SIGNATURE, keyTimestamp).one();
+      if (row == null || !row.getBool(VALID_COLUMN))
+        return Optional.empty();
 
-      final Optional<PrivateSignatureEntity> ret = Optional.ofNullable(privateSignatureEntityMapper.get(keyTimestamp));
-      return ret.filter(PrivateSignatureEntity::getValid);
+      final PrivateSignatureEntity ret = new PrivateSignatureEntity();
+      ret.setKeyTimestamp(row.getString(KEY_TIMESTAMP_COLUMN));
+      ret.setValid(true);
+      ret.setPrivateKeyMod(row.getVarint(PRIVATE_KEY_MOD_COLUMN));
+      ret.setPrivateKeyExp(row.getVarint(PRIVATE_KEY_EXP_COLUMN));
+      return Optional.of(ret);
     }
     catch (final InvalidQueryException e) {
       return Optional.empty();
@@ -165,11 +277,22 @@ public class Signatures {
   }
 
   private Stream<String> streamValidKeyTimestamps() {
+    if (!migrations.isCompleted(VALID_KEYS_MIGRATION))
+      return streamValidKeyTimestampsFromIndex();
+
     try {
-      final Select.Where selectValid = QueryBuilder.select(KEY_TIMESTAMP_COLUMN)
-          .from(TABLE_NAME)
-          .where(QueryBuilder.eq(VALID_COLUMN, true));
-      final ResultSet result = cassandraSessionProvider.getTenantSession().execute(selectValid);
+      final ResultSet result = preparedStatements.execute(SELECT_VALID_KEY_TIMESTAMPS, IdentityConstants.CURRENT_VERSION);
+      return StreamSupport.stream(result.spliterator(), false)
+          .map(x -> x.getString(KEY_TIMESTAMP_COLUMN));
+    }
+    catch (final InvalidQueryException e) {
+      return streamValidKeyTimestampsFromIndex();
+    }
+  }
+
+  private Stream<String> streamValidKeyTimestampsFromIndex() {
+    try {
+      final ResultSet result = preparedStatements.execute(SELECT_VALID_FROM_INDEX, true);
       return StreamSupport.stream(result.spliterator(), false)
           .map(x -> x.get(KEY_TIMESTAMP_COLUMN, String.class));
     }
@@ -179,7 +302,13 @@ public class Signatures {
   }
 
   public synchronized void invalidateEntry(final String keyTimestamp) {
-    final Update.Assignments updateQuery = QueryBuilder.update(TABLE_NAME).where(QueryBuilder.eq(KEY_TIMESTAMP_COLUMN, keyTimestamp)).with(QueryBuilder.set(VALID_COLUMN, false));
-    cassandraSessionProvider.getTenantSession().execute(updateQuery);
+    preparedStatements.execute(INVALIDATE, false, keyTimestamp);
+
+    try {
+      preparedStatements.execute(DELETE_VALID_KEY_TIMESTAMP, IdentityConstants.CURRENT_VERSION, keyTimestamp);
+    }
+    catch (final InvalidQueryException e) {
+      //The tenant has not been migrated yet, so there is no valid key table to remove the timestamp from.
+    }
   }
 }
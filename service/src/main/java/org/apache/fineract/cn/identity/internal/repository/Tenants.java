@@ -20,6 +20,8 @@ package org.apache.fineract.cn.identity.internal.repository;
 
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.schemabuilder.Create;
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
 import java.nio.ByteBuffer;
@@ -41,15 +43,24 @@ public class Tenants {
   static final String PASSWORD_EXPIRES_IN_DAYS_COLUMN = "password_expires_in_days";
   static final String TIME_TO_CHANGE_PASSWORD_AFTER_EXPIRATION_IN_DAYS = "time_to_change_password_after_expiration_in_days";
 
+  private static final RegularStatement INSERT = QueryBuilder.insertInto(TABLE_NAME)
+      .value(VERSION_COLUMN, QueryBuilder.bindMarker())
+      .value(FIXED_SALT_COLUMN, QueryBuilder.bindMarker())
+      .value(PASSWORD_EXPIRES_IN_DAYS_COLUMN, QueryBuilder.bindMarker())
+      .value(TIME_TO_CHANGE_PASSWORD_AFTER_EXPIRATION_IN_DAYS, QueryBuilder.bindMarker());
+
   private final CassandraSessionProvider cassandraSessionProvider;
   private final TenantAwareEntityTemplate tenantAwareEntityTemplate;
+  private final PreparedStatements preparedStatements;
 
   @Autowired
   Tenants(final CassandraSessionProvider cassandraSessionProvider,
-          final TenantAwareEntityTemplate tenantAwareEntityTemplate)
+          final TenantAwareEntityTemplate tenantAwareEntityTemplate,
+          final PreparedStatements preparedStatements)
   {
     this.cassandraSessionProvider = cassandraSessionProvider;
     this.tenantAwareEntityTemplate = tenantAwareEntityTemplate;
+    this.preparedStatements = preparedStatements;
   }
 
   public void buildTable() {
@@ -69,13 +80,7 @@ public class Tenants {
           final int timeToChangePasswordAfterExpirationInDays)
   {
     //There will only be one entry in this table.
-    final BoundStatement tenantCreationStatement =
-        cassandraSessionProvider.getTenantSession().prepare("INSERT INTO " + Tenants.TABLE_NAME + " ("
-            + VERSION_COLUMN + ", "
-            + FIXED_SALT_COLUMN + ", "
-            + PASSWORD_EXPIRES_IN_DAYS_COLUMN + ", "
-            + TIME_TO_CHANGE_PASSWORD_AFTER_EXPIRATION_IN_DAYS + ")"
-            + "VALUES (?, ?, ?, ?)").bind();
+    final BoundStatement tenantCreationStatement = preparedStatements.bind(INSERT);
 
     tenantCreationStatement.setInt(VERSION_COLUMN, IdentityConstants.CURRENT_VERSION);
 
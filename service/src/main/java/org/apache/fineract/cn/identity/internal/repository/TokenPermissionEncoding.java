@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+
+/**
+ * The format compiled role permissions are stored in.  It belongs to this table only, so that changes to the token
+ * formats don't change what is stored.  The first byte is the version of the format.  Version 1 is followed by the
+ * number of permissions, and for each permission the length and the UTF-8 bytes of its path, and a byte with a bit
+ * for each allowed operation.
+ *
+ * Values in a version this doesn't know are treated as missing, so the role is compiled again instead.
+ */
+final class TokenPermissionEncoding {
+  static final byte VERSION = 1;
+
+  private static final int READ = 1;
+  private static final int CHANGE = 2;
+  private static final int DELETE = 4;
+
+  private TokenPermissionEncoding() {
+  }
+
+  static ByteBuffer encode(final Set<TokenPermission> tokenPermissions) {
+    final List<byte[]> paths = new ArrayList<>(tokenPermissions.size());
+    int size = 1 + 4;
+    for (final TokenPermission tokenPermission : tokenPermissions) {
+      final byte[] path = tokenPermission.getPath().getBytes(StandardCharsets.UTF_8);
+      paths.add(path);
+      size += 4 + path.length + 1;
+    }
+
+    final ByteBuffer ret = ByteBuffer.allocate(size);
+    ret.put(VERSION);
+    ret.putInt(tokenPermissions.size());
+    int i = 0;
+    for (final TokenPermission tokenPermission : tokenPermissions) {
+      final byte[] path = paths.get(i++);
+      ret.putInt(path.length);
+      ret.put(path);
+      ret.put((byte) mask(tokenPermission.getAllowedOperations()));
+    }
+    ret.flip();
+    return ret;
+  }
+
+  /**
+   * @return the permissions, or Optional.empty if the value is in a version this doesn't know.
+   */
+  static Optional<List<TokenPermission>> decode(final ByteBuffer encoded) {
+    final ByteBuffer buffer = encoded.duplicate();
+    if (!buffer.hasRemaining() || buffer.get() != VERSION)
+      return Optional.empty();
+
+    final int count = buffer.getInt();
+    final List<TokenPermission> ret = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      final byte[] path = new byte[buffer.getInt()];
+      buffer.get(path);
+      ret.add(new TokenPermission(new String(path, StandardCharsets.UTF_8), allowedOperations(buffer.get())));
+    }
+    return Optional.of(ret);
+  }
+
+  private static int mask(final Set<AllowedOperation> allowedOperations) {
+    int ret = 0;
+    for (final AllowedOperation allowedOperation : allowedOperations) {
+      switch (allowedOperation) {
+        case READ:
+          ret |= READ;
+          break;
+        case CHANGE:
+          ret |= CHANGE;
+          break;
+        case DELETE:
+          ret |= DELETE;
+          break;
+      }
+    }
+    return ret;
+  }
+
+  private static Set<AllowedOperation> allowedOperations(final int mask) {
+    final Set<AllowedOperation> ret = EnumSet.noneOf(AllowedOperation.class);
+    if ((mask & READ) != 0)
+      ret.add(AllowedOperation.READ);
+    if ((mask & CHANGE) != 0)
+      ret.add(AllowedOperation.CHANGE);
+    if ((mask & DELETE) != 0)
+      ret.add(AllowedOperation.DELETE);
+    return ret;
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.repository;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.schemabuilder.Create;
+import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
+import org.apache.fineract.cn.cassandra.core.TenantAwareCassandraMapperProvider;
+import org.apache.fineract.cn.cassandra.core.TenantAwareEntityTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * The permissions each user has granted to each application: those permissions the application has asked for, which
+ * the user's role allows and the user has enabled, with the operations allowed by both.  There is a row for each
+ * application the user has enabled or disabled a permission for, even if that leaves no permissions.
+ *
+ * The rows are kept up to date by the commands changing roles, user roles, application permissions, and enablements.
+ * Tenants provisioned before this table existed don't have it until they are migrated, so reads treat a missing table
+ * as a missing row.
+ */
+@Component
+public class UserApplicationPermissions {
+  static final String TABLE_NAME = "isis_user_application_permissions";
+  static final String USER_IDENTIFIER_COLUMN = "user_identifier";
+  static final String APPLICATION_IDENTIFIER_COLUMN = "application_identifier";
+  static final String PERMISSIONS_COLUMN = "permissions";
+
+  private static final RegularStatement SELECT_APPLICATIONS = QueryBuilder.select(APPLICATION_IDENTIFIER_COLUMN)
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(USER_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement DELETE_ONE = QueryBuilder.delete()
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(USER_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()))
+      .and(QueryBuilder.eq(APPLICATION_IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+
+  private final CassandraSessionProvider cassandraSessionProvider;
+  private final TenantAwareEntityTemplate tenantAwareEntityTemplate;
+  private final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider;
+  private final PreparedStatements preparedStatements;
+
+  @Autowired
+  public UserApplicationPermissions(final CassandraSessionProvider cassandraSessionProvider,
+                                    final TenantAwareEntityTemplate tenantAwareEntityTemplate,
+                                    final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider,
+                                    final PreparedStatements preparedStatements) {
+    this.cassandraSessionProvider = cassandraSessionProvider;
+    this.tenantAwareEntityTemplate = tenantAwareEntityTemplate;
+    this.tenantAwareCassandraMapperProvider = tenantAwareCassandraMapperProvider;
+    this.preparedStatements = preparedStatements;
+  }
+
+  public void buildTable() {
+    final Create create = SchemaBuilder.createTable(TABLE_NAME)
+        .ifNotExists()
+        .addPartitionKey(USER_IDENTIFIER_COLUMN, DataType.text())
+        .addClusteringColumn(APPLICATION_IDENTIFIER_COLUMN, DataType.text())
+        .addUDTListColumn(PERMISSIONS_COLUMN, SchemaBuilder.frozen(Permissions.TYPE_NAME));
+
+    cassandraSessionProvider.getTenantSession().execute(create);
+  }
+
+  /**
+   * Does nothing if the tenant hasn't been migrated yet.  Reads then fall back to computing the permissions.
+   */
+  public void put(final String userIdentifier,
+                  final String applicationIdentifier,
+                  final List<PermissionType> permissions) {
+    try {
+      tenantAwareEntityTemplate.save(new UserApplicationPermissionsEntity(userIdentifier, applicationIdentifier, permissions));
+    }
+    catch (final InvalidQueryException e) {
+      //The table is created, and filled, when the tenant is migrated.
+    }
+  }
+
+  /**
+   * Removes the row, so that reads fall back to computing the permissions.  Does nothing if the tenant hasn't been
+   * migrated yet.
+   */
+  public void delete(final String userIdentifier, final String applicationIdentifier) {
+    try {
+      preparedStatements.execute(DELETE_ONE, userIdentifier, applicationIdentifier);
+    }
+    catch (final InvalidQueryException e) {
+      //The table is created, and filled, when the tenant is migrated.
+    }
+  }
+
+  /**
+   * @return the permissions the user has granted the application, or Optional.empty if they haven't been stored.
+   */
+  public Optional<List<PermissionType>> get(final String userIdentifier, final String applicationIdentifier) {
+    final UserApplicationPermissionsEntity instance;
+    try {
+      instance = tenantAwareCassandraMapperProvider.getMapper(UserApplicationPermissionsEntity.class)
+          .get(userIdentifier, applicationIdentifier);
+    }
+    catch (final InvalidQueryException e) {
+      return Optional.empty();
+    }
+
+    return Optional.ofNullable(instance).map(UserApplicationPermissionsEntity::getPermissions);
+  }
+
+  /**
+   * @return the applications there are rows for for the user, or none if the tenant hasn't been migrated yet.  Reads one partition.
+   */
+  public List<String> getApplications(final String userIdentifier) {
+    final ResultSet result;
+    try {
+      result = preparedStatements.execute(SELECT_APPLICATIONS, userIdentifier);
+    }
+    catch (final InvalidQueryException e) {
+      return Collections.emptyList();
+    }
+
+    return StreamSupport.stream(result.spliterator(), false)
+        .map(x -> x.getString(APPLICATION_IDENTIFIER_COLUMN))
+        .collect(Collectors.toList());
+  }
+}
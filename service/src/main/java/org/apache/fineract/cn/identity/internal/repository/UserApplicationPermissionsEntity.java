@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.repository;
+
+import com.datastax.driver.mapping.annotations.ClusteringColumn;
+import com.datastax.driver.mapping.annotations.Column;
+import com.datastax.driver.mapping.annotations.Frozen;
+import com.datastax.driver.mapping.annotations.PartitionKey;
+import com.datastax.driver.mapping.annotations.Table;
+
+import java.util.List;
+import java.util.Objects;
+
+@SuppressWarnings({"unused", "WeakerAccess"})
+@Table(name = UserApplicationPermissions.TABLE_NAME)
+public class UserApplicationPermissionsEntity {
+  @PartitionKey
+  @Column(name = UserApplicationPermissions.USER_IDENTIFIER_COLUMN)
+  private String userIdentifier;
+
+  @ClusteringColumn
+  @Column(name = UserApplicationPermissions.APPLICATION_IDENTIFIER_COLUMN)
+  private String applicationIdentifier;
+
+  @Frozen
+  @Column(name = UserApplicationPermissions.PERMISSIONS_COLUMN)
+  private List<PermissionType> permissions;
+
+  public UserApplicationPermissionsEntity() {
+  }
+
+  public UserApplicationPermissionsEntity(String userIdentifier, String applicationIdentifier, List<PermissionType> permissions) {
+    this.userIdentifier = userIdentifier;
+    this.applicationIdentifier = applicationIdentifier;
+    this.permissions = permissions;
+  }
+
+  public String getUserIdentifier() {
+    return userIdentifier;
+  }
+
+  public void setUserIdentifier(String userIdentifier) {
+    this.userIdentifier = userIdentifier;
+  }
+
+  public String getApplicationIdentifier() {
+    return applicationIdentifier;
+  }
+
+  public void setApplicationIdentifier(String applicationIdentifier) {
+    this.applicationIdentifier = applicationIdentifier;
+  }
+
+  public List<PermissionType> getPermissions() {
+    return permissions;
+  }
+
+  public void setPermissions(List<PermissionType> permissions) {
+    this.permissions = permissions;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    UserApplicationPermissionsEntity that = (UserApplicationPermissionsEntity) o;
+    return Objects.equals(userIdentifier, that.userIdentifier) &&
+            Objects.equals(applicationIdentifier, that.applicationIdentifier) &&
+            Objects.equals(permissions, that.permissions);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(userIdentifier, applicationIdentifier, permissions);
+  }
+
+  @Override
+  public String toString() {
+    return "UserApplicationPermissionsEntity{" +
+            "userIdentifier='" + userIdentifier + '\'' +
+            ", applicationIdentifier='" + applicationIdentifier + '\'' +
+            ", permissions=" + permissions +
+            '}';
+  }
+}
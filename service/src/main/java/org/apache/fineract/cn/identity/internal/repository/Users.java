@@ -19,21 +19,31 @@
 package org.apache.fineract.cn.identity.internal.repository;
 
 import com.datastax.driver.core.DataType;
-import com.datastax.driver.core.Session;
-import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.schemabuilder.Create;
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
-import com.datastax.driver.mapping.Mapper;
+import com.datastax.driver.core.schemabuilder.SchemaStatement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
-import org.apache.fineract.cn.cassandra.core.TenantAwareCassandraMapperProvider;
 import org.apache.fineract.cn.cassandra.core.TenantAwareEntityTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 /**
  * @author Myrle Krantz
@@ -48,19 +58,30 @@ public class Users {
   static final String PASSWORD_EXPIRES_ON_COLUMN = "password_expires_on";
   static final String SALT_COLUMN = "salt";
   static final String ITERATION_COUNT_COLUMN = "iteration_count";
+  private static final String ROLE_INDEX_NAME = "isis_users_role_index";
+
+  private static final int STREAM_FETCH_SIZE = 500;
+
+  private static final RegularStatement SELECT_ALL = QueryBuilder.select(EntityRows.USER_COLUMNS).from(TABLE_NAME);
+  private static final RegularStatement SELECT_ONE = QueryBuilder.select(EntityRows.USER_COLUMNS)
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(IDENTIFIER_COLUMN, QueryBuilder.bindMarker()));
+  private static final RegularStatement SELECT_IDENTIFIERS_WITH_ROLE = QueryBuilder.select(IDENTIFIER_COLUMN)
+      .from(TABLE_NAME)
+      .where(QueryBuilder.eq(ROLE_COLUMN, QueryBuilder.bindMarker()));
 
   private final CassandraSessionProvider cassandraSessionProvider;
   private final TenantAwareEntityTemplate tenantAwareEntityTemplate;
-  private final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider;
+  private final PreparedStatements preparedStatements;
 
   @Autowired
   Users(final CassandraSessionProvider cassandraSessionProvider,
       final TenantAwareEntityTemplate tenantAwareEntityTemplate,
-      final TenantAwareCassandraMapperProvider tenantAwareCassandraMapperProvider)
+      final PreparedStatements preparedStatements)
   {
     this.cassandraSessionProvider = cassandraSessionProvider;
     this.tenantAwareEntityTemplate = tenantAwareEntityTemplate;
-    this.tenantAwareCassandraMapperProvider = tenantAwareCassandraMapperProvider;
+    this.preparedStatements = preparedStatements;
   }
 
   public void buildTable() {
@@ -74,6 +95,30 @@ public class Users {
         .addColumn(PASSWORD_EXPIRES_ON_COLUMN, DataType.date());
 
     cassandraSessionProvider.getTenantSession().execute(create);
+
+    buildRoleIndex();
+  }
+
+  /**
+   * Adds the index by role to the users of tenants provisioned before it existed.  Cassandra indexes the existing
+   * users itself.
+   */
+  public void migrateRoleIndex() {
+    try {
+      buildRoleIndex();
+    }
+    catch (final InvalidQueryException e) {
+      //The tenant hasn't been provisioned yet.  buildTable creates the index when it is.
+    }
+  }
+
+  private void buildRoleIndex() {
+    final SchemaStatement createRoleIndex = SchemaBuilder.createIndex(ROLE_INDEX_NAME)
+        .ifNotExists()
+        .onTable(TABLE_NAME)
+        .andColumn(ROLE_COLUMN);
+
+    cassandraSessionProvider.getTenantSession().execute(createRoleIndex);
   }
 
   public void add(final UserEntity instance) {
@@ -83,9 +128,38 @@ public class Users {
 
   public Optional<UserEntity> get(final String identifier)
   {
-    final UserEntity instance =
-        tenantAwareCassandraMapperProvider.getMapper(UserEntity.class).get(identifier);
+    return checked(preparedStatements.execute(SELECT_ONE, identifier).one());
+  }
+
+  /**
+   * Same as {@link #get}, but doesn't wait for cassandra.  The tenant is determined on the calling thread.
+   */
+  public CompletableFuture<Optional<UserEntity>> getAsync(final String identifier)
+  {
+    final ListenableFuture<ResultSet> future = preparedStatements.executeAsync(SELECT_ONE, identifier);
+
+    final CompletableFuture<Optional<UserEntity>> ret = new CompletableFuture<>();
+    Futures.addCallback(future, new FutureCallback<ResultSet>() {
+      @Override
+      public void onSuccess(final ResultSet result) {
+        try {
+          ret.complete(checked(result.one()));
+        }
+        catch (final RuntimeException e) {
+          ret.completeExceptionally(e);
+        }
+      }
+
+      @Override
+      public void onFailure(final Throwable t) {
+        ret.completeExceptionally(t);
+      }
+    }, MoreExecutors.directExecutor());
+    return ret;
+  }
 
+  private static Optional<UserEntity> checked(final Row row) {
+    final UserEntity instance = (row == null) ? null : EntityRows.toUser(row);
     if (instance != null) {
       Assert.notNull(instance.getIdentifier());
       Assert.notNull(instance.getRole());
@@ -95,13 +169,48 @@ public class Users {
     return Optional.ofNullable(instance);
   }
 
-  public List<UserEntity> getAll()
-  {
-    final Mapper<UserEntity> entityMapper = tenantAwareCassandraMapperProvider.getMapper(UserEntity.class);
-    final Session tenantSession = cassandraSessionProvider.getTenantSession();
+  /**
+   * @param cursor the next cursor of the previous page, or null for the first page.
+   */
+  public EntityPage<UserEntity> getPage(final int pageSize, final String cursor) {
+    return EntityPage.of(preparedStatements.executePage(SELECT_ALL, pageSize, cursor), EntityRows::toUser);
+  }
 
-    final Statement statement = QueryBuilder.select().all().from(TABLE_NAME);
+  /**
+   * Passes every user to the action, while reading them a page at a time, so that they don't all have to be in memory.
+   */
+  public void forEach(final Consumer<UserEntity> action) {
+    preparedStatements.forEachRow(SELECT_ALL, STREAM_FETCH_SIZE, row -> action.accept(EntityRows.toUser(row)));
+  }
 
-    return entityMapper.map(tenantSession.execute(statement)).all();
+  /**
+   * @return the identifiers of the users with the role.  Reads them through the index by role, or, if the tenant
+   * hasn't been migrated yet, by passing over all users.
+   */
+  public List<String> getIdentifiersWithRole(final String roleIdentifier) {
+    final ResultSet result;
+    try {
+      result = preparedStatements.execute(SELECT_IDENTIFIERS_WITH_ROLE, roleIdentifier);
+    }
+    catch (final InvalidQueryException e) {
+      //The index is created when the tenant is migrated.
+      final List<String> ret = new ArrayList<>();
+      forEach(x -> {
+        if (roleIdentifier.equals(x.getRole()))
+          ret.add(x.getIdentifier());
+      });
+      return ret;
+    }
+
+    return StreamSupport.stream(result.spliterator(), false)
+        .map(x -> x.getString(IDENTIFIER_COLUMN))
+        .collect(Collectors.toList());
+  }
+
+  public List<UserEntity> getAll()
+  {
+    return StreamSupport.stream(preparedStatements.execute(SELECT_ALL).spliterator(), false)
+        .map(EntityRows::toUser)
+        .collect(Collectors.toList());
   }
 }
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+import org.apache.fineract.cn.anubis.token.TokenSerializationResult;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the most recently signed access token for each tenant, user, source application and call endpoint set, so
+ * that a refresh shortly after the last one can return it instead of signing a new one.  A token is only reused while
+ * more than the configured fraction of its lifetime remains.  It must also have been signed with the tenant's current
+ * key, and contain exactly the permissions the new token would contain.
+ *
+ * Entries are dropped when the user, the user's role, or the source application changes.  Once a tenant has the
+ * configured maximum number of entries, each new entry replaces the one which was put longest ago.  Entries are
+ * indexed by user and by role, so that dropping a user's or a role's entries doesn't scan the whole tenant.  Reuse is
+ * off unless identity.token.access.reuse.enabled is set.
+ */
+@Component
+@ManagedResource(objectName = "org.apache.fineract.cn.identity:type=Cache,name=AccessTokenCache")
+public class AccessTokenCache {
+  private static class Entry {
+    private final String userIdentifier;
+    private final String roleIdentifier;
+    private final String sourceApplication;
+    private final String keyTimestamp;
+    private final Set<TokenPermission> tokenPermissions;
+    private final TokenSerializationResult accessToken;
+    private final Duration lifetime;
+
+    private Entry(final String userIdentifier,
+                  final String roleIdentifier,
+                  final String sourceApplication,
+                  final String keyTimestamp,
+                  final Set<TokenPermission> tokenPermissions,
+                  final TokenSerializationResult accessToken,
+                  final LocalDateTime now) {
+      this.userIdentifier = userIdentifier;
+      this.roleIdentifier = roleIdentifier;
+      this.sourceApplication = sourceApplication;
+      this.keyTimestamp = keyTimestamp;
+      this.tokenPermissions = tokenPermissions;
+      this.accessToken = accessToken;
+      this.lifetime = Duration.between(now, accessToken.getExpiration());
+    }
+  }
+
+  private static class TenantEntries {
+    private final Map<String, Entry> entries;
+    private final Map<String, Set<String>> keysByUser = new HashMap<>();
+    private final Map<String, Set<String>> keysByRole = new HashMap<>();
+
+    private TenantEntries(final int maxEntries) {
+      this.entries = new LinkedHashMap<String, Entry>() {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+          if (size() <= maxEntries)
+            return false;
+
+          unindex(eldest.getKey(), eldest.getValue());
+          return true;
+        }
+      };
+    }
+
+    private synchronized Entry get(final String key) {
+      return entries.get(key);
+    }
+
+    private synchronized void put(final String key, final Entry entry) {
+      //Removed first, so that a token signed again counts as the newest entry.
+      remove(key);
+      entries.put(key, entry);
+      keysByUser.computeIfAbsent(entry.userIdentifier, x -> new HashSet<>()).add(key);
+      keysByRole.computeIfAbsent(entry.roleIdentifier, x -> new HashSet<>()).add(key);
+    }
+
+    private synchronized void removeUser(final String userIdentifier) {
+      final Set<String> keys = keysByUser.get(userIdentifier);
+      if (keys != null)
+        new HashSet<>(keys).forEach(this::remove);
+    }
+
+    private synchronized void removeRole(final String roleIdentifier) {
+      final Set<String> keys = keysByRole.get(roleIdentifier);
+      if (keys != null)
+        new HashSet<>(keys).forEach(this::remove);
+    }
+
+    private synchronized void removeApplication(final String applicationIdentifier) {
+      final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+      while (iterator.hasNext()) {
+        final Map.Entry<String, Entry> entry = iterator.next();
+        if (entry.getValue().sourceApplication.equals(applicationIdentifier)) {
+          iterator.remove();
+          unindex(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+
+    private synchronized void clear() {
+      entries.clear();
+      keysByUser.clear();
+      keysByRole.clear();
+    }
+
+    private void remove(final String key) {
+      final Entry removed = entries.remove(key);
+      if (removed != null)
+        unindex(key, removed);
+    }
+
+    private void unindex(final String key, final Entry entry) {
+      unindex(keysByUser, entry.userIdentifier, key);
+      unindex(keysByRole, entry.roleIdentifier, key);
+    }
+
+    private static void unindex(final Map<String, Set<String>> index, final String identifier, final String key) {
+      final Set<String> keys = index.get(identifier);
+      if (keys != null && keys.remove(key) && keys.isEmpty())
+        index.remove(identifier);
+    }
+  }
+
+  private final boolean enabled;
+  private final double minRemainingFraction;
+  private final int maxEntries;
+  private final Clock clock;
+  private final ConcurrentMap<String, TenantEntries> tenantEntries = new ConcurrentHashMap<>();
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+
+  @Autowired
+  public AccessTokenCache(
+      @Value("${identity.token.access.reuse.enabled:false}") final boolean enabled,
+      @Value("${identity.token.access.reuse.minRemainingFraction:0.5}") final double minRemainingFraction,
+      @Value("${identity.token.access.reuse.maxEntries:100000}") final int maxEntries) {
+    this(enabled, minRemainingFraction, maxEntries, Clock.systemUTC());
+  }
+
+  AccessTokenCache(final boolean enabled,
+                   final double minRemainingFraction,
+                   final int maxEntries,
+                   final Clock clock) {
+    this.enabled = enabled;
+    this.minRemainingFraction = minRemainingFraction;
+    this.maxEntries = maxEntries;
+    this.clock = clock;
+  }
+
+  public Optional<TokenSerializationResult> get(final String userIdentifier,
+                                                final String sourceApplication,
+                                                @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+                                                final Optional<String> callEndpointSet,
+                                                final String keyTimestamp,
+                                                final Set<TokenPermission> tokenPermissions) {
+    if (!enabled)
+      return Optional.empty();
+
+    final Entry entry = getTenantEntries().get(key(userIdentifier, sourceApplication, callEndpointSet));
+    if (entry == null
+        || !isReusable(entry, LocalDateTime.now(clock))
+        || !entry.keyTimestamp.equals(keyTimestamp)
+        || !entry.tokenPermissions.equals(tokenPermissions)) {
+      missCount.increment();
+      return Optional.empty();
+    }
+
+    hitCount.increment();
+    return Optional.of(entry.accessToken);
+  }
+
+  public void put(final String userIdentifier,
+                  final String roleIdentifier,
+                  final String sourceApplication,
+                  @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+                  final Optional<String> callEndpointSet,
+                  final String keyTimestamp,
+                  final Set<TokenPermission> tokenPermissions,
+                  final TokenSerializationResult accessToken) {
+    if (!enabled)
+      return;
+
+    getTenantEntries().put(key(userIdentifier, sourceApplication, callEndpointSet),
+        new Entry(userIdentifier, roleIdentifier, sourceApplication, keyTimestamp, tokenPermissions, accessToken,
+            LocalDateTime.now(clock)));
+  }
+
+  public void invalidateUser(final String userIdentifier) {
+    if (enabled)
+      getTenantEntries().removeUser(userIdentifier);
+  }
+
+  public void invalidateRole(final String roleIdentifier) {
+    if (enabled)
+      getTenantEntries().removeRole(roleIdentifier);
+  }
+
+  public void invalidateApplication(final String applicationIdentifier) {
+    if (enabled)
+      getTenantEntries().removeApplication(applicationIdentifier);
+  }
+
+  public void invalidateAll() {
+    if (enabled)
+      getTenantEntries().clear();
+  }
+
+  @ManagedAttribute(description = "Number of refreshes which returned an already signed access token.")
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  @ManagedAttribute(description = "Number of refreshes which had to sign a new access token.")
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  private boolean isReusable(final Entry entry, final LocalDateTime now) {
+    final Duration remaining = Duration.between(now, entry.accessToken.getExpiration());
+    return remaining.toMillis() > entry.lifetime.toMillis() * minRemainingFraction;
+  }
+
+  private static String key(final String userIdentifier,
+                            final String sourceApplication,
+                            @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+                            final Optional<String> callEndpointSet) {
+    return userIdentifier + "\n" + sourceApplication + "\n" + callEndpointSet.orElse("");
+  }
+
+  private TenantEntries getTenantEntries() {
+    return tenantEntries.computeIfAbsent(TenantContextHolder.checkedGetIdentifier(), x -> new TenantEntries(maxEntries));
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.apache.fineract.cn.identity.internal.repository.ApplicationCallEndpointSetEntity;
+import org.apache.fineract.cn.identity.internal.repository.ApplicationCallEndpointSets;
+import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissionUsers;
+import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissions;
+import org.apache.fineract.cn.identity.internal.repository.PermissionType;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * In memory view of what each application of a tenant may request on behalf of its users: the permissions the
+ * application has asked for, its call endpoint sets, and which of those permissions each user has enabled for it.
+ * The parts of a view are read on first use, the enablements of a user with a single query, and are kept until a
+ * command changes anything about the application.  Then the whole view of that application is dropped.  The
+ * enablements of at most {@link #MAX_USERS_PER_APPLICATION} users are kept per application.  Beyond that, the
+ * enablements of another, arbitrary, user are dropped to make room.
+ *
+ * The returned permissions and call endpoint sets are shared, and must not be modified.
+ */
+@Component
+public class ApplicationAuthorizations {
+  static final int MAX_USERS_PER_APPLICATION = 10_000;
+
+  private static class ApplicationView {
+    private final Map<String, PermissionType> permissions;
+    private final GroupPermissions groupPermissions;
+    private final ConcurrentMap<String, BitSet> enabledPermissionsByUser = new ConcurrentHashMap<>();
+    private volatile Map<String, ApplicationCallEndpointSetEntity> callEndpointSets;
+
+    private ApplicationView(final List<PermissionType> permissions, final GroupIdentifiers groupIdentifiers) {
+      final Map<String, PermissionType> permissionsByGroup = new LinkedHashMap<>();
+      permissions.forEach(x -> permissionsByGroup.put(x.getPermittableGroupIdentifier(), x));
+      this.permissions = Collections.unmodifiableMap(permissionsByGroup);
+      this.groupPermissions = GroupPermissions.of(permissionsByGroup.values(), groupIdentifiers);
+    }
+  }
+
+  private static class TenantApplications {
+    private final ConcurrentMap<String, ApplicationView> views = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+  }
+
+  private final ApplicationPermissions applicationPermissions;
+  private final ApplicationPermissionUsers applicationPermissionUsers;
+  private final ApplicationCallEndpointSets applicationCallEndpointSets;
+  private final GroupIdentifiers groupIdentifiers;
+  private final ConcurrentMap<String, TenantApplications> tenants = new ConcurrentHashMap<>();
+
+  @Autowired
+  public ApplicationAuthorizations(final ApplicationPermissions applicationPermissions,
+                                   final ApplicationPermissionUsers applicationPermissionUsers,
+                                   final ApplicationCallEndpointSets applicationCallEndpointSets,
+                                   final GroupIdentifiers groupIdentifiers) {
+    this.applicationPermissions = applicationPermissions;
+    this.applicationPermissionUsers = applicationPermissionUsers;
+    this.applicationCallEndpointSets = applicationCallEndpointSets;
+    this.groupIdentifiers = groupIdentifiers;
+  }
+
+  public Collection<PermissionType> getPermissions(final String applicationIdentifier) {
+    return getView(applicationIdentifier).permissions.values();
+  }
+
+  /**
+   * @return the permissions the application has asked for, by interned permittable group.
+   */
+  public GroupPermissions getGroupPermissions(final String applicationIdentifier) {
+    return getView(applicationIdentifier).groupPermissions;
+  }
+
+  public Optional<PermissionType> getPermission(final String applicationIdentifier,
+                                                final String permittableGroupIdentifier) {
+    return Optional.ofNullable(getView(applicationIdentifier).permissions.get(permittableGroupIdentifier));
+  }
+
+  public Optional<ApplicationCallEndpointSetEntity> getCallEndpointSet(final String applicationIdentifier,
+                                                                       final String callEndpointSetIdentifier) {
+    final ApplicationView view = getView(applicationIdentifier);
+    Map<String, ApplicationCallEndpointSetEntity> callEndpointSets = view.callEndpointSets;
+    if (callEndpointSets == null) {
+      callEndpointSets = Collections.unmodifiableMap(
+          applicationCallEndpointSets.getAllForApplication(applicationIdentifier).stream()
+              .collect(Collectors.toMap(ApplicationCallEndpointSetEntity::getCallEndpointSetIdentifier, x -> x)));
+      view.callEndpointSets = callEndpointSets;
+    }
+    return Optional.ofNullable(callEndpointSets.get(callEndpointSetIdentifier));
+  }
+
+  /**
+   * @return true if the user has enabled the application to use the permission.  Only permissions the application
+   * has asked for can be enabled.
+   */
+  public boolean isEnabled(final String applicationIdentifier,
+                           final String permittableGroupIdentifier,
+                           final String userIdentifier) {
+    return isEnabled(applicationIdentifier, groupIdentifiers.intern(permittableGroupIdentifier), userIdentifier);
+  }
+
+  /**
+   * @param group the permittable group, as interned by {@link GroupIdentifiers}.
+   */
+  public boolean isEnabled(final String applicationIdentifier,
+                           final int group,
+                           final String userIdentifier) {
+    final ApplicationView view = getView(applicationIdentifier);
+    final int index = view.groupPermissions.indexOf(group);
+    if (index < 0)
+      return false;
+
+    final ConcurrentMap<String, BitSet> enabledPermissionsByUser = view.enabledPermissionsByUser;
+    if (enabledPermissionsByUser.size() >= MAX_USERS_PER_APPLICATION
+        && !enabledPermissionsByUser.containsKey(userIdentifier))
+      evictOne(enabledPermissionsByUser);
+
+    final BitSet enabledPermissions = enabledPermissionsByUser.computeIfAbsent(userIdentifier, x -> {
+      final Set<String> enabledGroups
+          = applicationPermissionUsers.getEnabledPermittableGroups(applicationIdentifier, userIdentifier);
+      final BitSet ret = new BitSet(view.groupPermissions.size());
+      enabledGroups.stream()
+          .mapToInt(y -> view.groupPermissions.indexOf(groupIdentifiers.intern(y)))
+          .filter(y -> y >= 0)
+          .forEach(ret::set);
+      return ret;
+    });
+    return enabledPermissions.get(index);
+  }
+
+  private static void evictOne(final ConcurrentMap<String, BitSet> enabledPermissionsByUser) {
+    final Iterator<String> users = enabledPermissionsByUser.keySet().iterator();
+    if (users.hasNext()) {
+      users.next();
+      users.remove();
+    }
+  }
+
+  /**
+   * Should be called after anything about the application has been changed: its signatures, permissions, call
+   * endpoint sets, or the enablement of a permission by a user.
+   */
+  public void invalidate(final String applicationIdentifier) {
+    final TenantApplications tenantApplications = getTenantApplications();
+    tenantApplications.generation.incrementAndGet();
+    tenantApplications.views.remove(applicationIdentifier);
+  }
+
+  private ApplicationView getView(final String applicationIdentifier) {
+    final TenantApplications tenantApplications = getTenantApplications();
+    final ApplicationView view = tenantApplications.views.get(applicationIdentifier);
+    if (view != null)
+      return view;
+
+    final long generationBeforeLoad = tenantApplications.generation.get();
+    final ApplicationView loaded
+        = new ApplicationView(applicationPermissions.getAllPermissionsForApplication(applicationIdentifier), groupIdentifiers);
+    final ApplicationView previous = tenantApplications.views.putIfAbsent(applicationIdentifier, loaded);
+    if (previous != null)
+      return previous;
+
+    //A change made while loading may be missing from what was read, so the view is only used for this request.
+    if (tenantApplications.generation.get() != generationBeforeLoad)
+      tenantApplications.views.remove(applicationIdentifier, loaded);
+
+    return loaded;
+  }
+
+  private TenantApplications getTenantApplications() {
+    return tenants.computeIfAbsent(TenantContextHolder.checkedGetIdentifier(), x -> new TenantApplications());
+  }
+}
@@ -23,6 +23,7 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import org.apache.fineract.cn.anubis.api.v1.domain.Signature;
+import org.apache.fineract.cn.identity.api.v1.domain.ApplicationPage;
 import org.apache.fineract.cn.identity.api.v1.domain.CallEndpointSet;
 import org.apache.fineract.cn.identity.api.v1.domain.Permission;
 import org.apache.fineract.cn.identity.internal.mapper.ApplicationCallEndpointSetMapper;
@@ -31,8 +32,9 @@ import org.apache.fineract.cn.identity.internal.mapper.SignatureMapper;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationCallEndpointSets;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissionUsers;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissions;
-import org.apache.fineract.cn.identity.internal.repository.ApplicationSignatureEntity;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationSignatures;
+import org.apache.fineract.cn.identity.internal.repository.Applications;
+import org.apache.fineract.cn.identity.internal.repository.EntityPage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -42,16 +44,19 @@ import org.springframework.stereotype.Service;
 @Service
 public class ApplicationService {
 
+  private final Applications applicationsRepository;
   private final ApplicationSignatures applicationSignaturesRepository;
   private final ApplicationPermissions applicationPermissionsRepository;
   private final ApplicationPermissionUsers applicationPermissionsUserRepository;
   private final ApplicationCallEndpointSets applicationCallEndpointSets;
 
   @Autowired
-  public ApplicationService(final ApplicationSignatures applicationSignaturesRepository,
+  public ApplicationService(final Applications applicationsRepository,
+                            final ApplicationSignatures applicationSignaturesRepository,
                             final ApplicationPermissions applicationPermissionsRepository,
                             final ApplicationPermissionUsers applicationPermissionsUserRepository,
                             final ApplicationCallEndpointSets applicationCallEndpointSets) {
+    this.applicationsRepository = applicationsRepository;
     this.applicationSignaturesRepository = applicationSignaturesRepository;
     this.applicationPermissionsRepository = applicationPermissionsRepository;
     this.applicationPermissionsUserRepository = applicationPermissionsUserRepository;
@@ -59,9 +64,12 @@ public class ApplicationService {
   }
 
   public List<String> getAllApplications() {
-    return applicationSignaturesRepository.getAll().stream()
-            .map(ApplicationSignatureEntity::getApplicationIdentifier)
-            .collect(Collectors.toList());
+    return applicationsRepository.getAll();
+  }
+
+  public ApplicationPage findPage(final int pageSize, final String cursor) {
+    final EntityPage<String> page = Pages.read(pageSize, cursor, applicationsRepository::getPage);
+    return new ApplicationPage(page.getElements(), page.getNextCursor());
   }
 
   public List<Permission> getAllPermissionsForApplication(final String applicationIdentifier) {
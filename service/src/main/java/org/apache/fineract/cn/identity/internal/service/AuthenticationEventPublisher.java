@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import com.google.gson.Gson;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import org.apache.fineract.cn.identity.api.v1.events.EventConstants;
+import org.apache.fineract.cn.identity.internal.util.IdentityConstants;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes authentication events from a background thread, so that a slow broker doesn't hold up logins.  Events are
+ * put in a bounded queue, and sent in batches, one session per batch.  The tenant is taken from the thread which
+ * fires the event.
+ *
+ * If the queue is full, the overflow policy decides whether the oldest queued event is dropped, or whether the login
+ * waits for space.  Events still queued on shutdown are sent before the publisher stops.
+ *
+ * Messages are sent with the quality of service configured on the JmsTemplate, as its send methods would.
+ */
+@Component
+@ManagedResource(objectName = "org.apache.fineract.cn.identity:type=Events,name=AuthenticationEventPublisher")
+public class AuthenticationEventPublisher {
+  public enum OverflowPolicy {
+    DROP_OLDEST,
+    BLOCK
+  }
+
+  private static class AuthenticationEvent {
+    private final String tenantIdentifier;
+    private final String payload;
+
+    private AuthenticationEvent(final String tenantIdentifier, final String payload) {
+      this.tenantIdentifier = tenantIdentifier;
+      this.payload = payload;
+    }
+  }
+
+  private final JmsTemplate jmsTemplate;
+  private final Gson gson;
+  private final Logger logger;
+  private final BlockingQueue<AuthenticationEvent> queue;
+  private final OverflowPolicy overflowPolicy;
+  private final int batchSize;
+  private final LongAdder publishedCount = new LongAdder();
+  private final LongAdder droppedCount = new LongAdder();
+  private final LongAdder failedCount = new LongAdder();
+  private volatile boolean running;
+  private Thread publisherThread;
+
+  @Autowired
+  public AuthenticationEventPublisher(
+      final JmsTemplate jmsTemplate,
+      @Qualifier(IdentityConstants.JSON_SERIALIZER_NAME) final Gson gson,
+      @Qualifier(IdentityConstants.LOGGER_NAME) final Logger logger,
+      @Value("${identity.events.authentication.queueCapacity:10000}") final int queueCapacity,
+      @Value("${identity.events.authentication.batchSize:100}") final int batchSize,
+      @Value("${identity.events.authentication.overflowPolicy:DROP_OLDEST}") final OverflowPolicy overflowPolicy) {
+    this.jmsTemplate = jmsTemplate;
+    this.gson = gson;
+    this.logger = logger;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.batchSize = batchSize;
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  @PostConstruct
+  public void start() {
+    running = true;
+    publisherThread = new Thread(this::publishUntilStopped, "identity-authentication-events");
+    publisherThread.setDaemon(true);
+    publisherThread.start();
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    publisherThread.join(TimeUnit.SECONDS.toMillis(10));
+  }
+
+  public void fireAuthenticationEvent(final String userIdentifier) {
+    final AuthenticationEvent event = new AuthenticationEvent(
+        TenantContextHolder.identifier().orElse(null),
+        gson.toJson(userIdentifier));
+
+    if (overflowPolicy == OverflowPolicy.BLOCK) {
+      try {
+        queue.put(event);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        droppedCount.increment();
+      }
+    }
+    else {
+      while (!queue.offer(event)) {
+        if (queue.poll() != null)
+          droppedCount.increment();
+      }
+    }
+  }
+
+  @ManagedAttribute(description = "Number of authentication events waiting to be published.")
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  @ManagedAttribute(description = "Number of authentication events published.")
+  public long getPublishedEventCount() {
+    return publishedCount.sum();
+  }
+
+  @ManagedAttribute(description = "Number of authentication events dropped because the queue was full.")
+  public long getDroppedEventCount() {
+    return droppedCount.sum();
+  }
+
+  @ManagedAttribute(description = "Number of authentication events lost because the broker rejected them.")
+  public long getFailedEventCount() {
+    return failedCount.sum();
+  }
+
+  private void publishUntilStopped() {
+    final List<AuthenticationEvent> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        final AuthenticationEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null)
+          continue;
+
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        publish(batch);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (final RuntimeException e) {
+        failedCount.add(batch.size());
+        logger.warn("Failed to publish {} authentication events.", batch.size(), e);
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void publish(final List<AuthenticationEvent> batch) {
+    jmsTemplate.execute(session -> {
+      final MessageProducer producer = createProducer(session);
+      try {
+        for (final AuthenticationEvent event : batch) {
+          send(producer, createMessage(session, event));
+        }
+        if (session.getTransacted())
+          JmsUtils.commitIfNecessary(session);
+      }
+      finally {
+        JmsUtils.closeMessageProducer(producer);
+      }
+      return null;
+    }, false);
+    publishedCount.add(batch.size());
+  }
+
+  private MessageProducer createProducer(final Session session) throws JMSException {
+    final MessageProducer ret = session.createProducer(getDestination(session));
+    if (!jmsTemplate.isMessageIdEnabled())
+      ret.setDisableMessageID(true);
+    if (!jmsTemplate.isMessageTimestampEnabled())
+      ret.setDisableMessageTimestamp(true);
+    return ret;
+  }
+
+  private void send(final MessageProducer producer, final Message message) throws JMSException {
+    if (jmsTemplate.isExplicitQosEnabled())
+      producer.send(message, jmsTemplate.getDeliveryMode(), jmsTemplate.getPriority(), jmsTemplate.getTimeToLive());
+    else
+      producer.send(message);
+  }
+
+  private Destination getDestination(final Session session) throws JMSException {
+    final Destination defaultDestination = jmsTemplate.getDefaultDestination();
+    if (defaultDestination != null)
+      return defaultDestination;
+
+    return jmsTemplate.getDestinationResolver().resolveDestinationName(
+        session, jmsTemplate.getDefaultDestinationName(), jmsTemplate.isPubSubDomain());
+  }
+
+  private Message createMessage(final Session session, final AuthenticationEvent event) throws JMSException {
+    final Message message = jmsTemplate.getMessageConverter().toMessage(event.payload, session);
+    if (event.tenantIdentifier != null)
+      message.setStringProperty(TenantHeaderFilter.TENANT_HEADER, event.tenantIdentifier);
+    message.setStringProperty(EventConstants.OPERATION_HEADER, EventConstants.OPERATION_AUTHENTICATE);
+    return message;
+  }
+}
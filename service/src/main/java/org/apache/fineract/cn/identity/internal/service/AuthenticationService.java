@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import java.util.function.Supplier;
+import org.apache.fineract.cn.anubis.security.AmitAuthenticationException;
+import org.apache.fineract.cn.identity.internal.command.AuthenticationCommandResponse;
+import org.apache.fineract.cn.identity.internal.command.PasswordAuthenticationCommand;
+import org.apache.fineract.cn.identity.internal.command.RefreshTokenAuthenticationCommand;
+import org.apache.fineract.cn.identity.internal.command.handler.AuthenticationCommandHandler;
+import org.apache.fineract.cn.identity.internal.util.IdentityConstants;
+import org.apache.fineract.cn.lang.ServiceException;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs authentications on the calling thread instead of passing them through the command gateway.  Authentication
+ * changes no state which other commands depend on, so it doesn't need the command bus.  Errors are mapped the same
+ * way the gateway path maps them.
+ */
+@Service
+public class AuthenticationService {
+  private final AuthenticationCommandHandler authenticationCommandHandler;
+  private final Logger logger;
+
+  @Autowired
+  public AuthenticationService(final AuthenticationCommandHandler authenticationCommandHandler,
+                               @Qualifier(IdentityConstants.LOGGER_NAME) final Logger logger) {
+    this.authenticationCommandHandler = authenticationCommandHandler;
+    this.logger = logger;
+  }
+
+  public AuthenticationCommandResponse authenticate(final PasswordAuthenticationCommand command)
+      throws AmitAuthenticationException {
+    return authenticate(() -> authenticationCommandHandler.process(command));
+  }
+
+  public AuthenticationCommandResponse authenticate(final RefreshTokenAuthenticationCommand command)
+      throws AmitAuthenticationException {
+    return authenticate(() -> authenticationCommandHandler.process(command));
+  }
+
+  private AuthenticationCommandResponse authenticate(final Supplier<AuthenticationCommandResponse> authentication)
+      throws AmitAuthenticationException {
+    try {
+      return authentication.get();
+    }
+    catch (final AmitAuthenticationException e) {
+      logger.debug("Authentication failed.", e);
+      throw e;
+    }
+    catch (final ServiceException | PasswordHashingRejectedException e) {
+      throw e;
+    }
+    catch (final RuntimeException e) {
+      logger.error("Authentication failed with an unexpected error.", e);
+      throw ServiceException.internalError("An error occurred while attempting to authenticate a user.");
+    }
+  }
+}
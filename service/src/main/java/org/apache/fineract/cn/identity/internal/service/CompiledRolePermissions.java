@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per tenant cache of the token permissions of each role, already expanded from the permittable groups and minified,
+ * and of the role's permissions as {@link GroupPermissions}.  Entries must be invalidated whenever a role or a
+ * permittable group changes.  The cached sets are unmodifiable.
+ *
+ * Only the instance which changes a role or permittable group invalidates its entries, so entries also expire after
+ * a configurable time.  That bounds how long other instances keep using permissions which have been revoked.  Loading
+ * a role again is a single row read of its compilation.
+ *
+ * A compilation which overlaps with an invalidation in the same tenant is returned, but not cached.
+ */
+@Component
+@ManagedResource(objectName = "org.apache.fineract.cn.identity:type=Cache,name=CompiledRolePermissions")
+public class CompiledRolePermissions {
+  private static class Entry<T> {
+    private final T value;
+    private final long loadedAt;
+
+    private Entry(final T value, final long loadedAt) {
+      this.value = value;
+      this.loadedAt = loadedAt;
+    }
+  }
+
+  private static class TenantRolePermissions {
+    private final ConcurrentMap<String, Entry<Set<TokenPermission>>> rolePermissions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Entry<GroupPermissions>> roleGroupPermissions = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+  }
+
+  private final ConcurrentMap<String, TenantRolePermissions> tenantRolePermissions = new ConcurrentHashMap<>();
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final long ttlNanos;
+  private final LongSupplier nanoTime;
+
+  @Autowired
+  public CompiledRolePermissions(
+      @Value("${identity.roles.cacheTtl:30}") final int ttlInSeconds) {
+    this(ttlInSeconds, System::nanoTime);
+  }
+
+  CompiledRolePermissions(final int ttlInSeconds, final LongSupplier nanoTime) {
+    this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlInSeconds);
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * @param roleIdentifier the role to get the token permissions for.
+   * @param compiler called on a cache miss.  Should return Optional.empty if the role doesn't exist.  Empty results
+   *                 are not cached.
+   * @return the token permissions of the role in the current tenant.
+   */
+  public Optional<Set<TokenPermission>> get(final String roleIdentifier,
+                                            final Supplier<Optional<Set<TokenPermission>>> compiler) {
+    final TenantRolePermissions tenantEntry = getTenantEntry();
+    return get(tenantEntry, tenantEntry.rolePermissions, roleIdentifier, compiler);
+  }
+
+  /**
+   * @param roleIdentifier the role to get the permissions for.
+   * @param compiler called on a cache miss.  Should return Optional.empty if the role doesn't exist.  Empty results
+   *                 are not cached.
+   * @return the permissions of the role in the current tenant, by interned permittable group.
+   */
+  public Optional<GroupPermissions> getGroupPermissions(final String roleIdentifier,
+                                                        final Supplier<Optional<GroupPermissions>> compiler) {
+    final TenantRolePermissions tenantEntry = getTenantEntry();
+    return get(tenantEntry, tenantEntry.roleGroupPermissions, roleIdentifier, compiler);
+  }
+
+  public void invalidate(final String roleIdentifier) {
+    final TenantRolePermissions tenantEntry = getTenantEntry();
+    tenantEntry.generation.incrementAndGet();
+    tenantEntry.rolePermissions.remove(roleIdentifier);
+    tenantEntry.roleGroupPermissions.remove(roleIdentifier);
+  }
+
+  public void invalidateAll() {
+    final TenantRolePermissions tenantEntry = getTenantEntry();
+    tenantEntry.generation.incrementAndGet();
+    tenantEntry.rolePermissions.clear();
+    tenantEntry.roleGroupPermissions.clear();
+  }
+
+  private <T> Optional<T> get(final TenantRolePermissions tenantEntry,
+                              final ConcurrentMap<String, Entry<T>> cache,
+                              final String roleIdentifier,
+                              final Supplier<Optional<T>> compiler) {
+    final long now = nanoTime.getAsLong();
+    final Entry<T> cached = cache.get(roleIdentifier);
+    if (cached != null) {
+      if (now - cached.loadedAt < ttlNanos) {
+        hitCount.increment();
+        return Optional.of(cached.value);
+      }
+      cache.remove(roleIdentifier, cached);
+    }
+
+    missCount.increment();
+    final long generation = tenantEntry.generation.get();
+    final Optional<T> compiled = compiler.get();
+    compiled.ifPresent(x -> {
+      final Entry<T> entry = new Entry<>(x, now);
+      cache.put(roleIdentifier, entry);
+      if (tenantEntry.generation.get() != generation)
+        cache.remove(roleIdentifier, entry);
+    });
+    return compiled;
+  }
+
+  @ManagedAttribute(description = "Number of lookups which found the compiled role permissions in the cache.")
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  @ManagedAttribute(description = "Number of lookups which had to compile the role permissions.")
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  private TenantRolePermissions getTenantEntry() {
+    return tenantRolePermissions.computeIfAbsent(TenantContextHolder.checkedGetIdentifier(),
+        x -> new TenantRolePermissions());
+  }
+}
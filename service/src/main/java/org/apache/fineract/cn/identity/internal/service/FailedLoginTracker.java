@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts failed logins per tenant and user within a time window.  Once a user has reached the threshold, further
+ * attempts are rejected without reading the user or hashing the password until the window has passed.  A successful
+ * login or a password change clears the count.
+ *
+ * The counts are kept only in memory, and only per instance of this service.  Only failures of existing users should
+ * be recorded, so that logins with made up user names don't fill the memory.  At most the configured number of users
+ * is tracked per tenant.  When that is reached, expired windows are purged, and if none have expired yet, failures of
+ * users who aren't tracked yet are not counted until one has.  A threshold of 0 turns tracking off.
+ */
+@Component
+@ManagedResource(objectName = "org.apache.fineract.cn.identity:type=Security,name=FailedLoginTracker")
+public class FailedLoginTracker {
+  private static class FailureWindow {
+    private final long start;
+    private final LongAdder failures = new LongAdder();
+
+    private FailureWindow(final long start) {
+      this.start = start;
+    }
+  }
+
+  private static class TenantFailures {
+    private final ConcurrentMap<String, FailureWindow> windows = new ConcurrentHashMap<>();
+    /**
+     * No window can expire before this, so purging earlier would free nothing.
+     */
+    private volatile long nextPurge;
+
+    private TenantFailures(final long now) {
+      this.nextPurge = now;
+    }
+  }
+
+  private final int threshold;
+  private final long windowNanos;
+  private final int maxTrackedUsers;
+  private final LongSupplier nanoTime;
+  private final ConcurrentMap<String, TenantFailures> tenantFailures = new ConcurrentHashMap<>();
+  private final LongAdder rejectedCount = new LongAdder();
+  private final LongAdder untrackedCount = new LongAdder();
+
+  @Autowired
+  public FailedLoginTracker(
+      @Value("${identity.login.failureThreshold:10}") final int threshold,
+      @Value("${identity.login.failureWindow:300}") final int windowInSeconds,
+      @Value("${identity.login.maxTrackedUsers:100000}") final int maxTrackedUsers) {
+    this(threshold, windowInSeconds, maxTrackedUsers, System::nanoTime);
+  }
+
+  FailedLoginTracker(final int threshold,
+                     final int windowInSeconds,
+                     final int maxTrackedUsers,
+                     final LongSupplier nanoTime) {
+    this.threshold = threshold;
+    this.windowNanos = TimeUnit.SECONDS.toNanos(windowInSeconds);
+    this.maxTrackedUsers = maxTrackedUsers;
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * @return true if the user has failed to log in too often recently.  Counts the rejection.
+   */
+  public boolean isBlocked(final String userIdentifier) {
+    if (threshold <= 0)
+      return false;
+
+    final ConcurrentMap<String, FailureWindow> failures = getTenantFailures().windows;
+    final FailureWindow window = failures.get(userIdentifier);
+    if (window == null)
+      return false;
+
+    if (isExpired(window, nanoTime.getAsLong())) {
+      failures.remove(userIdentifier, window);
+      return false;
+    }
+
+    final boolean ret = window.failures.sum() >= threshold;
+    if (ret)
+      rejectedCount.increment();
+    return ret;
+  }
+
+  /**
+   * @param userIdentifier the identifier of an existing user.
+   */
+  public void recordFailure(final String userIdentifier) {
+    if (threshold <= 0)
+      return;
+
+    final TenantFailures tenant = getTenantFailures();
+    final ConcurrentMap<String, FailureWindow> failures = tenant.windows;
+    final long now = nanoTime.getAsLong();
+    FailureWindow window = failures.get(userIdentifier);
+    if (window == null || isExpired(window, now)) {
+      if (window == null && failures.size() >= maxTrackedUsers && !purge(tenant, now)) {
+        untrackedCount.increment();
+        return;
+      }
+
+      window = failures.compute(userIdentifier,
+          (x, current) -> (current == null || isExpired(current, now)) ? new FailureWindow(now) : current);
+    }
+    window.failures.increment();
+  }
+
+  /**
+   * Removes the expired windows, unless none can have expired yet.
+   *
+   * @return true if there is room for another user.
+   */
+  private boolean purge(final TenantFailures tenant, final long now) {
+    if (now - tenant.nextPurge < 0)
+      return false;
+
+    synchronized (tenant) {
+      if (now - tenant.nextPurge < 0)
+        return tenant.windows.size() < maxTrackedUsers;
+
+      tenant.windows.values().removeIf(x -> isExpired(x, now));
+      final long earliestStart = tenant.windows.values().stream()
+          .mapToLong(x -> x.start)
+          .reduce((x, y) -> (x - y < 0) ? x : y)
+          .orElse(now);
+      tenant.nextPurge = earliestStart + windowNanos + 1;
+    }
+    return tenant.windows.size() < maxTrackedUsers;
+  }
+
+  public void clear(final String userIdentifier) {
+    getTenantFailures().windows.remove(userIdentifier);
+  }
+
+  @ManagedAttribute(description = "Number of login attempts rejected because of too many recent failures.")
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  @ManagedAttribute(description = "Number of failed logins not counted because the maximum number of users was tracked.")
+  public long getUntrackedFailureCount() {
+    return untrackedCount.sum();
+  }
+
+  @ManagedAttribute(description = "Number of users with recent failed logins, over all tenants.")
+  public int getTrackedUserCount() {
+    return tenantFailures.values().stream().mapToInt(x -> x.windows.size()).sum();
+  }
+
+  private boolean isExpired(final FailureWindow window, final long now) {
+    return now - window.start > windowNanos;
+  }
+
+  private TenantFailures getTenantFailures() {
+    return tenantFailures.computeIfAbsent(TenantContextHolder.checkedGetIdentifier(), x -> new TenantFailures(nanoTime.getAsLong()));
+  }
+}
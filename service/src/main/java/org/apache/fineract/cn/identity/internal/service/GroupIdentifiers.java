@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Assigns each permittable group identifier of a tenant a small int, so that permissions can be kept and compared as
+ * arrays of ints instead of as sets of strings.  Numbers are handed out in the order identifiers are first seen, and
+ * are kept for the lifetime of the instance.  Since permittable groups are never deleted, the number of entries is
+ * bounded by the number of identifiers ever used in the tenant.
+ *
+ * Any identifier can be interned, also one for which no permittable group exists, since roles and applications may
+ * refer to groups which haven't been created yet.
+ */
+@Component
+@ManagedResource(objectName = "org.apache.fineract.cn.identity:type=Cache,name=GroupIdentifiers")
+public class GroupIdentifiers {
+  private static class TenantGroupIdentifiers {
+    private final ConcurrentMap<String, Integer> numbers = new ConcurrentHashMap<>();
+    private volatile String[] identifiers = new String[64];
+    private int count; //Guarded by this.
+
+    private synchronized int add(final String identifier) {
+      final Integer existing = numbers.get(identifier);
+      if (existing != null)
+        return existing;
+
+      //The identifier is stored before its number is put in the map, so whoever can see the number can look it up.
+      if (count == identifiers.length)
+        identifiers = Arrays.copyOf(identifiers, count * 2);
+      identifiers[count] = identifier;
+      numbers.put(identifier, count);
+      return count++;
+    }
+  }
+
+  private final ConcurrentMap<String, TenantGroupIdentifiers> tenants = new ConcurrentHashMap<>();
+
+  public GroupIdentifiers() {
+  }
+
+  public int intern(final String permittableGroupIdentifier) {
+    final TenantGroupIdentifiers tenantEntry = getTenantEntry();
+    final Integer ret = tenantEntry.numbers.get(permittableGroupIdentifier);
+    return (ret != null) ? ret : tenantEntry.add(permittableGroupIdentifier);
+  }
+
+  /**
+   * @param number must have been returned by {@link #intern} in the current tenant.
+   */
+  public String identifierOf(final int number) {
+    return getTenantEntry().identifiers[number];
+  }
+
+  @ManagedAttribute(description = "Number of permittable group identifiers interned, summed over all tenants.")
+  public long getInternedCount() {
+    return tenants.values().stream().mapToLong(x -> x.numbers.size()).sum();
+  }
+
+  private TenantGroupIdentifiers getTenantEntry() {
+    return tenants.computeIfAbsent(TenantContextHolder.checkedGetIdentifier(), x -> new TenantGroupIdentifiers());
+  }
+}
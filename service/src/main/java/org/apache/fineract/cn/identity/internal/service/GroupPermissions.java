@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import org.apache.fineract.cn.identity.internal.repository.AllowedOperationType;
+import org.apache.fineract.cn.identity.internal.repository.PermissionType;
+
+/**
+ * The permissions of a role or an application, with the permittable groups given by their numbers from
+ * {@link GroupIdentifiers}, sorted, and the allowed operations of each group as a bit mask in the low four bits of a
+ * byte.  Permissions for the same group are merged.  Instances are immutable, and are only meaningful within the
+ * tenant the groups were interned in.
+ */
+public final class GroupPermissions {
+  public static final GroupPermissions EMPTY = new GroupPermissions(new int[0], new byte[0]);
+
+  private static final AllowedOperationType[] OPERATION_TYPES = AllowedOperationType.values();
+
+  private final int[] groups;
+  private final byte[] operations;
+
+  private GroupPermissions(final int[] groups, final byte[] operations) {
+    this.groups = groups;
+    this.operations = operations;
+  }
+
+  public static GroupPermissions of(final Collection<PermissionType> permissions,
+                                    final GroupIdentifiers groupIdentifiers) {
+    final long[] entries = new long[permissions.size()];
+    int count = 0;
+    for (final PermissionType permission : permissions) {
+      final int group = groupIdentifiers.intern(permission.getPermittableGroupIdentifier());
+      entries[count++] = ((long) group << 8) | mask(permission.getAllowedOperations());
+    }
+    Arrays.sort(entries);
+
+    final int[] groups = new int[count];
+    final byte[] operations = new byte[count];
+    int size = 0;
+    for (int i = 0; i < count; i++) {
+      final int group = (int) (entries[i] >>> 8);
+      final byte mask = (byte) entries[i];
+      if (size > 0 && groups[size - 1] == group) {
+        operations[size - 1] |= mask;
+      }
+      else {
+        groups[size] = group;
+        operations[size] = mask;
+        size++;
+      }
+    }
+    return new GroupPermissions(Arrays.copyOf(groups, size), Arrays.copyOf(operations, size));
+  }
+
+  public int size() {
+    return groups.length;
+  }
+
+  public int groupAt(final int index) {
+    return groups[index];
+  }
+
+  public int operationsAt(final int index) {
+    return operations[index];
+  }
+
+  /**
+   * @return the position of the group, or a negative number if there are no permissions for it.
+   */
+  public int indexOf(final int group) {
+    return Arrays.binarySearch(groups, group);
+  }
+
+  /**
+   * @return the operations allowed on the group, or 0 if there are no permissions for it.
+   */
+  public int operationsOf(final int group) {
+    final int index = indexOf(group);
+    return (index < 0) ? 0 : operations[index];
+  }
+
+  /**
+   * @return the groups present in both, each with the operations allowed by both.  Groups for which that leaves no
+   * operations are not included.
+   */
+  public GroupPermissions intersect(final GroupPermissions other) {
+    final int capacity = Math.min(groups.length, other.groups.length);
+    final int[] retGroups = new int[capacity];
+    final byte[] retOperations = new byte[capacity];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < groups.length && j < other.groups.length) {
+      if (groups[i] < other.groups[j]) {
+        i++;
+      }
+      else if (groups[i] > other.groups[j]) {
+        j++;
+      }
+      else {
+        final byte mask = (byte) (operations[i] & other.operations[j]);
+        if (mask != 0) {
+          retGroups[size] = groups[i];
+          retOperations[size] = mask;
+          size++;
+        }
+        i++;
+        j++;
+      }
+    }
+    return (size == 0) ? EMPTY : new GroupPermissions(Arrays.copyOf(retGroups, size), Arrays.copyOf(retOperations, size));
+  }
+
+  /**
+   * @return the permissions for those groups which match the filter.
+   */
+  public GroupPermissions retainGroups(final IntPredicate groupFilter) {
+    final int[] retGroups = new int[groups.length];
+    final byte[] retOperations = new byte[groups.length];
+    int size = 0;
+    for (int i = 0; i < groups.length; i++) {
+      if (groupFilter.test(groups[i])) {
+        retGroups[size] = groups[i];
+        retOperations[size] = operations[i];
+        size++;
+      }
+    }
+    return (size == groups.length) ? this
+        : (size == 0) ? EMPTY : new GroupPermissions(Arrays.copyOf(retGroups, size), Arrays.copyOf(retOperations, size));
+  }
+
+  /**
+   * @return the permissions with the identifiers of their groups, for storing.
+   */
+  public List<PermissionType> toPermissions(final GroupIdentifiers groupIdentifiers) {
+    final List<PermissionType> ret = new ArrayList<>(groups.length);
+    for (int i = 0; i < groups.length; i++)
+      ret.add(new PermissionType(groupIdentifiers.identifierOf(groups[i]), toAllowedOperations(operations[i])));
+    return ret;
+  }
+
+  public static int mask(final AllowedOperationType allowedOperation) {
+    return 1 << allowedOperation.ordinal();
+  }
+
+  public static int mask(final Set<AllowedOperationType> allowedOperations) {
+    if (allowedOperations == null)
+      return 0;
+    int ret = 0;
+    for (final AllowedOperationType allowedOperation : allowedOperations)
+      ret |= mask(allowedOperation);
+    return ret;
+  }
+
+  public static Set<AllowedOperationType> toAllowedOperations(final int mask) {
+    final Set<AllowedOperationType> ret = EnumSet.noneOf(AllowedOperationType.class);
+    for (final AllowedOperationType allowedOperation : OPERATION_TYPES) {
+      if ((mask & mask(allowedOperation)) != 0)
+        ret.add(allowedOperation);
+    }
+    return ret;
+  }
+}
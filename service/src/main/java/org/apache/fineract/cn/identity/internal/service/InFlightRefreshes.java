@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.fineract.cn.identity.internal.command.AuthenticationCommandResponse;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lets concurrent refreshes with the same refresh token share one result.  Browsers with several open tabs tend to
+ * refresh with the same token at the same moment.  The refresh token already contains the user, the source
+ * application and the call endpoint set, so the token itself, together with the tenant, is the key.
+ *
+ * Only refreshes which are in flight at the same time are coalesced.  Nothing is kept once the first of them has
+ * finished.
+ */
+@Component
+@ManagedResource(objectName = "org.apache.fineract.cn.identity:type=Token,name=InFlightRefreshes")
+public class InFlightRefreshes {
+  @FunctionalInterface
+  public interface Refresh {
+    AuthenticationCommandResponse get() throws InterruptedException;
+  }
+
+  private final ConcurrentMap<String, CompletableFuture<AuthenticationCommandResponse>> inFlight
+      = new ConcurrentHashMap<>();
+  private final LongAdder coalescedCount = new LongAdder();
+
+  public InFlightRefreshes() {
+  }
+
+  /**
+   * @param refresh called if no refresh with the same token is in flight in the current tenant.
+   * @return the result of the refresh, or of the one already in flight with the same token.
+   */
+  public AuthenticationCommandResponse refresh(final String refreshToken, final Refresh refresh)
+      throws InterruptedException {
+    final String key = TenantContextHolder.checkedGetIdentifier() + "\n" + refreshToken;
+    final CompletableFuture<AuthenticationCommandResponse> own = new CompletableFuture<>();
+    final CompletableFuture<AuthenticationCommandResponse> existing = inFlight.putIfAbsent(key, own);
+    if (existing != null) {
+      coalescedCount.increment();
+      return await(existing, refresh);
+    }
+
+    try {
+      final AuthenticationCommandResponse ret = refresh.get();
+      own.complete(ret);
+      return ret;
+    }
+    catch (final InterruptedException | RuntimeException e) {
+      own.completeExceptionally(e);
+      throw e;
+    }
+    finally {
+      inFlight.remove(key, own);
+    }
+  }
+
+  @ManagedAttribute(description = "Number of refreshes which used the result of an identical refresh in flight.")
+  public long getCoalescedCount() {
+    return coalescedCount.sum();
+  }
+
+  private static AuthenticationCommandResponse await(
+      final CompletableFuture<AuthenticationCommandResponse> existing,
+      final Refresh refresh) throws InterruptedException {
+    try {
+      return existing.get();
+    }
+    catch (final ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+
+      //The thread doing the refresh was interrupted.  That's no reason to fail this one.
+      return refresh.get();
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import com.datastax.driver.core.exceptions.PagingStateException;
+import java.util.function.BiFunction;
+import org.apache.fineract.cn.identity.internal.repository.EntityPage;
+import org.apache.fineract.cn.lang.ServiceException;
+
+/**
+ * Checks the page size and cursor of paged listings.
+ */
+final class Pages {
+  static final int MAX_PAGE_SIZE = 1000;
+
+  private Pages() {
+  }
+
+  static <T> EntityPage<T> read(final int pageSize,
+                                final String cursor,
+                                final BiFunction<Integer, String, EntityPage<T>> reader) {
+    if (pageSize < 1 || pageSize > MAX_PAGE_SIZE)
+      throw ServiceException.badRequest("The page size must be between 1 and " + MAX_PAGE_SIZE + ".");
+
+    try {
+      return reader.apply(pageSize, cursor);
+    }
+    catch (final PagingStateException e) {
+      throw ServiceException.badRequest("The cursor ''{0}'' isn''t valid for this listing and page size.", cursor);
+    }
+  }
+}
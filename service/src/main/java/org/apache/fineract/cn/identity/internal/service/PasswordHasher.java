@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PreDestroy;
+import org.apache.fineract.cn.crypto.HashGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Checks passwords on a dedicated pool of threads, so that a burst of logins can't occupy every request thread with
+ * key stretching.  The pool has a bounded queue.  When it's full, the check fails immediately with a
+ * {@link PasswordHashingRejectedException} instead of waiting.
+ */
+@Component
+@ManagedResource(objectName = "org.apache.fineract.cn.identity:type=Executor,name=PasswordHasher")
+public class PasswordHasher {
+  private final HashGenerator hashGenerator;
+  private final ThreadPoolExecutor executor;
+  private final LongAdder hashCount = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+  private final LongAdder queueWaitNanos = new LongAdder();
+  private final LongAdder hashNanos = new LongAdder();
+
+  @Autowired
+  public PasswordHasher(
+      final HashGenerator hashGenerator,
+      @Value("${identity.hashing.poolSize:0}") final int poolSize,
+      @Value("${identity.hashing.queueCapacity:100}") final int queueCapacity) {
+    this.hashGenerator = hashGenerator;
+
+    //A pool size of 0 means one thread per processor, since hashing is bound by cpu.
+    final int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+    this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), new HashingThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  /**
+   * Same as {@link HashGenerator#isEqual}, but run on the hashing pool.  Blocks until the hash has been compared.
+   *
+   * @throws PasswordHashingRejectedException if the hashing queue is full.
+   */
+  public boolean isEqual(final byte[] expectedHash,
+                         final byte[] password,
+                         final byte[] fixedSalt,
+                         final byte[] variableSalt,
+                         final int iterationCount,
+                         final int hashLength) {
+    try {
+      return isEqualAsync(expectedHash, password, fixedSalt, variableSalt, iterationCount, hashLength).join();
+    }
+    catch (final CompletionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw e;
+    }
+  }
+
+  /**
+   * Same as {@link #isEqual}, but doesn't wait for the result.
+   *
+   * @throws PasswordHashingRejectedException if the hashing queue is full.
+   */
+  public CompletableFuture<Boolean> isEqualAsync(final byte[] expectedHash,
+                                                 final byte[] password,
+                                                 final byte[] fixedSalt,
+                                                 final byte[] variableSalt,
+                                                 final int iterationCount,
+                                                 final int hashLength) {
+    final long submitted = System.nanoTime();
+    try {
+      return CompletableFuture.supplyAsync(() -> {
+        final long started = System.nanoTime();
+        queueWaitNanos.add(started - submitted);
+        try {
+          return hashGenerator.isEqual(expectedHash, password, fixedSalt, variableSalt, iterationCount, hashLength);
+        }
+        finally {
+          hashNanos.add(System.nanoTime() - started);
+          hashCount.increment();
+        }
+      }, executor);
+    }
+    catch (final RejectedExecutionException e) {
+      rejectedCount.increment();
+      throw new PasswordHashingRejectedException();
+    }
+  }
+
+  @ManagedAttribute(description = "Number of password checks waiting for a hashing thread.")
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  @ManagedAttribute(description = "Number of password checks completed.")
+  public long getHashCount() {
+    return hashCount.sum();
+  }
+
+  @ManagedAttribute(description = "Number of password checks rejected because the queue was full.")
+  public long getRejectedCount() {
+    return rejectedCount.sum();
+  }
+
+  @ManagedAttribute(description = "Total time in milliseconds password checks spent waiting for a hashing thread.")
+  public long getTotalQueueWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(queueWaitNanos.sum());
+  }
+
+  @ManagedAttribute(description = "Total time in milliseconds spent hashing passwords.")
+  public long getTotalHashMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(hashNanos.sum());
+  }
+
+  private static class HashingThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      final Thread ret = new Thread(runnable, "identity-password-hashing-" + threadCount.incrementAndGet());
+      ret.setDaemon(true);
+      return ret;
+    }
+  }
+}
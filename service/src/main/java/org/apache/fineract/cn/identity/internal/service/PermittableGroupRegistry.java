@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.fineract.cn.identity.internal.repository.PermittableGroupEntity;
+import org.apache.fineract.cn.identity.internal.repository.PermittableGroups;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * In memory copy of the permittable groups of each tenant.  Permittable groups can be created, but not changed or
+ * deleted, so the groups of a tenant are read once with a single query, and then only appended to.  Each snapshot is
+ * unmodifiable and is replaced as a whole when a group is added.
+ *
+ * A group which is not in the snapshot is looked up in cassandra, since it may have been created by another instance
+ * of this service.  That it wasn't found there is remembered until the snapshot changes, but at most for a minute, so
+ * that roles referring to groups which don't exist don't cause a read each time they are compiled, while groups
+ * created elsewhere are still found.  Listing all groups always reads them from cassandra, and replaces the snapshot
+ * with what was read.  The returned entities are shared, and must not be modified.
+ */
+@Component
+public class PermittableGroupRegistry {
+  private final PermittableGroups permittableGroups;
+  private final ConcurrentMap<String, Map<String, PermittableGroupEntity>> snapshots = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Misses> misses = new ConcurrentHashMap<>();
+
+  private static final long MISS_RETENTION_NANOS = TimeUnit.MINUTES.toNanos(1);
+  private static final int MAX_MISSES_PER_TENANT = 10_000;
+
+  /**
+   * The identifiers which weren't found in cassandra while the snapshot had the given generation, and when.
+   */
+  private static final class Misses {
+    private final long generation;
+    private final ConcurrentMap<String, Long> readAt = new ConcurrentHashMap<>();
+
+    private Misses(final long generation) {
+      this.generation = generation;
+    }
+  }
+
+  @Autowired
+  public PermittableGroupRegistry(final PermittableGroups permittableGroups) {
+    this.permittableGroups = permittableGroups;
+  }
+
+  public Optional<PermittableGroupEntity> get(final String identifier) {
+    final PermittableGroupEntity ret = getSnapshot().get(identifier);
+    if (ret != null)
+      return Optional.of(ret);
+
+    final String tenantIdentifier = TenantContextHolder.checkedGetIdentifier();
+    final long generation = getGeneration(tenantIdentifier).get();
+    if (isKnownMissing(tenantIdentifier, generation, identifier))
+      return Optional.empty();
+
+    final Optional<PermittableGroupEntity> stored = permittableGroups.get(identifier);
+    if (stored.isPresent())
+      add(stored.get());
+    else
+      addMissing(tenantIdentifier, generation, identifier);
+    return stored;
+  }
+
+  private boolean isKnownMissing(final String tenantIdentifier, final long generation, final String identifier) {
+    final Misses tenantMisses = misses.get(tenantIdentifier);
+    if (tenantMisses == null || tenantMisses.generation != generation)
+      return false;
+
+    final Long readAt = tenantMisses.readAt.get(identifier);
+    return readAt != null && System.nanoTime() - readAt < MISS_RETENTION_NANOS;
+  }
+
+  /**
+   * @param generation the generation before the group was looked up.  If a group was added since, the miss isn't
+   *                   kept, since it may have been that group.
+   */
+  private void addMissing(final String tenantIdentifier, final long generation, final String identifier) {
+    misses.compute(tenantIdentifier, (x, current) -> {
+      final Misses ret = (current == null || current.generation < generation) ? new Misses(generation) : current;
+      if (ret.generation == generation
+          && (ret.readAt.size() < MAX_MISSES_PER_TENANT || ret.readAt.containsKey(identifier)))
+        ret.readAt.put(identifier, System.nanoTime());
+      return ret;
+    });
+  }
+
+  /**
+   * Reads all groups of the tenant, including those created by other instances since the snapshot was taken.
+   */
+  public Collection<PermittableGroupEntity> getAll() {
+    final String tenantIdentifier = TenantContextHolder.checkedGetIdentifier();
+    final AtomicLong generation = getGeneration(tenantIdentifier);
+    final long generationBeforeLoad = generation.get();
+    final Map<String, PermittableGroupEntity> loaded = load();
+    //Groups which were missing may have been read now, so the misses are dropped along with the old snapshot.
+    if (generation.compareAndSet(generationBeforeLoad, generationBeforeLoad + 1)) {
+      snapshots.compute(tenantIdentifier,
+          (x, snapshot) -> (generation.get() == generationBeforeLoad + 1) ? loaded : snapshot);
+    }
+
+    return loaded.values();
+  }
+
+  /**
+   * Should be called after the group has been saved.
+   */
+  public void add(final PermittableGroupEntity permittableGroup) {
+    final String tenantIdentifier = TenantContextHolder.checkedGetIdentifier();
+    getGeneration(tenantIdentifier).incrementAndGet();
+    snapshots.computeIfPresent(tenantIdentifier, (x, snapshot) -> {
+      final Map<String, PermittableGroupEntity> ret = new LinkedHashMap<>(snapshot);
+      ret.put(permittableGroup.getIdentifier(), permittableGroup);
+      return Collections.unmodifiableMap(ret);
+    });
+  }
+
+  /**
+   * Drops the snapshot of the current tenant, so that it is read again on next use.
+   */
+  public void invalidate() {
+    final String tenantIdentifier = TenantContextHolder.checkedGetIdentifier();
+    getGeneration(tenantIdentifier).incrementAndGet();
+    snapshots.remove(tenantIdentifier);
+  }
+
+  private Map<String, PermittableGroupEntity> getSnapshot() {
+    final String tenantIdentifier = TenantContextHolder.checkedGetIdentifier();
+    final Map<String, PermittableGroupEntity> snapshot = snapshots.get(tenantIdentifier);
+    if (snapshot != null)
+      return snapshot;
+
+    final AtomicLong generation = getGeneration(tenantIdentifier);
+    final long generationBeforeLoad = generation.get();
+    final Map<String, PermittableGroupEntity> loaded = load();
+    final Map<String, PermittableGroupEntity> previous = snapshots.putIfAbsent(tenantIdentifier, loaded);
+    if (previous != null)
+      return previous;
+
+    //A group added while loading may be missing from what was read, so the snapshot is only kept if there was none.
+    if (generation.get() != generationBeforeLoad)
+      snapshots.remove(tenantIdentifier, loaded);
+
+    return loaded;
+  }
+
+  private Map<String, PermittableGroupEntity> load() {
+    final Map<String, PermittableGroupEntity> ret = new LinkedHashMap<>();
+    permittableGroups.getAll().forEach(x -> ret.put(x.getIdentifier(), x));
+    return Collections.unmodifiableMap(ret);
+  }
+
+  private AtomicLong getGeneration(final String tenantIdentifier) {
+    return generations.computeIfAbsent(tenantIdentifier, x -> new AtomicLong());
+  }
+}
@@ -24,7 +24,6 @@ import java.util.stream.Collectors;
 import org.apache.fineract.cn.anubis.api.v1.domain.PermittableEndpoint;
 import org.apache.fineract.cn.identity.api.v1.domain.PermittableGroup;
 import org.apache.fineract.cn.identity.internal.repository.PermittableGroupEntity;
-import org.apache.fineract.cn.identity.internal.repository.PermittableGroups;
 import org.apache.fineract.cn.identity.internal.repository.PermittableType;
 import org.springframework.stereotype.Service;
 
@@ -33,20 +32,20 @@ import org.springframework.stereotype.Service;
  */
 @Service
 public class PermittableGroupService {
-  private final PermittableGroups repository;
+  private final PermittableGroupRegistry registry;
 
-  public PermittableGroupService(final PermittableGroups repository) {
-    this.repository = repository;
+  public PermittableGroupService(final PermittableGroupRegistry registry) {
+    this.registry = registry;
   }
 
   public Optional<PermittableGroup> findByIdentifier(final String identifier) {
-    final Optional<PermittableGroupEntity> ret = repository.get(identifier);
+    final Optional<PermittableGroupEntity> ret = registry.get(identifier);
 
     return ret.map(this::mapPermittableGroup);
   }
 
   public List<PermittableGroup> findAll() {
-    return repository.getAll().stream()
+    return registry.getAll().stream()
             .map(this::mapPermittableGroup)
             .collect(Collectors.toList());
   }
@@ -19,6 +19,8 @@
 package org.apache.fineract.cn.identity.internal.service;
 
 import org.apache.fineract.cn.identity.api.v1.domain.Role;
+import org.apache.fineract.cn.identity.api.v1.domain.RolePage;
+import org.apache.fineract.cn.identity.internal.repository.EntityPage;
 import org.apache.fineract.cn.identity.internal.repository.RoleEntity;
 import org.apache.fineract.cn.identity.internal.repository.Roles;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,6 +28,7 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -48,6 +51,26 @@ public class RoleService {
         .collect(Collectors.toList());
   }
 
+  /**
+   * Unlike {@link #findAll}, doesn't sort the roles, since that would need all of them.
+   *
+   * @param cursor the next cursor of the previous page, or null for the first page.
+   */
+  public RolePage findPage(final int pageSize, final String cursor) {
+    final EntityPage<RoleEntity> page = Pages.read(pageSize, cursor, repository::getPage);
+    return new RolePage(
+        page.getElements().stream().map(this::mapEntity).collect(Collectors.toList()),
+        page.getNextCursor());
+  }
+
+  /**
+   * Passes every role to the action as it is read, without keeping them.  Unlike {@link #findAll}, doesn't sort the
+   * roles.
+   */
+  public void forEach(final Consumer<Role> action) {
+    repository.forEach(x -> action.accept(mapEntity(x)));
+  }
+
   private Role mapEntity(final RoleEntity roleEntity) {
     final Role ret = new Role();
     ret.setIdentifier(roleEntity.getIdentifier());
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import java.math.BigInteger;
+import java.security.PublicKey;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.apache.fineract.cn.anubis.api.v1.domain.Signature;
+import org.apache.fineract.cn.identity.internal.repository.ApplicationSignatures;
+import org.apache.fineract.cn.identity.internal.repository.Signatures;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.apache.fineract.cn.lang.security.RsaPublicKeyBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per tenant cache of the public keys of the identity manager and of the applications.  The key for a timestamp
+ * doesn't change once it has been stored, so entries are only dropped when the signature is deleted, or when the
+ * least recently used entries have to make room for new ones.  Keys which don't exist are not cached.
+ */
+@Component
+public class TenantPublicKeys {
+  public static class CachedPublicKey {
+    private final BigInteger publicKeyMod;
+    private final BigInteger publicKeyExp;
+    private final PublicKey publicKey;
+
+    private CachedPublicKey(final BigInteger publicKeyMod, final BigInteger publicKeyExp) {
+      this.publicKeyMod = publicKeyMod;
+      this.publicKeyExp = publicKeyExp;
+      this.publicKey = new RsaPublicKeyBuilder()
+          .setPublicKeyMod(publicKeyMod)
+          .setPublicKeyExp(publicKeyExp)
+          .build();
+    }
+
+    public PublicKey getPublicKey() {
+      return publicKey;
+    }
+
+    public Signature toSignature() {
+      return new Signature(publicKeyMod, publicKeyExp);
+    }
+  }
+
+  private static class TenantKeys {
+    private final Map<String, CachedPublicKey> keys;
+    private final AtomicLong generation = new AtomicLong();
+
+    private TenantKeys(final int maxEntries) {
+      this.keys = Collections.synchronizedMap(new LinkedHashMap<String, CachedPublicKey>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, CachedPublicKey> eldest) {
+          return size() > maxEntries;
+        }
+      });
+    }
+  }
+
+  private static final String IDENTITY_MANAGER_PREFIX = "identity\n";
+  private static final String APPLICATION_PREFIX = "application\n";
+
+  private final Signatures signatures;
+  private final ApplicationSignatures applicationSignatures;
+  private final int maxEntries;
+  private final ConcurrentMap<String, TenantKeys> tenantKeys = new ConcurrentHashMap<>();
+
+  @Autowired
+  public TenantPublicKeys(final Signatures signatures,
+                          final ApplicationSignatures applicationSignatures,
+                          @Value("${identity.publicKeys.maxEntriesPerTenant:1000}") final int maxEntries) {
+    this.signatures = signatures;
+    this.applicationSignatures = applicationSignatures;
+    this.maxEntries = maxEntries;
+  }
+
+  public Optional<CachedPublicKey> getIdentityManagerKey(final String keyTimestamp) {
+    return get(IDENTITY_MANAGER_PREFIX + keyTimestamp,
+        () -> signatures.getSignature(keyTimestamp)
+            .map(x -> new CachedPublicKey(x.getPublicKeyMod(), x.getPublicKeyExp())));
+  }
+
+  public Optional<CachedPublicKey> getApplicationKey(final String applicationIdentifier, final String keyTimestamp) {
+    return get(applicationKey(applicationIdentifier) + keyTimestamp,
+        () -> applicationSignatures.get(applicationIdentifier, keyTimestamp)
+            .map(x -> new CachedPublicKey(x.getPublicKeyMod(), x.getPublicKeyExp())));
+  }
+
+  public void evictIdentityManagerKey(final String keyTimestamp) {
+    final TenantKeys tenantEntry = getTenantEntry();
+    tenantEntry.generation.incrementAndGet();
+    tenantEntry.keys.remove(IDENTITY_MANAGER_PREFIX + keyTimestamp);
+  }
+
+  public void evictApplication(final String applicationIdentifier) {
+    final TenantKeys tenantEntry = getTenantEntry();
+    tenantEntry.generation.incrementAndGet();
+    final String prefix = applicationKey(applicationIdentifier);
+    synchronized (tenantEntry.keys) {
+      tenantEntry.keys.keySet().removeIf(x -> x.startsWith(prefix));
+    }
+  }
+
+  private Optional<CachedPublicKey> get(final String key, final Supplier<Optional<CachedPublicKey>> loader) {
+    final TenantKeys tenantEntry = getTenantEntry();
+    final CachedPublicKey cached = tenantEntry.keys.get(key);
+    if (cached != null)
+      return Optional.of(cached);
+
+    final long generation = tenantEntry.generation.get();
+    final Optional<CachedPublicKey> loaded = loader.get();
+    loaded.ifPresent(x -> {
+      tenantEntry.keys.put(key, x);
+      //A key which was deleted while it was being read must not stay in the cache.
+      if (tenantEntry.generation.get() != generation)
+        tenantEntry.keys.remove(key);
+    });
+    return loaded;
+  }
+
+  private static String applicationKey(final String applicationIdentifier) {
+    return APPLICATION_PREFIX + applicationIdentifier + "\n";
+  }
+
+  private TenantKeys getTenantEntry() {
+    return tenantKeys.computeIfAbsent(TenantContextHolder.checkedGetIdentifier(), x -> new TenantKeys(maxEntries));
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import java.security.PrivateKey;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.apache.fineract.cn.identity.internal.repository.PrivateSignatureEntity;
+import org.apache.fineract.cn.identity.internal.repository.PrivateTenantInfoEntity;
+import org.apache.fineract.cn.identity.internal.repository.Signatures;
+import org.apache.fineract.cn.identity.internal.repository.Tenants;
+import org.apache.fineract.cn.identity.internal.util.IdentityConstants;
+import org.apache.fineract.cn.lang.ServiceException;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.apache.fineract.cn.lang.security.RsaPrivateKeyBuilder;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the private tenant information and the current signing key of each tenant in memory, so that issuing a
+ * token doesn't require reading both from cassandra and rebuilding the private key every time.
+ *
+ * The context of a tenant is loaded on first use and reloaded whenever the signature sets of the tenant change.  Since
+ * they may also be changed through another instance, the timestamp of the current key is read again every few
+ * seconds, and the context is only reloaded if it differs.
+ */
+@Component
+public class TenantSecurityContexts {
+  public static class TenantSecurityContext {
+    private final PrivateTenantInfoEntity privateTenantInfo;
+    private final String keyTimestamp;
+    private final PrivateKey privateKey;
+
+    TenantSecurityContext(final PrivateTenantInfoEntity privateTenantInfo,
+                          final String keyTimestamp,
+                          final PrivateKey privateKey) {
+      this.privateTenantInfo = privateTenantInfo;
+      this.keyTimestamp = keyTimestamp;
+      this.privateKey = privateKey;
+    }
+
+    public PrivateTenantInfoEntity getPrivateTenantInfo() {
+      return privateTenantInfo;
+    }
+
+    public String getKeyTimestamp() {
+      return keyTimestamp;
+    }
+
+    public PrivateKey getPrivateKey() {
+      return privateKey;
+    }
+  }
+
+  private static class Entry {
+    private final TenantSecurityContext context;
+    private volatile long checkedAt;
+
+    private Entry(final TenantSecurityContext context, final long checkedAt) {
+      this.context = context;
+      this.checkedAt = checkedAt;
+    }
+  }
+
+  private static final long KEY_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private final Tenants tenants;
+  private final Signatures signatures;
+  private final Logger logger;
+  private final LongSupplier nanoTime;
+  private final ConcurrentMap<String, Entry> contexts = new ConcurrentHashMap<>();
+
+  @Autowired
+  public TenantSecurityContexts(final Tenants tenants,
+                                final Signatures signatures,
+                                @Qualifier(IdentityConstants.LOGGER_NAME) final Logger logger) {
+    this(tenants, signatures, logger, System::nanoTime);
+  }
+
+  TenantSecurityContexts(final Tenants tenants,
+                         final Signatures signatures,
+                         final Logger logger,
+                         final LongSupplier nanoTime) {
+    this.tenants = tenants;
+    this.signatures = signatures;
+    this.logger = logger;
+    this.nanoTime = nanoTime;
+  }
+
+  /**
+   * @return the security context of the current tenant.  Throws an internal error if the tenant is not initialized
+   * or has no valid signature.
+   */
+  public TenantSecurityContext get() {
+    final String tenantIdentifier = TenantContextHolder.checkedGetIdentifier();
+    final long now = nanoTime.getAsLong();
+    final Entry cached = contexts.get(tenantIdentifier);
+    if (cached != null) {
+      if (now - cached.checkedAt < KEY_CHECK_INTERVAL_NANOS)
+        return cached.context;
+
+      //Other callers keep using the cached context while it is checked.
+      cached.checkedAt = now;
+      final Optional<String> keyTimestamp = signatures.getMostRecentValidKeyTimestamp();
+      if (keyTimestamp.isPresent() && keyTimestamp.get().equals(cached.context.getKeyTimestamp()))
+        return cached.context;
+    }
+
+    final Entry loaded = new Entry(load(checkedGetPrivateTenantInfo(), checkedGetPrivateSignature()), now);
+    if (cached != null) {
+      contexts.replace(tenantIdentifier, cached, loaded);
+      return loaded.context;
+    }
+    final Entry previous = contexts.putIfAbsent(tenantIdentifier, loaded);
+    return (previous != null) ? previous.context : loaded.context;
+  }
+
+  /**
+   * Reloads the security context of the current tenant.  Should be called after the signature sets of the tenant
+   * have changed.
+   */
+  public void refresh() {
+    final String tenantIdentifier = TenantContextHolder.checkedGetIdentifier();
+    final Optional<PrivateTenantInfoEntity> privateTenantInfo = tenants.getPrivateTenantInfo();
+    final Optional<PrivateSignatureEntity> privateSignature = signatures.getPrivateSignature();
+    if (privateTenantInfo.isPresent() && privateSignature.isPresent())
+      contexts.put(tenantIdentifier,
+          new Entry(load(privateTenantInfo.get(), privateSignature.get()), nanoTime.getAsLong()));
+    else
+      contexts.remove(tenantIdentifier);
+  }
+
+  private TenantSecurityContext load(final PrivateTenantInfoEntity privateTenantInfo,
+                                     final PrivateSignatureEntity privateSignature) {
+    final PrivateKey privateKey = new RsaPrivateKeyBuilder()
+        .setPrivateKeyExp(privateSignature.getPrivateKeyExp())
+        .setPrivateKeyMod(privateSignature.getPrivateKeyMod())
+        .build();
+
+    return new TenantSecurityContext(privateTenantInfo, privateSignature.getKeyTimestamp(), privateKey);
+  }
+
+  private PrivateSignatureEntity checkedGetPrivateSignature() {
+    final Optional<PrivateSignatureEntity> privateSignature = signatures.getPrivateSignature();
+    if (!privateSignature.isPresent()) {
+      logger.error("Authentication attempted on tenant with no valid signature{}.", TenantContextHolder
+          .identifier());
+      throw ServiceException.internalError("Tenant has no valid signature.");
+    }
+    return privateSignature.get();
+  }
+
+  private PrivateTenantInfoEntity checkedGetPrivateTenantInfo() {
+    final Optional<PrivateTenantInfoEntity> privateTenantInfo = tenants.getPrivateTenantInfo();
+    if (!privateTenantInfo.isPresent()) {
+      logger.error("Authentication attempted on uninitialized tenant {}.", TenantContextHolder.identifier());
+      throw ServiceException.internalError("Tenant is not initialized.");
+    }
+    return privateTenantInfo.get();
+  }
+}
@@ -40,16 +40,21 @@ import org.springframework.stereotype.Service;
 @Service
 public class TenantService implements TenantSignatureRepository {
   private final Signatures signatures;
+  private final TenantSecurityContexts tenantSecurityContexts;
+  private final TenantPublicKeys tenantPublicKeys;
 
   @Autowired
-  TenantService(final Signatures signatures)
+  TenantService(final Signatures signatures,
+                final TenantSecurityContexts tenantSecurityContexts,
+                final TenantPublicKeys tenantPublicKeys)
   {
     this.signatures = signatures;
+    this.tenantSecurityContexts = tenantSecurityContexts;
+    this.tenantPublicKeys = tenantPublicKeys;
   }
 
   public Optional<Signature> getIdentityManagerSignature(final String keyTimestamp) {
-    final Optional<SignatureEntity> signature = signatures.getSignature(keyTimestamp);
-    return signature.map(x -> new Signature(x.getPublicKeyMod(), x.getPublicKeyExp()));
+    return tenantPublicKeys.getIdentityManagerKey(keyTimestamp).map(TenantPublicKeys.CachedPublicKey::toSignature);
   }
 
   @Override
@@ -59,24 +64,26 @@ public class TenantService implements TenantSignatureRepository {
 
   @Override
   public Optional<ApplicationSignatureSet> getSignatureSet(final String keyTimestamp) {
-    final Optional<SignatureEntity> signatureEntity = signatures.getSignature(keyTimestamp);
-    return signatureEntity.map(SignatureMapper::mapToApplicationSignatureSet);
+    return tenantPublicKeys.getIdentityManagerKey(keyTimestamp)
+            .map(x -> new ApplicationSignatureSet(keyTimestamp, x.toSignature(), x.toSignature()));
   }
 
   @Override
   public void deleteSignatureSet(final String keyTimestamp) {
     signatures.invalidateEntry(keyTimestamp);
+    tenantPublicKeys.evictIdentityManagerKey(keyTimestamp);
+    tenantSecurityContexts.refresh();
   }
 
   @Override
   public Optional<Signature> getApplicationSignature(final String keyTimestamp) {
-    final Optional<SignatureEntity> signatureEntity = signatures.getSignature(keyTimestamp);
-    return signatureEntity.map(x -> new Signature(x.getPublicKeyMod(), x.getPublicKeyExp()));
+    return tenantPublicKeys.getIdentityManagerKey(keyTimestamp).map(TenantPublicKeys.CachedPublicKey::toSignature);
   }
 
   public ApplicationSignatureSet createSignatureSet() {
     final RsaKeyPairFactory.KeyPairHolder keys = RsaKeyPairFactory.createKeyPair();
     final SignatureEntity signatureEntity = signatures.add(keys);
+    tenantSecurityContexts.refresh();
     return SignatureMapper.mapToApplicationSignatureSet(signatureEntity);
   }
 
@@ -106,7 +113,6 @@ public class TenantService implements TenantSignatureRepository {
   }
 
   private Optional<String> getMostRecentTimestamp() {
-    return getAllSignatureSetKeyTimestamps().stream()
-            .max(String::compareTo);
+    return signatures.getMostRecentValidKeyTimestamp();
   }
 }
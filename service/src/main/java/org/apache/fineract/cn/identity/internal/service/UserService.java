@@ -21,9 +21,9 @@ package org.apache.fineract.cn.identity.internal.service;
 import org.apache.fineract.cn.identity.api.v1.PermittableGroupIds;
 import org.apache.fineract.cn.identity.api.v1.domain.Permission;
 import org.apache.fineract.cn.identity.api.v1.domain.User;
+import org.apache.fineract.cn.identity.api.v1.domain.UserPage;
 import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
-import org.apache.fineract.cn.identity.internal.repository.PermissionType;
-import org.apache.fineract.cn.identity.internal.repository.RoleEntity;
+import org.apache.fineract.cn.identity.internal.repository.EntityPage;
 import org.apache.fineract.cn.identity.internal.repository.Roles;
 import org.apache.fineract.cn.identity.internal.repository.UserEntity;
 import org.apache.fineract.cn.identity.internal.repository.Users;
@@ -31,6 +31,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -41,18 +42,42 @@ public class UserService {
 
   private final Users users;
   private final Roles roles;
+  private final CompiledRolePermissions compiledRolePermissions;
+  private final GroupIdentifiers groupIdentifiers;
 
   @Autowired
-  UserService(final Users users, final Roles roles)
+  UserService(final Users users,
+              final Roles roles,
+              final CompiledRolePermissions compiledRolePermissions,
+              final GroupIdentifiers groupIdentifiers)
   {
     this.users = users;
     this.roles = roles;
+    this.compiledRolePermissions = compiledRolePermissions;
+    this.groupIdentifiers = groupIdentifiers;
   }
 
   public List<User> findAll() {
     return users.getAll().stream().map(UserService::mapUser).collect(Collectors.toList());
   }
 
+  /**
+   * @param cursor the next cursor of the previous page, or null for the first page.
+   */
+  public UserPage findPage(final int pageSize, final String cursor) {
+    final EntityPage<UserEntity> page = Pages.read(pageSize, cursor, users::getPage);
+    return new UserPage(
+        page.getElements().stream().map(UserService::mapUser).collect(Collectors.toList()),
+        page.getNextCursor());
+  }
+
+  /**
+   * Passes every user to the action as it is read, without keeping them.
+   */
+  public void forEach(final Consumer<User> action) {
+    users.forEach(x -> action.accept(mapUser(x)));
+  }
+
   public Optional<User> findByIdentifier(final String identifier)
   {
     return users.get(identifier).map(UserService::mapUser);
@@ -63,12 +88,20 @@ public class UserService {
   }
 
   public Set<Permission> getPermissions(final String userIdentifier) {
-    final Optional<UserEntity> userEntity = users.get(userIdentifier);
-    final Optional<RoleEntity> roleEntity = userEntity.map(UserEntity::getRole).map(roles::get).orElse(Optional.empty());
-    final List<PermissionType> permissionEntities = roleEntity.map(RoleEntity::getPermissions).orElse(Collections.emptyList());
-    final List<Permission> permissions = RoleMapper.mapPermissions(permissionEntities);
+    final GroupPermissions rolePermissions = users.get(userIdentifier)
+        .map(UserEntity::getRole)
+        .flatMap(role -> compiledRolePermissions.getGroupPermissions(role,
+            () -> roles.get(role).map(x -> GroupPermissions.of(x.getPermissions(), groupIdentifiers))))
+        .orElse(GroupPermissions.EMPTY);
+
+    final Set<Permission> permissions = new HashSet<>();
+    for (int i = 0; i < rolePermissions.size(); i++) {
+      permissions.add(new Permission(
+          groupIdentifiers.identifierOf(rolePermissions.groupAt(i)),
+          RoleMapper.mapAllowedOperations(GroupPermissions.toAllowedOperations(rolePermissions.operationsAt(i)))));
+    }
     permissions.add(new Permission(PermittableGroupIds.SELF_MANAGEMENT, AllowedOperation.ALL));
 
-    return new HashSet<>(permissions);
+    return permissions;
   }
 }
\ No newline at end of file
@@ -20,6 +20,7 @@ package org.apache.fineract.cn.identity.rest;
 
 
 import org.apache.fineract.cn.identity.api.v1.PermittableGroupIds;
+import org.apache.fineract.cn.identity.api.v1.domain.ApplicationPage;
 import org.apache.fineract.cn.identity.api.v1.domain.Permission;
 import org.apache.fineract.cn.anubis.annotation.AcceptedTokenType;
 import org.apache.fineract.cn.anubis.annotation.Permittable;
@@ -73,6 +74,18 @@ public class ApplicationRestController {
     return ResponseEntity.ok(service.getAllApplications());
   }
 
+  @RequestMapping(method = RequestMethod.GET,
+          params = "pageSize",
+          consumes = {MediaType.ALL_VALUE},
+          produces = {MediaType.APPLICATION_JSON_VALUE})
+  @Permittable(value = AcceptedTokenType.SYSTEM)
+  public @ResponseBody
+  ApplicationPage
+  findPage(@RequestParam("pageSize") final int pageSize,
+           @RequestParam(value = "cursor", required = false) final String cursor) {
+    return service.findPage(pageSize, cursor);
+  }
+
   @RequestMapping(value = "/{applicationidentifier}/signatures/{timestamp}", method = RequestMethod.PUT,
           consumes = {MediaType.ALL_VALUE},
           produces = {MediaType.APPLICATION_JSON_VALUE})
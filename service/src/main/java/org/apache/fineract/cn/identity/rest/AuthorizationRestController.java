@@ -31,12 +31,16 @@ import org.apache.fineract.cn.command.gateway.CommandGateway;
 import org.apache.fineract.cn.identity.internal.command.AuthenticationCommandResponse;
 import org.apache.fineract.cn.identity.internal.command.PasswordAuthenticationCommand;
 import org.apache.fineract.cn.identity.internal.command.RefreshTokenAuthenticationCommand;
+import org.apache.fineract.cn.identity.internal.service.AuthenticationService;
+import org.apache.fineract.cn.identity.internal.service.InFlightRefreshes;
+import org.apache.fineract.cn.identity.internal.service.PasswordHashingRejectedException;
 import org.apache.fineract.cn.identity.internal.util.IdentityConstants;
 import org.apache.fineract.cn.lang.ServiceException;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -58,6 +62,8 @@ import java.util.concurrent.ExecutionException;
 public class AuthorizationRestController {
 
   private final CommandGateway commandGateway;
+  private final AuthenticationService authenticationService;
+  private final InFlightRefreshes inFlightRefreshes;
   private final Logger logger;
 
   //Whether the cookie can only be transported via https.  Should only be set to false for testing.
@@ -65,12 +71,22 @@ public class AuthorizationRestController {
   private boolean secureRefreshTokenCookie;
   @Value("${server.contextPath}")
   private String contextPath;
+  //Whether authentication runs directly on the request thread, rather than through the command gateway.
+  @Value("${identity.token.directExecution:false}")
+  private boolean directExecution;
+  //Given in seconds.  Returned to callers whose password couldn't be checked because the hashing queue was full.
+  @Value("${identity.hashing.retryAfter:1}")
+  private int hashingRetryAfter;
 
   @Autowired public AuthorizationRestController(
           final CommandGateway commandGateway,
+          final AuthenticationService authenticationService,
+          final InFlightRefreshes inFlightRefreshes,
           @Qualifier(IdentityConstants.LOGGER_NAME) final Logger logger) {
     super();
     this.commandGateway = commandGateway;
+    this.authenticationService = authenticationService;
+    this.inFlightRefreshes = inFlightRefreshes;
     this.logger = logger;
   }
 
@@ -95,7 +111,8 @@ public class AuthorizationRestController {
 
         try {
           final AuthenticationCommandResponse authenticationCommandResponse
-                  = getAuthenticationCommandResponse(new RefreshTokenAuthenticationCommand(refreshToken));
+                  = inFlightRefreshes.refresh(refreshToken,
+                      () -> authenticate(new RefreshTokenAuthenticationCommand(refreshToken)));
           final Authentication ret = map(authenticationCommandResponse, response);
 
           return new ResponseEntity<>(ret, HttpStatus.OK);
@@ -112,7 +129,7 @@ public class AuthorizationRestController {
           throw ServiceException.badRequest("The query parameter password must be set if the grant_type is password.");
 
         try {
-          final Authentication ret = map(getAuthenticationCommandResponse(
+          final Authentication ret = map(authenticate(
               new PasswordAuthenticationCommand(username, password)), response);
           return new ResponseEntity<>(ret, HttpStatus.OK);
         }
@@ -120,6 +137,13 @@ public class AuthorizationRestController {
         {
           return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
+        catch (final PasswordHashingRejectedException e)
+        {
+          logger.warn("Login for user '{}' rejected because the password hashing queue is full.", username);
+          return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                  .header(HttpHeaders.RETRY_AFTER, String.valueOf(hashingRetryAfter))
+                  .build();
+        }
 
       }
       default:
@@ -151,6 +175,22 @@ public class AuthorizationRestController {
     return refreshTokenCookie.getValue();
   }
 
+  private AuthenticationCommandResponse authenticate(
+      final PasswordAuthenticationCommand authenticationCommand) throws AmitAuthenticationException, InterruptedException {
+    if (directExecution)
+      return authenticationService.authenticate(authenticationCommand);
+    else
+      return getAuthenticationCommandResponse(authenticationCommand);
+  }
+
+  private AuthenticationCommandResponse authenticate(
+      final RefreshTokenAuthenticationCommand authenticationCommand) throws AmitAuthenticationException, InterruptedException {
+    if (directExecution)
+      return authenticationService.authenticate(authenticationCommand);
+    else
+      return getAuthenticationCommandResponse(authenticationCommand);
+  }
+
   private AuthenticationCommandResponse getAuthenticationCommandResponse(
       final Object authenticationCommand) throws AmitAuthenticationException, InterruptedException {
     try
@@ -168,11 +208,17 @@ public class AuthorizationRestController {
         logger.debug("Authentication failed.", e);
         throw AmitAuthenticationException.class.cast(e.getCause());
       }
+      else if (PasswordHashingRejectedException.class.isAssignableFrom(e.getCause().getClass()))
+      {
+        throw (PasswordHashingRejectedException)e.getCause();
+      }
       else if (CommandProcessingException.class.isAssignableFrom(e.getCause().getClass()))
       {
         final CommandProcessingException commandProcessingException = (CommandProcessingException) e.getCause();
         if (ServiceException.class.isAssignableFrom(commandProcessingException.getCause().getClass()))
           throw (ServiceException)commandProcessingException.getCause();
+        else if (PasswordHashingRejectedException.class.isAssignableFrom(commandProcessingException.getCause().getClass()))
+          throw (PasswordHashingRejectedException)commandProcessingException.getCause();
         else {
           logger.error("Authentication failed with an unexpected error.", e);
           throw ServiceException.internalError("An error occurred while attempting to authenticate a user.");
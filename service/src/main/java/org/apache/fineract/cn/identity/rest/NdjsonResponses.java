@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.rest;
+
+import com.google.gson.Gson;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Writes listings as newline delimited JSON, one element per line, as the elements are read.  Only the writer's
+ * buffer is held, so the memory needed doesn't depend on the size of the listing.  If reading fails after the first
+ * elements were sent, the response is cut off; the client can tell, since the last line is then incomplete or
+ * missing.
+ */
+final class NdjsonResponses {
+  static final String MEDIA_TYPE = "application/x-ndjson";
+
+  private NdjsonResponses() {
+  }
+
+  /**
+   * @param source passes each element of the listing to the consumer it is given.
+   */
+  static <T> void write(final HttpServletResponse response,
+                        final Gson gson,
+                        final Consumer<Consumer<T>> source) throws IOException {
+    response.setContentType(MEDIA_TYPE);
+    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+    final Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+    try {
+      source.accept(element -> {
+        try {
+          gson.toJson(element, writer);
+          writer.write('\n');
+        }
+        catch (final IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+    catch (final UncheckedIOException e) {
+      throw e.getCause();
+    }
+    writer.flush();
+  }
+}
@@ -18,10 +18,14 @@
  */
 package org.apache.fineract.cn.identity.rest;
 
+import com.google.gson.Gson;
 import org.apache.fineract.cn.identity.api.v1.PermittableGroupIds;
 import org.apache.fineract.cn.identity.api.v1.domain.Role;
+import org.apache.fineract.cn.identity.api.v1.domain.RolePage;
 import org.apache.fineract.cn.identity.api.v1.validation.CheckRoleChangeable;
+import java.io.IOException;
 import java.util.List;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import org.apache.fineract.cn.anubis.annotation.AcceptedTokenType;
 import org.apache.fineract.cn.anubis.annotation.Permittable;
@@ -30,8 +34,10 @@ import org.apache.fineract.cn.identity.internal.command.ChangeRoleCommand;
 import org.apache.fineract.cn.identity.internal.command.CreateRoleCommand;
 import org.apache.fineract.cn.identity.internal.command.DeleteRoleCommand;
 import org.apache.fineract.cn.identity.internal.service.RoleService;
+import org.apache.fineract.cn.identity.internal.util.IdentityConstants;
 import org.apache.fineract.cn.lang.ServiceException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -39,6 +45,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -53,13 +60,16 @@ public class RoleRestController
 {
   private final RoleService service;
   private final CommandGateway commandGateway;
+  private final Gson gson;
 
   @Autowired public RoleRestController(
       final CommandGateway commandGateway,
-      final RoleService service)
+      final RoleService service,
+      @Qualifier(IdentityConstants.JSON_SERIALIZER_NAME) final Gson gson)
   {
     this.commandGateway = commandGateway;
     this.service = service;
+    this.gson = gson;
   }
 
   @RequestMapping(method = RequestMethod.POST,
@@ -79,7 +89,9 @@ public class RoleRestController
     return new ResponseEntity<>(HttpStatus.ACCEPTED);
   }
 
+  //The params condition makes this, rather than the stream, the better match for requests accepting anything.
   @RequestMapping(method = RequestMethod.GET,
+      params = "!pageSize",
       consumes = {MediaType.ALL_VALUE},
       produces = {MediaType.APPLICATION_JSON_VALUE})
   @Permittable(value = AcceptedTokenType.TENANT, groupId = PermittableGroupIds.ROLE_MANAGEMENT)
@@ -87,6 +99,25 @@ public class RoleRestController
     return service.findAll();
   }
 
+  @RequestMapping(method = RequestMethod.GET,
+      consumes = {MediaType.ALL_VALUE},
+      produces = {NdjsonResponses.MEDIA_TYPE})
+  @Permittable(value = AcceptedTokenType.TENANT, groupId = PermittableGroupIds.ROLE_MANAGEMENT)
+  public void stream(final HttpServletResponse response) throws IOException {
+    NdjsonResponses.<Role>write(response, gson, service::forEach);
+  }
+
+  @RequestMapping(method = RequestMethod.GET,
+      params = "pageSize",
+      consumes = {MediaType.ALL_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE})
+  @Permittable(value = AcceptedTokenType.TENANT, groupId = PermittableGroupIds.ROLE_MANAGEMENT)
+  public @ResponseBody RolePage findPage(
+      @RequestParam("pageSize") final int pageSize,
+      @RequestParam(value = "cursor", required = false) final String cursor) {
+    return service.findPage(pageSize, cursor);
+  }
+
   @RequestMapping(value= PathConstants.IDENTIFIER_RESOURCE_STRING, method = RequestMethod.GET,
       consumes = {MediaType.ALL_VALUE},
       produces = {MediaType.APPLICATION_JSON_VALUE})
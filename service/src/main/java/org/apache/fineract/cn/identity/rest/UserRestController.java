@@ -18,6 +18,7 @@
  */
 package org.apache.fineract.cn.identity.rest;
 
+import com.google.gson.Gson;
 import org.apache.fineract.cn.identity.api.v1.PermittableGroupIds;
 import org.apache.fineract.cn.anubis.annotation.AcceptedTokenType;
 import org.apache.fineract.cn.anubis.annotation.Permittable;
@@ -27,6 +28,7 @@ import org.apache.fineract.cn.identity.api.v1.domain.Password;
 import org.apache.fineract.cn.identity.api.v1.domain.Permission;
 import org.apache.fineract.cn.identity.api.v1.domain.RoleIdentifier;
 import org.apache.fineract.cn.identity.api.v1.domain.User;
+import org.apache.fineract.cn.identity.api.v1.domain.UserPage;
 import org.apache.fineract.cn.identity.api.v1.domain.UserWithPassword;
 import org.apache.fineract.cn.identity.internal.command.ChangeUserPasswordCommand;
 import org.apache.fineract.cn.identity.internal.command.ChangeUserRoleCommand;
@@ -35,12 +37,15 @@ import org.apache.fineract.cn.identity.internal.service.UserService;
 import org.apache.fineract.cn.identity.internal.util.IdentityConstants;
 import org.apache.fineract.cn.lang.ServiceException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.util.List;
 import java.util.Set;
 
@@ -55,16 +60,21 @@ import java.util.Set;
 public class UserRestController {
   private final UserService service;
   private final CommandGateway commandGateway;
+  private final Gson gson;
 
   @Autowired
   public UserRestController(
           final CommandGateway commandGateway,
-          final UserService service) {
+          final UserService service,
+          @Qualifier(IdentityConstants.JSON_SERIALIZER_NAME) final Gson gson) {
     this.commandGateway = commandGateway;
     this.service = service;
+    this.gson = gson;
   }
 
+  //The params condition makes this, rather than the stream, the better match for requests accepting anything.
   @RequestMapping(method = RequestMethod.GET,
+      params = "!pageSize",
       consumes = {MediaType.ALL_VALUE},
       produces = {MediaType.APPLICATION_JSON_VALUE})
   @Permittable(value = AcceptedTokenType.TENANT, groupId = PermittableGroupIds.IDENTITY_MANAGEMENT)
@@ -72,6 +82,25 @@ public class UserRestController {
     return this.service.findAll();
   }
 
+  @RequestMapping(method = RequestMethod.GET,
+      consumes = {MediaType.ALL_VALUE},
+      produces = {NdjsonResponses.MEDIA_TYPE})
+  @Permittable(value = AcceptedTokenType.TENANT, groupId = PermittableGroupIds.IDENTITY_MANAGEMENT)
+  public void stream(final HttpServletResponse response) throws IOException {
+    NdjsonResponses.<User>write(response, gson, this.service::forEach);
+  }
+
+  @RequestMapping(method = RequestMethod.GET,
+      params = "pageSize",
+      consumes = {MediaType.ALL_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE})
+  @Permittable(value = AcceptedTokenType.TENANT, groupId = PermittableGroupIds.IDENTITY_MANAGEMENT)
+  public @ResponseBody UserPage findPage(
+      @RequestParam("pageSize") final int pageSize,
+      @RequestParam(value = "cursor", required = false) final String cursor) {
+    return this.service.findPage(pageSize, cursor);
+  }
+
   @RequestMapping(method = RequestMethod.POST,
           consumes = {MediaType.APPLICATION_JSON_VALUE},
           produces = {MediaType.APPLICATION_JSON_VALUE})
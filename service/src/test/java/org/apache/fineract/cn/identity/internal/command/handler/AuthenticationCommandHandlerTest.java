@@ -18,8 +18,10 @@
  */
 package org.apache.fineract.cn.identity.internal.command.handler;
 
+import com.google.common.collect.Sets;
 import com.google.gson.Gson;
-import org.apache.fineract.cn.anubis.provider.TenantRsaKeyProvider;
+import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
 import org.apache.fineract.cn.anubis.token.TenantAccessTokenSerializer;
 import org.apache.fineract.cn.anubis.token.TenantRefreshTokenSerializer;
 import org.apache.fineract.cn.anubis.token.TokenDeserializationResult;
@@ -29,11 +31,11 @@ import org.apache.fineract.cn.crypto.SaltGenerator;
 import org.apache.fineract.cn.identity.internal.command.AuthenticationCommandResponse;
 import org.apache.fineract.cn.identity.internal.command.PasswordAuthenticationCommand;
 import org.apache.fineract.cn.identity.internal.command.RefreshTokenAuthenticationCommand;
-import org.apache.fineract.cn.identity.internal.repository.AllowedOperationType;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationCallEndpointSets;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissionUsers;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationPermissions;
 import org.apache.fineract.cn.identity.internal.repository.ApplicationSignatures;
+import org.apache.fineract.cn.identity.internal.repository.CompiledRoles;
 import org.apache.fineract.cn.identity.internal.repository.PermissionType;
 import org.apache.fineract.cn.identity.internal.repository.PermittableGroups;
 import org.apache.fineract.cn.identity.internal.repository.PrivateSignatureEntity;
@@ -42,10 +44,22 @@ import org.apache.fineract.cn.identity.internal.repository.RoleEntity;
 import org.apache.fineract.cn.identity.internal.repository.Roles;
 import org.apache.fineract.cn.identity.internal.repository.Signatures;
 import org.apache.fineract.cn.identity.internal.repository.Tenants;
+import org.apache.fineract.cn.identity.internal.repository.UserApplicationPermissions;
 import org.apache.fineract.cn.identity.internal.repository.UserEntity;
 import org.apache.fineract.cn.identity.internal.repository.Users;
+import org.apache.fineract.cn.identity.internal.service.AccessTokenCache;
+import org.apache.fineract.cn.identity.internal.service.ApplicationAuthorizations;
+import org.apache.fineract.cn.identity.internal.service.AuthenticationEventPublisher;
+import org.apache.fineract.cn.identity.internal.service.CompiledRolePermissions;
+import org.apache.fineract.cn.identity.internal.service.FailedLoginTracker;
+import org.apache.fineract.cn.identity.internal.service.GroupIdentifiers;
+import org.apache.fineract.cn.identity.internal.service.PasswordHasher;
+import org.apache.fineract.cn.identity.internal.service.PermittableGroupRegistry;
+import org.apache.fineract.cn.identity.internal.service.TenantPublicKeys;
+import org.apache.fineract.cn.identity.internal.service.TenantSecurityContexts;
 import org.apache.fineract.cn.lang.ApplicationName;
 import org.apache.fineract.cn.lang.DateConverter;
+import org.apache.fineract.cn.lang.TenantContextHolder;
 import org.apache.fineract.cn.lang.security.RsaKeyPairFactory;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -62,8 +76,8 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static org.mockito.Matchers.*;
 import static org.mockito.Mockito.when;
@@ -80,11 +94,13 @@ public class AuthenticationCommandHandlerTest {
   private static final long ACCESS_TOKEN_TIME_TO_LIVE = 20;
   private static final long REFRESH_TOKEN_TIME_TO_LIVE = 40;
   private static final int GRACE_PERIOD = 2;
+  private static final String TENANT_NAME = "test-tenant";
   private static AuthenticationCommandHandler commandHandler;
 
   @BeforeClass()
   static public void setup()
   {
+    TenantContextHolder.setIdentifier(TENANT_NAME);
     RsaKeyPairFactory.KeyPairHolder keyPair = RsaKeyPairFactory.createKeyPair();
 
     final Users users = Mockito.mock(Users.class);
@@ -101,19 +117,32 @@ public class AuthenticationCommandHandlerTest {
     final ApplicationName applicationName = Mockito.mock(ApplicationName.class);
     final Gson gson = new Gson();
     final Logger logger = Mockito.mock(Logger.class);
-    final TenantRsaKeyProvider tenantRsaKeyProvider = Mockito.mock(TenantRsaKeyProvider.class);
     final ApplicationSignatures applicationSignatures = Mockito.mock(ApplicationSignatures.class);
     final ApplicationPermissions applicationPermissions = Mockito.mock(ApplicationPermissions.class);
     final ApplicationPermissionUsers applicationPermissionUsers = Mockito.mock(ApplicationPermissionUsers.class);
     final ApplicationCallEndpointSets applicationCallEndpointSets = Mockito.mock(ApplicationCallEndpointSets.class);
+    final CompiledRoles compiledRoles = Mockito.mock(CompiledRoles.class);
+    final UserApplicationPermissions userApplicationPermissions = Mockito.mock(UserApplicationPermissions.class);
+    final GroupIdentifiers groupIdentifiers = new GroupIdentifiers();
+    final ApplicationAuthorizations applicationAuthorizations = new ApplicationAuthorizations(
+        applicationPermissions, applicationPermissionUsers, applicationCallEndpointSets, groupIdentifiers);
+    final TenantSecurityContexts tenantSecurityContexts = new TenantSecurityContexts(tenants, signatures, logger);
 
     commandHandler = new AuthenticationCommandHandler(
-        users, roles, permittableGroups, signatures, tenants,
-        hashGenerator,
-        tenantAccessTokenSerializer, tenantRefreshTokenSerializer, tenantRsaKeyProvider,
-            applicationSignatures, applicationPermissions, applicationPermissionUsers, applicationCallEndpointSets,
-        jmsTemplate, applicationName,
-        gson, logger);
+        users, roles,
+        new TokenPermissionCompiler(
+            new PermittableGroupRegistry(permittableGroups), groupIdentifiers, roles, compiledRoles, applicationName),
+        compiledRoles, userApplicationPermissions, new CompiledRolePermissions(30), groupIdentifiers,
+        new AccessTokenCache(false, 0.5, 1000),
+        tenantSecurityContexts,
+        new PasswordHasher(hashGenerator, 1, 10),
+        new FailedLoginTracker(10, 300, 1000),
+        tenantAccessTokenSerializer, tenantRefreshTokenSerializer,
+        new TenantPublicKeys(signatures, applicationSignatures, 100), applicationAuthorizations,
+        new AuthenticationEventPublisher(jmsTemplate, gson, logger, 100, 10,
+            AuthenticationEventPublisher.OverflowPolicy.DROP_OLDEST),
+        applicationName,
+        logger);
 
     final PrivateTenantInfoEntity privateTenantInfoEntity = new PrivateTenantInfoEntity();
     privateTenantInfoEntity.setFixedSalt(ByteBuffer.wrap(new SaltGenerator().createRandomSalt()));
@@ -135,10 +164,13 @@ public class AuthenticationCommandHandlerTest {
     userEntity.setPasswordExpiresOn(dataStaxNow());
 
     when(users.get(USER_NAME)).thenReturn(Optional.of(userEntity));
+    when(users.getAsync(USER_NAME)).thenReturn(CompletableFuture.completedFuture(Optional.of(userEntity)));
 
     final List<PermissionType> permissionsList = new ArrayList<>();
     final RoleEntity roleEntity = new RoleEntity(ROLE, permissionsList);
     when(roles.get(ROLE)).thenReturn(Optional.of(roleEntity));
+    when(compiledRoles.get(anyString())).thenReturn(Optional.empty());
+    when(userApplicationPermissions.get(anyString(), anyString())).thenReturn(Optional.empty());
 
     when(applicationName.toString()).thenReturn(TEST_APPLICATION_NAME);
 
@@ -239,44 +271,19 @@ public class AuthenticationCommandHandlerTest {
   }
 
   @Test
-  public void intersectSets() {
-    final Set<AllowedOperationType> intersectionWithNull
-            = AuthenticationCommandHandler.intersectSets(new HashSet<>(), null);
-    Assert.assertTrue(intersectionWithNull.isEmpty());
-
-    final Set<AllowedOperationType> intersectionWithEqualSet
-            = AuthenticationCommandHandler.intersectSets(Collections.singleton(AllowedOperationType.CHANGE),
-            Collections.singleton(AllowedOperationType.CHANGE));
-    Assert.assertEquals(Collections.singleton(AllowedOperationType.CHANGE), intersectionWithEqualSet);
-
-    final Set<AllowedOperationType> intersectionWithAll
-            = AuthenticationCommandHandler.intersectSets(AllowedOperationType.ALL,
-            AllowedOperationType.ALL);
-    Assert.assertEquals(AllowedOperationType.ALL, intersectionWithAll);
-
-    final Set<AllowedOperationType> intersectionWithNonOverlappingSet
-            = AuthenticationCommandHandler.intersectSets(Collections.singleton(AllowedOperationType.DELETE),
-            Collections.singleton(AllowedOperationType.CHANGE));
-    Assert.assertTrue(intersectionWithNonOverlappingSet.isEmpty());
-
-    final Set<AllowedOperationType> intersectionWithSubSet
-            = AuthenticationCommandHandler.intersectSets(AllowedOperationType.ALL,
-            Collections.singleton(AllowedOperationType.CHANGE));
-    Assert.assertEquals(Collections.singleton(AllowedOperationType.CHANGE), intersectionWithSubSet);
-
-    final Set<AllowedOperationType> intersectionWithPartiallyOverlapping = AuthenticationCommandHandler.intersectSets(
-            Stream.of(AllowedOperationType.CHANGE, AllowedOperationType.DELETE).collect(Collectors.toSet()),
-            Stream.of(AllowedOperationType.CHANGE, AllowedOperationType.READ).collect(Collectors.toSet()));
-    Assert.assertEquals(Collections.singleton(AllowedOperationType.CHANGE), intersectionWithPartiallyOverlapping);
-  }
-
-  @Test
-  public void transformToSearchablePermissions()
+  public void minify()
   {
-    Map<String, Set<AllowedOperationType>> x = AuthenticationCommandHandler.transformToSearchablePermissions(Arrays.asList(
-            new PermissionType("x", new HashSet<>(AllowedOperationType.ALL)),
-            new PermissionType("y", new HashSet<>(Collections.singletonList(AllowedOperationType.CHANGE)))));
-
-    Assert.assertEquals(AllowedOperationType.ALL, x.get("x"));
+    final TokenPermission readUsers = new TokenPermission("x/users", Sets.newHashSet(AllowedOperation.READ));
+    final TokenPermission changeUsers = new TokenPermission("x/users", Sets.newHashSet(AllowedOperation.CHANGE));
+    final TokenPermission readRoles = new TokenPermission("x/roles", Sets.newHashSet(AllowedOperation.READ));
+
+    final Set<TokenPermission> minified = AuthenticationCommandHandler.minify(Arrays.asList(readUsers, changeUsers, readRoles));
+
+    final Map<String, Set<AllowedOperation>> minifiedByPath = minified.stream()
+            .collect(Collectors.toMap(TokenPermission::getPath, TokenPermission::getAllowedOperations));
+    Assert.assertEquals(2, minifiedByPath.size());
+    Assert.assertEquals(Sets.newHashSet(AllowedOperation.READ, AllowedOperation.CHANGE), minifiedByPath.get("x/users"));
+    Assert.assertEquals(Sets.newHashSet(AllowedOperation.READ), minifiedByPath.get("x/roles"));
+    Assert.assertEquals("Inputs should not be modified.", Sets.newHashSet(AllowedOperation.READ), readUsers.getAllowedOperations());
   }
 }
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.command.handler;
+
+import com.google.common.collect.Sets;
+import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class TokenPermissionCompactorTest {
+  private static final String USER = "u";
+  private static final String[] PERMISSION_SEGMENTS = {"a", "b", "*", "{useridentifier}"};
+  private static final String[] REQUEST_SEGMENTS = {"a", "b", "c", USER};
+
+  @Test
+  public void pathsUnderWildcardWithAllOperationsAreRemoved()
+  {
+    final TokenPermission users = new TokenPermission("identity-v1/users/*",
+            Sets.newHashSet(AllowedOperation.READ, AllowedOperation.CHANGE, AllowedOperation.DELETE));
+    final TokenPermission password = new TokenPermission("identity-v1/users/{useridentifier}/password",
+            Sets.newHashSet(AllowedOperation.READ, AllowedOperation.CHANGE, AllowedOperation.DELETE));
+    final TokenPermission roles = new TokenPermission("identity-v1/roles",
+            Sets.newHashSet(AllowedOperation.READ));
+
+    final List<TokenPermission> compacted = TokenPermissionCompactor.compact(Arrays.asList(users, password, roles));
+
+    Assert.assertEquals(Sets.newHashSet("identity-v1/users/*", "identity-v1/roles"), paths(compacted));
+  }
+
+  @Test
+  public void pathsUnderWildcardWithFewerOperationsAreKept()
+  {
+    final TokenPermission users = new TokenPermission("identity-v1/users/*",
+            Sets.newHashSet(AllowedOperation.READ));
+    final TokenPermission password = new TokenPermission("identity-v1/users/{useridentifier}/password",
+            Sets.newHashSet(AllowedOperation.READ, AllowedOperation.CHANGE));
+
+    final List<TokenPermission> compacted = TokenPermissionCompactor.compact(Arrays.asList(users, password));
+
+    Assert.assertEquals(Sets.newHashSet("identity-v1/users/*", "identity-v1/users/{useridentifier}/password"),
+            paths(compacted));
+  }
+
+  @Test
+  public void operationsMayBeCoveredByDifferentWildcards()
+  {
+    final TokenPermission readAnything = new TokenPermission("x/*/y", Sets.newHashSet(AllowedOperation.READ));
+    final TokenPermission changeUsers = new TokenPermission("x/users/*", Sets.newHashSet(AllowedOperation.CHANGE));
+    final TokenPermission users = new TokenPermission("x/users/y",
+            Sets.newHashSet(AllowedOperation.READ, AllowedOperation.CHANGE));
+
+    final List<TokenPermission> compacted
+            = TokenPermissionCompactor.compact(Arrays.asList(readAnything, changeUsers, users));
+
+    Assert.assertEquals(Sets.newHashSet("x/*/y", "x/users/*"), paths(compacted));
+  }
+
+  @Test
+  public void wildcardOnlyCoversTrailingSegmentsAtTheEnd()
+  {
+    final TokenPermission inner = new TokenPermission("x/*/y", EnumSet.allOf(AllowedOperation.class));
+    final TokenPermission longer = new TokenPermission("x/a/y/z", EnumSet.allOf(AllowedOperation.class));
+
+    final List<TokenPermission> compacted = TokenPermissionCompactor.compact(Arrays.asList(inner, longer));
+
+    Assert.assertEquals(Sets.newHashSet("x/*/y", "x/a/y/z"), paths(compacted));
+  }
+
+  @Test
+  public void effectivePermissionsAreUnchanged()
+  {
+    final Random random = new Random(20160915L);
+    final List<List<String>> requests = allRequests(4);
+    int removed = 0;
+
+    for (int i = 0; i < 2000; i++) {
+      final List<TokenPermission> tokenPermissions = randomTokenPermissions(random);
+      final List<TokenPermission> compacted = TokenPermissionCompactor.compact(tokenPermissions);
+      removed += tokenPermissions.size() - compacted.size();
+
+      Assert.assertTrue(tokenPermissions.containsAll(compacted));
+      for (final List<String> request : requests) {
+        for (final AllowedOperation operation : AllowedOperation.values()) {
+          Assert.assertEquals("Request " + request + " " + operation + " against " + tokenPermissions,
+                  isAllowed(tokenPermissions, request, operation),
+                  isAllowed(compacted, request, operation));
+        }
+      }
+    }
+
+    Assert.assertTrue("The generated permission sets should exercise compaction.", removed > 0);
+  }
+
+  @Test
+  public void compactionIsIdempotent()
+  {
+    final Random random = new Random(20161107L);
+    for (int i = 0; i < 500; i++) {
+      final List<TokenPermission> compacted = TokenPermissionCompactor.compact(randomTokenPermissions(random));
+      Assert.assertEquals(new HashSet<>(compacted), new HashSet<>(TokenPermissionCompactor.compact(compacted)));
+    }
+  }
+
+  private static Set<String> paths(final Collection<TokenPermission> tokenPermissions) {
+    return tokenPermissions.stream().map(TokenPermission::getPath).collect(Collectors.toSet());
+  }
+
+  private static List<TokenPermission> randomTokenPermissions(final Random random) {
+    final Map<String, Set<AllowedOperation>> byPath = new HashMap<>();
+    final int count = 1 + random.nextInt(8);
+    for (int i = 0; i < count; i++) {
+      final int length = 1 + random.nextInt(4);
+      final StringBuilder path = new StringBuilder();
+      for (int j = 0; j < length; j++) {
+        if (j > 0)
+          path.append('/');
+        path.append(PERMISSION_SEGMENTS[random.nextInt(PERMISSION_SEGMENTS.length)]);
+      }
+      final Set<AllowedOperation> allowedOperations = EnumSet.noneOf(AllowedOperation.class);
+      for (final AllowedOperation operation : AllowedOperation.values()) {
+        if (random.nextBoolean())
+          allowedOperations.add(operation);
+      }
+      byPath.computeIfAbsent(path.toString(), x -> EnumSet.noneOf(AllowedOperation.class)).addAll(allowedOperations);
+    }
+    return byPath.entrySet().stream()
+            .map(x -> new TokenPermission(x.getKey(), x.getValue()))
+            .collect(Collectors.toList());
+  }
+
+  private static List<List<String>> allRequests(final int maxLength) {
+    final List<List<String>> ret = new ArrayList<>();
+    List<List<String>> previous = Collections.singletonList(Collections.emptyList());
+    for (int length = 1; length <= maxLength; length++) {
+      final List<List<String>> current = new ArrayList<>();
+      for (final List<String> prefix : previous) {
+        for (final String segment : REQUEST_SEGMENTS) {
+          final List<String> request = new ArrayList<>(prefix);
+          request.add(segment);
+          current.add(request);
+        }
+      }
+      ret.addAll(current);
+      previous = current;
+    }
+    return ret;
+  }
+
+  private static boolean isAllowed(
+          final Collection<TokenPermission> tokenPermissions,
+          final List<String> request,
+          final AllowedOperation operation) {
+    return tokenPermissions.stream()
+            .filter(x -> x.getAllowedOperations().contains(operation))
+            .anyMatch(x -> matches(Arrays.asList(x.getPath().split("/", -1)), request));
+  }
+
+  /**
+   * Reference matcher following anubis: "*" matches any segment, and as the last segment also anything after it.
+   */
+  private static boolean matches(final List<String> permitted, final List<String> request) {
+    final boolean trailingWildcard = permitted.get(permitted.size() - 1).equals("*");
+    if (permitted.size() > request.size() || (!trailingWildcard && permitted.size() != request.size()))
+      return false;
+    for (int i = 0; i < permitted.size(); i++) {
+      final String segment = permitted.get(i);
+      if (segment.equals("*"))
+        continue;
+      if (segment.equals("{useridentifier}") ? !request.get(i).equals(USER) : !request.get(i).equals(segment))
+        return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.repository;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.TupleType;
+import com.datastax.driver.core.TupleValue;
+import com.datastax.driver.core.TypeCodec;
+import com.google.common.collect.Sets;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * User defined type values are serialized like tuples of their fields, so the driver's tuple codec is used to
+ * produce the values cassandra would send.
+ */
+public class EntityRowsTest {
+  private static final TupleType PERMISSION = TupleType.of(ProtocolVersion.V4, new CodecRegistry(),
+          DataType.text(), DataType.set(DataType.text()));
+  private static final TupleType PERMITTABLE = TupleType.of(ProtocolVersion.V4, new CodecRegistry(),
+          DataType.text(), DataType.text(), DataType.text());
+  private static final TupleType PERMITTABLE_WITHOUT_SOURCE_GROUP = TupleType.of(ProtocolVersion.V4, new CodecRegistry(),
+          DataType.text(), DataType.text());
+
+  @Test
+  public void permissionsAreDecoded()
+  {
+    final ByteBuffer serialized = serialize(PERMISSION, Arrays.asList(
+            PERMISSION.newValue("identity__v1__users", Sets.newHashSet("READ", "CHANGE", "DELETE")),
+            PERMISSION.newValue("office__v1__employees", Sets.newHashSet("READ")),
+            PERMISSION.newValue("identity__v1__self", null)));
+
+    Assert.assertEquals(Arrays.asList(
+            new PermissionType("identity__v1__users", AllowedOperationType.ALL),
+            new PermissionType("office__v1__employees", EnumSet.of(AllowedOperationType.READ)),
+            new PermissionType("identity__v1__self", EnumSet.noneOf(AllowedOperationType.class))),
+            EntityRows.toPermissions(serialized));
+    Assert.assertEquals(0, serialized.position());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownOperationIsRejected()
+  {
+    EntityRows.toPermissions(serialize(PERMISSION, Collections.singletonList(
+            PERMISSION.newValue("identity__v1__users", Sets.newHashSet("EXECUTE")))));
+  }
+
+  @Test
+  public void permittablesAreDecoded()
+  {
+    final ByteBuffer serialized = serialize(PERMITTABLE, Arrays.asList(
+            PERMITTABLE.newValue("identity-v1/users/*", "GET", "identity__v1__users"),
+            PERMITTABLE.newValue("identity-v1/users/{useridentifier}/password", "PUT", null)));
+
+    Assert.assertEquals(Arrays.asList(
+            permittable("identity-v1/users/*", "GET", "identity__v1__users"),
+            permittable("identity-v1/users/{useridentifier}/password", "PUT", null)),
+            EntityRows.toPermittables(serialized));
+  }
+
+  @Test
+  public void fieldsMissingFromOlderValuesAreNull()
+  {
+    final ByteBuffer serialized = serialize(PERMITTABLE_WITHOUT_SOURCE_GROUP, Collections.singletonList(
+            PERMITTABLE_WITHOUT_SOURCE_GROUP.newValue("identity-v1/roles", "GET")));
+
+    Assert.assertEquals(Collections.singletonList(permittable("identity-v1/roles", "GET", null)),
+            EntityRows.toPermittables(serialized));
+  }
+
+  @Test
+  public void missingListsAreEmpty()
+  {
+    Assert.assertEquals(Collections.emptyList(), EntityRows.toPermissions(null));
+    Assert.assertEquals(Collections.emptyList(), EntityRows.toPermittables(null));
+  }
+
+  private static ByteBuffer serialize(final TupleType type, final List<TupleValue> values) {
+    return TypeCodec.list(TypeCodec.tuple(type)).serialize(values, ProtocolVersion.V4);
+  }
+
+  private static PermittableType permittable(final String path, final String method, final String sourceGroupId) {
+    final PermittableType ret = new PermittableType();
+    ret.setPath(path);
+    ret.setMethod(method);
+    ret.setSourceGroupId(sourceGroupId);
+    return ret;
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.repository;
+
+import com.google.common.collect.Sets;
+import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+public class TokenPermissionEncodingTest {
+  @Test
+  public void permissionsAreDecodedAsEncoded()
+  {
+    final Set<TokenPermission> tokenPermissions = Sets.newHashSet(
+            new TokenPermission("identity-v1/users/*", Sets.newHashSet(AllowedOperation.READ, AllowedOperation.DELETE)),
+            new TokenPermission("identity-v1/roles/{identifier}", Sets.newHashSet(AllowedOperation.values())),
+            new TokenPermission("office-v1/b\u00fcros", Sets.newHashSet(AllowedOperation.CHANGE)),
+            new TokenPermission("identity-v1/self", Collections.emptySet()));
+
+    final ByteBuffer encoded = TokenPermissionEncoding.encode(tokenPermissions);
+    Assert.assertEquals(TokenPermissionEncoding.VERSION, encoded.get(0));
+
+    final Optional<List<TokenPermission>> decoded = TokenPermissionEncoding.decode(encoded);
+    Assert.assertTrue(decoded.isPresent());
+    Assert.assertEquals(tokenPermissions, new HashSet<>(decoded.get()));
+    Assert.assertEquals(0, encoded.position());
+  }
+
+  @Test
+  public void noPermissions()
+  {
+    Assert.assertEquals(Optional.of(Collections.emptyList()),
+            TokenPermissionEncoding.decode(TokenPermissionEncoding.encode(Collections.emptySet())));
+  }
+
+  @Test
+  public void unknownVersionIsTreatedAsMissing()
+  {
+    final ByteBuffer encoded = TokenPermissionEncoding.encode(Collections.singleton(
+            new TokenPermission("identity-v1/users/*", Sets.newHashSet(AllowedOperation.READ))));
+    encoded.put(0, (byte) (TokenPermissionEncoding.VERSION + 1));
+
+    Assert.assertEquals(Optional.empty(), TokenPermissionEncoding.decode(encoded));
+    Assert.assertEquals(Optional.empty(), TokenPermissionEncoding.decode(ByteBuffer.allocate(0)));
+  }
+}
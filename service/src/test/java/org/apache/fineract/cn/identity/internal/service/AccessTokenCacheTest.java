@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.TokenPermission;
+import org.apache.fineract.cn.anubis.token.TokenSerializationResult;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+
+public class AccessTokenCacheTest {
+  private static final String TENANT_NAME = "test-tenant";
+  private static final String USER = "user";
+  private static final String ROLE = "role";
+  private static final String APPLICATION = "identity-v1";
+  private static final String KEY_TIMESTAMP = "2018-01-01T00_00_00";
+  private static final int LIFETIME_IN_SECONDS = 300;
+  private static final Set<TokenPermission> PERMISSIONS = Collections.singleton(
+          new TokenPermission("identity-v1/users/*", Collections.singleton(AllowedOperation.READ)));
+
+  private static class MutableClock extends Clock {
+    private Instant instant = Instant.parse("2018-06-01T12:00:00Z");
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+
+    private void passSeconds(final long seconds) {
+      instant = instant.plusSeconds(seconds);
+    }
+  }
+
+  private MutableClock clock;
+  private AccessTokenCache testSubject;
+
+  @Before
+  public void setup()
+  {
+    TenantContextHolder.clear();
+    TenantContextHolder.setIdentifier(TENANT_NAME);
+    clock = new MutableClock();
+    testSubject = new AccessTokenCache(true, 0.5, 1000, clock);
+  }
+
+  @Test
+  public void tokenIsReusedWhileMoreThanTheFractionOfItsLifetimeRemains()
+  {
+    final TokenSerializationResult token = put(USER, ROLE, APPLICATION, Optional.empty());
+
+    clock.passSeconds(LIFETIME_IN_SECONDS / 2 - 1);
+    Assert.assertEquals(Optional.of(token), get(USER, APPLICATION, Optional.empty()));
+
+    clock.passSeconds(1);
+    Assert.assertEquals(Optional.empty(), get(USER, APPLICATION, Optional.empty()));
+    Assert.assertEquals(1, testSubject.getHitCount());
+    Assert.assertEquals(1, testSubject.getMissCount());
+  }
+
+  @Test
+  public void tokenIsntReusedAfterTheKeyChanged()
+  {
+    put(USER, ROLE, APPLICATION, Optional.empty());
+
+    Assert.assertEquals(Optional.empty(), testSubject.get(
+            USER, APPLICATION, Optional.empty(), "2018-06-01T00_00_00", PERMISSIONS));
+  }
+
+  @Test
+  public void tokenIsntReusedAfterThePermissionsChanged()
+  {
+    put(USER, ROLE, APPLICATION, Optional.empty());
+
+    Assert.assertEquals(Optional.empty(), testSubject.get(
+            USER, APPLICATION, Optional.empty(), KEY_TIMESTAMP, Collections.emptySet()));
+  }
+
+  @Test
+  public void tokensAreKeptPerApplicationAndCallEndpointSet()
+  {
+    final TokenSerializationResult token = put(USER, ROLE, APPLICATION, Optional.of("set"));
+
+    Assert.assertEquals(Optional.empty(), get(USER, APPLICATION, Optional.empty()));
+    Assert.assertEquals(Optional.empty(), get(USER, "office-v1", Optional.of("set")));
+    Assert.assertEquals(Optional.of(token), get(USER, APPLICATION, Optional.of("set")));
+  }
+
+  @Test
+  public void invalidatingDropsOnlyMatchingTokens()
+  {
+    put("user0", "role0", "app0", Optional.empty());
+    put("user1", "role1", "app1", Optional.empty());
+    put("user2", "role2", "app2", Optional.empty());
+    put("user3", "role3", "app3", Optional.empty());
+
+    testSubject.invalidateUser("user0");
+    testSubject.invalidateRole("role1");
+    testSubject.invalidateApplication("app2");
+
+    Assert.assertEquals(Optional.empty(), get("user0", "app0", Optional.empty()));
+    Assert.assertEquals(Optional.empty(), get("user1", "app1", Optional.empty()));
+    Assert.assertEquals(Optional.empty(), get("user2", "app2", Optional.empty()));
+    Assert.assertTrue(get("user3", "app3", Optional.empty()).isPresent());
+
+    testSubject.invalidateAll();
+    Assert.assertEquals(Optional.empty(), get("user3", "app3", Optional.empty()));
+  }
+
+  @Test
+  public void oldestTokenIsReplacedWhenFull()
+  {
+    testSubject = new AccessTokenCache(true, 0.5, 2, clock);
+    put("user0", ROLE, APPLICATION, Optional.empty());
+    put("user1", ROLE, APPLICATION, Optional.empty());
+    put("user0", ROLE, APPLICATION, Optional.empty());
+    final TokenSerializationResult token = put("user2", ROLE, APPLICATION, Optional.empty());
+
+    Assert.assertEquals(Optional.of(token), get("user2", APPLICATION, Optional.empty()));
+    Assert.assertTrue(get("user0", APPLICATION, Optional.empty()).isPresent());
+    Assert.assertEquals(Optional.empty(), get("user1", APPLICATION, Optional.empty()));
+
+    testSubject.invalidateRole(ROLE);
+    Assert.assertEquals(Optional.empty(), get("user0", APPLICATION, Optional.empty()));
+    Assert.assertEquals(Optional.empty(), get("user2", APPLICATION, Optional.empty()));
+  }
+
+  @Test
+  public void nothingIsReusedWhenDisabled()
+  {
+    testSubject = new AccessTokenCache(false, 0.5, 1000, clock);
+    put(USER, ROLE, APPLICATION, Optional.empty());
+
+    Assert.assertEquals(Optional.empty(), get(USER, APPLICATION, Optional.empty()));
+  }
+
+  @Test
+  public void tokensArentSharedBetweenTenants()
+  {
+    put(USER, ROLE, APPLICATION, Optional.empty());
+    try {
+      TenantContextHolder.clear();
+      TenantContextHolder.setIdentifier("other-tenant");
+      Assert.assertEquals(Optional.empty(), get(USER, APPLICATION, Optional.empty()));
+    }
+    finally {
+      TenantContextHolder.clear();
+      TenantContextHolder.setIdentifier(TENANT_NAME);
+    }
+  }
+
+  private TokenSerializationResult put(final String user,
+                                       final String role,
+                                       final String application,
+                                       @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+                                       final Optional<String> callEndpointSet) {
+    final TokenSerializationResult ret = new TokenSerializationResult(user + "-token",
+            LocalDateTime.now(clock).plusSeconds(LIFETIME_IN_SECONDS));
+    testSubject.put(user, role, application, callEndpointSet, KEY_TIMESTAMP, PERMISSIONS, ret);
+    return ret;
+  }
+
+  private Optional<TokenSerializationResult> get(final String user,
+                                                 final String application,
+                                                 @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+                                                 final Optional<String> callEndpointSet) {
+    return testSubject.get(user, application, callEndpointSet, KEY_TIMESTAMP, PERMISSIONS);
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import com.google.gson.Gson;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.SessionCallback;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import javax.jms.Destination;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AuthenticationEventPublisherTest {
+  private static final String TENANT_NAME = "test-tenant";
+
+  private JmsTemplate jmsTemplate;
+  private MessageConverter messageConverter;
+  private Session session;
+  private MessageProducer producer;
+
+  @Before
+  public void setup() throws Exception
+  {
+    TenantContextHolder.clear();
+    TenantContextHolder.setIdentifier(TENANT_NAME);
+
+    jmsTemplate = Mockito.mock(JmsTemplate.class);
+    messageConverter = Mockito.mock(MessageConverter.class);
+    session = Mockito.mock(Session.class);
+    producer = Mockito.mock(MessageProducer.class);
+
+    final Destination destination = Mockito.mock(Destination.class);
+    when(jmsTemplate.getDefaultDestination()).thenReturn(destination);
+    when(jmsTemplate.getMessageConverter()).thenReturn(messageConverter);
+    when(jmsTemplate.isMessageIdEnabled()).thenReturn(true);
+    when(jmsTemplate.isMessageTimestampEnabled()).thenReturn(true);
+    when(jmsTemplate.execute(Matchers.<SessionCallback<Object>>any(), Matchers.anyBoolean())).thenAnswer(
+        invocation -> ((SessionCallback<?>) invocation.getArguments()[0]).doInJms(session));
+    when(session.createProducer(destination)).thenReturn(producer);
+    when(messageConverter.toMessage(Matchers.any(), Matchers.eq(session)))
+        .thenAnswer(invocation -> Mockito.mock(Message.class));
+  }
+
+  @Test
+  public void eventsAreSentInBatches() throws Exception
+  {
+    final AuthenticationEventPublisher testSubject
+        = publisher(10, 3, AuthenticationEventPublisher.OverflowPolicy.DROP_OLDEST);
+    for (int i = 0; i < 7; i++)
+      testSubject.fireAuthenticationEvent("user" + i);
+
+    testSubject.start();
+    testSubject.stop();
+
+    verify(jmsTemplate, times(3)).execute(Matchers.<SessionCallback<Object>>any(), Matchers.anyBoolean());
+    verify(session, times(3)).createProducer(Matchers.any());
+    verify(producer, times(7)).send(Matchers.any(Message.class));
+    Assert.assertEquals(7, testSubject.getPublishedEventCount());
+    Assert.assertEquals(0, testSubject.getQueueDepth());
+  }
+
+  @Test
+  public void oldestEventsAreDroppedWhenTheQueueIsFull() throws Exception
+  {
+    final AuthenticationEventPublisher testSubject
+        = publisher(2, 10, AuthenticationEventPublisher.OverflowPolicy.DROP_OLDEST);
+    for (int i = 0; i < 5; i++)
+      testSubject.fireAuthenticationEvent("user" + i);
+
+    Assert.assertEquals(2, testSubject.getQueueDepth());
+    Assert.assertEquals(3, testSubject.getDroppedEventCount());
+
+    testSubject.start();
+    testSubject.stop();
+
+    verify(messageConverter, never()).toMessage(Matchers.eq("\"user2\""), Matchers.any());
+    verify(messageConverter).toMessage(Matchers.eq("\"user3\""), Matchers.any());
+    verify(messageConverter).toMessage(Matchers.eq("\"user4\""), Matchers.any());
+    Assert.assertEquals(2, testSubject.getPublishedEventCount());
+  }
+
+  @Test
+  public void firingWaitsForSpaceWhenBlocking() throws Exception
+  {
+    final AuthenticationEventPublisher testSubject
+        = publisher(1, 10, AuthenticationEventPublisher.OverflowPolicy.BLOCK);
+    testSubject.fireAuthenticationEvent("user0");
+
+    final Thread firing = new Thread(() -> {
+      TenantContextHolder.setIdentifier(TENANT_NAME);
+      testSubject.fireAuthenticationEvent("user1");
+    });
+    firing.start();
+    firing.join(200);
+    Assert.assertTrue(firing.isAlive());
+
+    testSubject.start();
+    firing.join(TimeUnit.SECONDS.toMillis(10));
+    Assert.assertFalse(firing.isAlive());
+    testSubject.stop();
+
+    Assert.assertEquals(2, testSubject.getPublishedEventCount());
+    Assert.assertEquals(0, testSubject.getDroppedEventCount());
+  }
+
+  @Test
+  public void explicitQualityOfServiceIsUsed() throws Exception
+  {
+    when(jmsTemplate.isExplicitQosEnabled()).thenReturn(true);
+    when(jmsTemplate.getDeliveryMode()).thenReturn(1);
+    when(jmsTemplate.getPriority()).thenReturn(7);
+    when(jmsTemplate.getTimeToLive()).thenReturn(1000L);
+    when(jmsTemplate.isMessageIdEnabled()).thenReturn(false);
+
+    final AuthenticationEventPublisher testSubject
+        = publisher(10, 10, AuthenticationEventPublisher.OverflowPolicy.DROP_OLDEST);
+    testSubject.fireAuthenticationEvent("user0");
+    testSubject.start();
+    testSubject.stop();
+
+    verify(producer).send(Matchers.any(Message.class), Matchers.eq(1), Matchers.eq(7), Matchers.eq(1000L));
+    verify(producer, never()).send(Matchers.any(Message.class));
+    verify(producer).setDisableMessageID(true);
+  }
+
+  private AuthenticationEventPublisher publisher(final int queueCapacity,
+                                                 final int batchSize,
+                                                 final AuthenticationEventPublisher.OverflowPolicy overflowPolicy) {
+    return new AuthenticationEventPublisher(
+        jmsTemplate, new Gson(), Mockito.mock(Logger.class), queueCapacity, batchSize, overflowPolicy);
+  }
+}
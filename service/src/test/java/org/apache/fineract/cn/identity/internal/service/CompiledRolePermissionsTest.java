@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CompiledRolePermissionsTest {
+  private static final String TENANT_NAME = "test-tenant";
+  private static final String ROLE = "role";
+
+  private AtomicLong now;
+  private AtomicInteger compileCount;
+  private CompiledRolePermissions testSubject;
+
+  @Before
+  public void setup()
+  {
+    TenantContextHolder.clear();
+    TenantContextHolder.setIdentifier(TENANT_NAME);
+    now = new AtomicLong();
+    compileCount = new AtomicInteger();
+    testSubject = new CompiledRolePermissions(30, now::get);
+  }
+
+  @Test
+  public void cachedUntilExpired()
+  {
+    Assert.assertTrue(get().isPresent());
+    now.addAndGet(TimeUnit.SECONDS.toNanos(29));
+    Assert.assertTrue(get().isPresent());
+    Assert.assertEquals(1, compileCount.get());
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    Assert.assertTrue(get().isPresent());
+    Assert.assertEquals(2, compileCount.get());
+  }
+
+  @Test
+  public void roleDeletedElsewhereIsNoLongerFoundAfterExpiry()
+  {
+    Assert.assertTrue(get().isPresent());
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(30));
+    Assert.assertFalse(testSubject.getGroupPermissions(ROLE, Optional::empty).isPresent());
+  }
+
+  @Test
+  public void invalidatedRoleIsCompiledAgain()
+  {
+    Assert.assertTrue(get().isPresent());
+    testSubject.invalidate(ROLE);
+    Assert.assertTrue(get().isPresent());
+
+    Assert.assertEquals(2, compileCount.get());
+  }
+
+  private Optional<GroupPermissions> get() {
+    return testSubject.getGroupPermissions(ROLE, () -> {
+      compileCount.incrementAndGet();
+      return Optional.of(GroupPermissions.EMPTY);
+    });
+  }
+}
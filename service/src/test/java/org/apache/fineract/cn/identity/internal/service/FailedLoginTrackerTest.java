@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FailedLoginTrackerTest {
+  private static final String TENANT_NAME = "test-tenant";
+  private static final int THRESHOLD = 3;
+  private static final int WINDOW_IN_SECONDS = 300;
+  private static final int MAX_TRACKED_USERS = 2;
+
+  private final AtomicLong now = new AtomicLong(-TimeUnit.DAYS.toNanos(1));
+  private FailedLoginTracker testSubject;
+
+  @Before
+  public void setup()
+  {
+    TenantContextHolder.clear();
+    TenantContextHolder.setIdentifier(TENANT_NAME);
+    testSubject = new FailedLoginTracker(THRESHOLD, WINDOW_IN_SECONDS, MAX_TRACKED_USERS, now::get);
+  }
+
+  @Test
+  public void userIsBlockedOnceTheThresholdIsReached()
+  {
+    fail("user", THRESHOLD - 1);
+    Assert.assertFalse(testSubject.isBlocked("user"));
+
+    fail("user", 1);
+    Assert.assertTrue(testSubject.isBlocked("user"));
+    Assert.assertFalse(testSubject.isBlocked("other"));
+    Assert.assertEquals(1, testSubject.getRejectedCount());
+  }
+
+  @Test
+  public void userIsUnblockedOnceTheWindowHasPassed()
+  {
+    fail("user", THRESHOLD);
+    passSeconds(WINDOW_IN_SECONDS);
+    Assert.assertTrue(testSubject.isBlocked("user"));
+
+    passSeconds(1);
+    Assert.assertFalse(testSubject.isBlocked("user"));
+    Assert.assertEquals(0, testSubject.getTrackedUserCount());
+
+    fail("user", 1);
+    Assert.assertFalse(testSubject.isBlocked("user"));
+  }
+
+  @Test
+  public void clearingUnblocksTheUser()
+  {
+    fail("user", THRESHOLD);
+    testSubject.clear("user");
+
+    Assert.assertFalse(testSubject.isBlocked("user"));
+    Assert.assertEquals(0, testSubject.getTrackedUserCount());
+  }
+
+  @Test
+  public void usersBeyondTheMaximumArentTracked()
+  {
+    fail("user0", 1);
+    fail("user1", 1);
+    fail("user2", THRESHOLD);
+
+    Assert.assertEquals(MAX_TRACKED_USERS, testSubject.getTrackedUserCount());
+    Assert.assertFalse(testSubject.isBlocked("user2"));
+    Assert.assertEquals(THRESHOLD, testSubject.getUntrackedFailureCount());
+
+    //Users already tracked still count.
+    fail("user0", THRESHOLD - 1);
+    Assert.assertTrue(testSubject.isBlocked("user0"));
+  }
+
+  @Test
+  public void expiredUsersMakeRoomForNewOnes()
+  {
+    fail("user0", 1);
+    passSeconds(10);
+    fail("user1", 1);
+    fail("user2", 1);
+    Assert.assertEquals(1, testSubject.getUntrackedFailureCount());
+
+    passSeconds(WINDOW_IN_SECONDS - 9);
+    fail("user2", THRESHOLD);
+
+    Assert.assertTrue(testSubject.isBlocked("user2"));
+    Assert.assertEquals(MAX_TRACKED_USERS, testSubject.getTrackedUserCount());
+  }
+
+  @Test
+  public void usersAreTrackedPerTenant()
+  {
+    fail("user", THRESHOLD);
+    try {
+      TenantContextHolder.clear();
+      TenantContextHolder.setIdentifier("other-tenant");
+      Assert.assertFalse(testSubject.isBlocked("user"));
+    }
+    finally {
+      TenantContextHolder.clear();
+      TenantContextHolder.setIdentifier(TENANT_NAME);
+    }
+  }
+
+  @Test
+  public void thresholdOfZeroTurnsTrackingOff()
+  {
+    testSubject = new FailedLoginTracker(0, WINDOW_IN_SECONDS, MAX_TRACKED_USERS, now::get);
+    fail("user", 100);
+
+    Assert.assertFalse(testSubject.isBlocked("user"));
+    Assert.assertEquals(0, testSubject.getTrackedUserCount());
+  }
+
+  private void fail(final String userIdentifier, final int times) {
+    for (int i = 0; i < times; i++)
+      testSubject.recordFailure(userIdentifier);
+  }
+
+  private void passSeconds(final int seconds) {
+    now.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import org.apache.fineract.cn.identity.internal.repository.AllowedOperationType;
+import org.apache.fineract.cn.identity.internal.repository.PermissionType;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.*;
+
+public class GroupPermissionsTest {
+  private static final String TENANT_NAME = "test-tenant";
+  private static final int ALL = GroupPermissions.mask(AllowedOperationType.ALL);
+  private static final int READ = GroupPermissions.mask(AllowedOperationType.READ);
+  private static final int CHANGE = GroupPermissions.mask(AllowedOperationType.CHANGE);
+  private static final int DELETE = GroupPermissions.mask(AllowedOperationType.DELETE);
+
+  @BeforeClass
+  public static void setup()
+  {
+    TenantContextHolder.setIdentifier(TENANT_NAME);
+  }
+
+  @Test
+  public void permissionsForTheSameGroupAreMerged()
+  {
+    final GroupIdentifiers groupIdentifiers = new GroupIdentifiers();
+    final GroupPermissions x = GroupPermissions.of(Arrays.asList(
+            new PermissionType("x", EnumSet.of(AllowedOperationType.READ)),
+            new PermissionType("y", EnumSet.of(AllowedOperationType.CHANGE)),
+            new PermissionType("x", EnumSet.of(AllowedOperationType.CHANGE, AllowedOperationType.DELETE))),
+            groupIdentifiers);
+
+    Assert.assertEquals(2, x.size());
+    Assert.assertEquals(ALL, x.operationsOf(groupIdentifiers.intern("x")));
+    Assert.assertEquals(CHANGE, x.operationsOf(groupIdentifiers.intern("y")));
+    Assert.assertEquals(0, x.operationsOf(groupIdentifiers.intern("z")));
+  }
+
+  @Test
+  public void intersect()
+  {
+    final GroupIdentifiers groupIdentifiers = new GroupIdentifiers();
+    final GroupPermissions user = GroupPermissions.of(Arrays.asList(
+            new PermissionType("equal", EnumSet.of(AllowedOperationType.CHANGE)),
+            new PermissionType("all", AllowedOperationType.ALL),
+            new PermissionType("nonOverlapping", EnumSet.of(AllowedOperationType.DELETE)),
+            new PermissionType("subSet", AllowedOperationType.ALL),
+            new PermissionType("partiallyOverlapping", EnumSet.of(AllowedOperationType.CHANGE, AllowedOperationType.DELETE)),
+            new PermissionType("onlyUser", AllowedOperationType.ALL)),
+            groupIdentifiers);
+    final GroupPermissions application = GroupPermissions.of(Arrays.asList(
+            new PermissionType("onlyApplication", AllowedOperationType.ALL),
+            new PermissionType("partiallyOverlapping", EnumSet.of(AllowedOperationType.CHANGE, AllowedOperationType.READ)),
+            new PermissionType("subSet", EnumSet.of(AllowedOperationType.CHANGE)),
+            new PermissionType("nonOverlapping", EnumSet.of(AllowedOperationType.CHANGE)),
+            new PermissionType("all", AllowedOperationType.ALL),
+            new PermissionType("equal", EnumSet.of(AllowedOperationType.CHANGE))),
+            groupIdentifiers);
+
+    final GroupPermissions intersection = user.intersect(application);
+
+    final Map<String, Integer> byGroup = new HashMap<>();
+    for (int i = 0; i < intersection.size(); i++)
+      byGroup.put(groupIdentifiers.identifierOf(intersection.groupAt(i)), intersection.operationsAt(i));
+
+    final Map<String, Integer> expected = new HashMap<>();
+    expected.put("equal", CHANGE);
+    expected.put("all", ALL);
+    expected.put("subSet", CHANGE);
+    expected.put("partiallyOverlapping", CHANGE);
+    Assert.assertEquals(expected, byGroup);
+    Assert.assertEquals(byGroup.size(), application.intersect(user).size());
+    Assert.assertEquals(0, user.intersect(GroupPermissions.EMPTY).size());
+  }
+
+  @Test
+  public void retainedGroupsConvertBackToPermissions()
+  {
+    final GroupIdentifiers groupIdentifiers = new GroupIdentifiers();
+    final GroupPermissions x = GroupPermissions.of(Arrays.asList(
+            new PermissionType("x", EnumSet.of(AllowedOperationType.READ)),
+            new PermissionType("y", EnumSet.of(AllowedOperationType.CHANGE, AllowedOperationType.DELETE)),
+            new PermissionType("z", AllowedOperationType.ALL)),
+            groupIdentifiers);
+    final int z = groupIdentifiers.intern("z");
+
+    final GroupPermissions retained = x.retainGroups(group -> group != z);
+    Assert.assertEquals(2, retained.size());
+    Assert.assertEquals(new HashSet<>(Arrays.asList(
+            new PermissionType("x", EnumSet.of(AllowedOperationType.READ)),
+            new PermissionType("y", EnumSet.of(AllowedOperationType.CHANGE, AllowedOperationType.DELETE)))),
+            new HashSet<>(retained.toPermissions(groupIdentifiers)));
+
+    Assert.assertSame(x, x.retainGroups(group -> true));
+    Assert.assertEquals(0, x.retainGroups(group -> false).size());
+  }
+
+  @Test
+  public void masksRoundTrip()
+  {
+    Assert.assertEquals(READ | CHANGE | DELETE, ALL);
+    Assert.assertEquals(AllowedOperationType.ALL, GroupPermissions.toAllowedOperations(ALL));
+    Assert.assertEquals(EnumSet.of(AllowedOperationType.DELETE), GroupPermissions.toAllowedOperations(DELETE));
+    Assert.assertTrue(GroupPermissions.toAllowedOperations(0).isEmpty());
+    Assert.assertEquals(0, GroupPermissions.mask((Set<AllowedOperationType>) null));
+  }
+
+  @Test
+  public void identifiersAreInternedPerTenant()
+  {
+    final GroupIdentifiers groupIdentifiers = new GroupIdentifiers();
+    final int x = groupIdentifiers.intern("x");
+    Assert.assertEquals(x, groupIdentifiers.intern("x"));
+    Assert.assertEquals("x", groupIdentifiers.identifierOf(x));
+
+    final List<Integer> numbers = new ArrayList<>();
+    for (int i = 0; i < 1000; i++)
+      numbers.add(groupIdentifiers.intern("group" + i));
+    for (int i = 0; i < 1000; i++)
+      Assert.assertEquals("group" + i, groupIdentifiers.identifierOf(numbers.get(i)));
+
+    try {
+      TenantContextHolder.setIdentifier("other-tenant");
+      Assert.assertEquals(0, groupIdentifiers.intern("group0"));
+    }
+    finally {
+      TenantContextHolder.clear();
+      TenantContextHolder.setIdentifier(TENANT_NAME);
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import org.apache.fineract.cn.identity.internal.command.AuthenticationCommandResponse;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InFlightRefreshesTest {
+  private static final String TENANT_NAME = "test-tenant";
+  private static final String REFRESH_TOKEN = "refresh-token";
+
+  private InFlightRefreshes testSubject;
+  private CountDownLatch started;
+  private CountDownLatch release;
+
+  @Before
+  public void setup()
+  {
+    TenantContextHolder.clear();
+    TenantContextHolder.setIdentifier(TENANT_NAME);
+    testSubject = new InFlightRefreshes();
+    started = new CountDownLatch(1);
+    release = new CountDownLatch(1);
+  }
+
+  @Test
+  public void concurrentRefreshesShareOneResult() throws Exception
+  {
+    final AuthenticationCommandResponse response = response("first");
+    final AtomicInteger refreshCount = new AtomicInteger();
+    final CompletableFuture<AuthenticationCommandResponse> first = refreshInBackground(TENANT_NAME, () -> {
+      refreshCount.incrementAndGet();
+      started.countDown();
+      release.await();
+      return response;
+    });
+    Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    final CompletableFuture<AuthenticationCommandResponse> second = refreshInBackground(TENANT_NAME, () -> {
+      refreshCount.incrementAndGet();
+      return response("second");
+    });
+    awaitCoalesced(1);
+    release.countDown();
+
+    Assert.assertSame(response, first.get(10, TimeUnit.SECONDS));
+    Assert.assertSame(response, second.get(10, TimeUnit.SECONDS));
+    Assert.assertEquals(1, refreshCount.get());
+  }
+
+  @Test
+  public void failureIsPassedToConcurrentRefreshes() throws Exception
+  {
+    final IllegalStateException failure = new IllegalStateException("broken");
+    final CompletableFuture<AuthenticationCommandResponse> first = refreshInBackground(TENANT_NAME, () -> {
+      started.countDown();
+      release.await();
+      throw failure;
+    });
+    Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    final CompletableFuture<AuthenticationCommandResponse> second
+        = refreshInBackground(TENANT_NAME, () -> response("second"));
+    awaitCoalesced(1);
+    release.countDown();
+
+    Assert.assertSame(failure, causeOf(first));
+    Assert.assertSame(failure, causeOf(second));
+  }
+
+  @Test
+  public void interruptedRefreshIsRepeatedByConcurrentRefreshes() throws Exception
+  {
+    final CompletableFuture<AuthenticationCommandResponse> first = refreshInBackground(TENANT_NAME, () -> {
+      started.countDown();
+      release.await();
+      throw new InterruptedException();
+    });
+    Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    final AuthenticationCommandResponse response = response("second");
+    final CompletableFuture<AuthenticationCommandResponse> second
+        = refreshInBackground(TENANT_NAME, () -> response);
+    awaitCoalesced(1);
+    release.countDown();
+
+    Assert.assertTrue(causeOf(first) instanceof InterruptedException);
+    Assert.assertSame(response, second.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void refreshesInOtherTenantsArentShared() throws Exception
+  {
+    final CompletableFuture<AuthenticationCommandResponse> first = refreshInBackground(TENANT_NAME, () -> {
+      started.countDown();
+      release.await();
+      return response("first");
+    });
+    Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    final AuthenticationCommandResponse response = response("other");
+    Assert.assertSame(response, refreshInBackground("other-tenant", () -> response).get(10, TimeUnit.SECONDS));
+    release.countDown();
+    first.get(10, TimeUnit.SECONDS);
+    Assert.assertEquals(0, testSubject.getCoalescedCount());
+  }
+
+  @Test
+  public void finishedRefreshesArentKept() throws Exception
+  {
+    testSubject.refresh(REFRESH_TOKEN, () -> response("first"));
+
+    final AuthenticationCommandResponse response = response("second");
+    Assert.assertSame(response, testSubject.refresh(REFRESH_TOKEN, () -> response));
+    Assert.assertEquals(0, testSubject.getCoalescedCount());
+  }
+
+  private CompletableFuture<AuthenticationCommandResponse> refreshInBackground(
+      final String tenantIdentifier,
+      final InFlightRefreshes.Refresh refresh) {
+    final CompletableFuture<AuthenticationCommandResponse> ret = new CompletableFuture<>();
+    final Thread thread = new Thread(() -> {
+      TenantContextHolder.setIdentifier(tenantIdentifier);
+      try {
+        ret.complete(testSubject.refresh(REFRESH_TOKEN, refresh));
+      }
+      catch (final Throwable e) {
+        ret.completeExceptionally(e);
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+    return ret;
+  }
+
+  private void awaitCoalesced(final long count) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (testSubject.getCoalescedCount() < count) {
+      Assert.assertTrue(System.nanoTime() - deadline < 0);
+      Thread.sleep(1);
+    }
+  }
+
+  private static Throwable causeOf(final CompletableFuture<?> future) throws Exception {
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      throw new AssertionError("Expected the refresh to fail.");
+    }
+    catch (final ExecutionException e) {
+      return e.getCause();
+    }
+  }
+
+  private static AuthenticationCommandResponse response(final String accessToken) {
+    return new AuthenticationCommandResponse(accessToken, null, null, null, null);
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import org.apache.fineract.cn.identity.internal.repository.PermittableGroupEntity;
+import org.apache.fineract.cn.identity.internal.repository.PermittableGroups;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PermittableGroupRegistryTest {
+  private static final String TENANT_NAME = "test-tenant";
+
+  private PermittableGroups permittableGroups;
+  private PermittableGroupRegistry testSubject;
+
+  @Before
+  public void setup()
+  {
+    TenantContextHolder.clear();
+    TenantContextHolder.setIdentifier(TENANT_NAME);
+    permittableGroups = Mockito.mock(PermittableGroups.class);
+    when(permittableGroups.getAll()).thenReturn(Collections.emptyList());
+    when(permittableGroups.get("missing")).thenReturn(Optional.empty());
+    testSubject = new PermittableGroupRegistry(permittableGroups);
+  }
+
+  @Test
+  public void missingGroupIsReadOnce()
+  {
+    Assert.assertFalse(testSubject.get("missing").isPresent());
+    Assert.assertFalse(testSubject.get("missing").isPresent());
+
+    verify(permittableGroups, times(1)).get("missing");
+  }
+
+  @Test
+  public void missingGroupIsReadAgainOnceAGroupIsAdded()
+  {
+    Assert.assertFalse(testSubject.get("missing").isPresent());
+
+    testSubject.add(group("other"));
+    Assert.assertFalse(testSubject.get("missing").isPresent());
+
+    verify(permittableGroups, times(2)).get("missing");
+  }
+
+  @Test
+  public void groupCreatedElsewhereIsFoundAfterInvalidation()
+  {
+    Assert.assertFalse(testSubject.get("missing").isPresent());
+
+    final PermittableGroupEntity created = group("missing");
+    when(permittableGroups.get("missing")).thenReturn(Optional.of(created));
+    testSubject.invalidate();
+
+    Assert.assertEquals(Optional.of(created), testSubject.get("missing"));
+  }
+
+  @Test
+  public void groupCreatedElsewhereIsListedAndFound()
+  {
+    Assert.assertTrue(testSubject.getAll().isEmpty());
+    Assert.assertFalse(testSubject.get("missing").isPresent());
+
+    final PermittableGroupEntity created = group("missing");
+    when(permittableGroups.getAll()).thenReturn(Collections.singletonList(created));
+
+    Assert.assertEquals(Collections.singletonList(created), new ArrayList<>(testSubject.getAll()));
+    Assert.assertEquals(Optional.of(created), testSubject.get("missing"));
+    verify(permittableGroups, times(1)).get("missing");
+  }
+
+  @Test
+  public void missesAreKeptPerTenant()
+  {
+    Assert.assertFalse(testSubject.get("missing").isPresent());
+    try {
+      TenantContextHolder.clear();
+      TenantContextHolder.setIdentifier("other-tenant");
+      Assert.assertFalse(testSubject.get("missing").isPresent());
+    }
+    finally {
+      TenantContextHolder.clear();
+      TenantContextHolder.setIdentifier(TENANT_NAME);
+    }
+
+    verify(permittableGroups, times(2)).get("missing");
+  }
+
+  private static PermittableGroupEntity group(final String identifier) {
+    final PermittableGroupEntity ret = new PermittableGroupEntity();
+    ret.setIdentifier(identifier);
+    ret.setPermittables(Collections.emptyList());
+    return ret;
+  }
+}
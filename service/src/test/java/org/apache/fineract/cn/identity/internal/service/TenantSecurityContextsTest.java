@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.identity.internal.service;
+
+import org.apache.fineract.cn.identity.internal.repository.PrivateSignatureEntity;
+import org.apache.fineract.cn.identity.internal.repository.PrivateTenantInfoEntity;
+import org.apache.fineract.cn.identity.internal.repository.Signatures;
+import org.apache.fineract.cn.identity.internal.repository.Tenants;
+import org.apache.fineract.cn.lang.TenantContextHolder;
+import org.apache.fineract.cn.lang.security.RsaKeyPairFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TenantSecurityContextsTest {
+  private static final String TENANT_NAME = "test-tenant";
+
+  private AtomicLong now;
+  private Signatures signatures;
+  private TenantSecurityContexts testSubject;
+
+  @Before
+  public void setup()
+  {
+    TenantContextHolder.clear();
+    TenantContextHolder.setIdentifier(TENANT_NAME);
+    now = new AtomicLong();
+    signatures = Mockito.mock(Signatures.class);
+    final Tenants tenants = Mockito.mock(Tenants.class);
+    when(tenants.getPrivateTenantInfo()).thenReturn(Optional.of(Mockito.mock(PrivateTenantInfoEntity.class)));
+    testSubject = new TenantSecurityContexts(tenants, signatures, Mockito.mock(Logger.class), now::get);
+  }
+
+  @Test
+  public void unchangedKeyIsNotReloaded()
+  {
+    final PrivateSignatureEntity key = privateSignature();
+    when(signatures.getPrivateSignature()).thenReturn(Optional.of(key));
+    when(signatures.getMostRecentValidKeyTimestamp()).thenReturn(Optional.of(key.getKeyTimestamp()));
+
+    final TenantSecurityContexts.TenantSecurityContext first = testSubject.get();
+    Assert.assertSame(first, testSubject.get());
+    verify(signatures, times(0)).getMostRecentValidKeyTimestamp();
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    Assert.assertSame(first, testSubject.get());
+    verify(signatures, times(1)).getMostRecentValidKeyTimestamp();
+    verify(signatures, times(1)).getPrivateSignature();
+  }
+
+  @Test
+  public void keyChangedElsewhereIsLoaded()
+  {
+    final PrivateSignatureEntity oldKey = privateSignature();
+    final PrivateSignatureEntity newKey = privateSignature();
+    newKey.setKeyTimestamp(oldKey.getKeyTimestamp() + "-new");
+    when(signatures.getPrivateSignature()).thenReturn(Optional.of(oldKey));
+    Assert.assertEquals(oldKey.getKeyTimestamp(), testSubject.get().getKeyTimestamp());
+
+    when(signatures.getPrivateSignature()).thenReturn(Optional.of(newKey));
+    when(signatures.getMostRecentValidKeyTimestamp()).thenReturn(Optional.of(newKey.getKeyTimestamp()));
+    Assert.assertEquals(oldKey.getKeyTimestamp(), testSubject.get().getKeyTimestamp());
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    Assert.assertEquals(newKey.getKeyTimestamp(), testSubject.get().getKeyTimestamp());
+    Assert.assertEquals(newKey.getKeyTimestamp(), testSubject.get().getKeyTimestamp());
+  }
+
+  private static PrivateSignatureEntity privateSignature() {
+    final RsaKeyPairFactory.KeyPairHolder keyPair = RsaKeyPairFactory.createKeyPair();
+    final PrivateSignatureEntity ret = new PrivateSignatureEntity();
+    ret.setKeyTimestamp(keyPair.getTimestamp());
+    ret.setValid(true);
+    ret.setPrivateKeyMod(keyPair.getPrivateKeyMod());
+    ret.setPrivateKeyExp(keyPair.getPrivateKeyExp());
+    return ret;
+  }
+}